@@ -0,0 +1,340 @@
+package com.ruquet.peopledb.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates {@code com.ruquet.peopledb.repository.GeneratedMetadata} from the {@code @SQL} annotations of the
+ * repositories and the {@code @Id} fields of the entities, so repositories start without scanning them by reflection:
+ * <ul>
+ *     <li>the SQL of every annotated operation, per repository class,</li>
+ *     <li>the entity class of every repository,</li>
+ *     <li>plain Java id accessors calling the entity's public getter and setter, {@code withId(Long)} or
+ *     constructor taking every field, like {@code EntityMetadata} does through method handles.</li>
+ * </ul>
+ * Entities it can't write an accessor for get a warning and keep using reflection at runtime.
+ */
+@SupportedAnnotationTypes({MetadataProcessor.SQL, MetadataProcessor.MULTI_SQL, MetadataProcessor.ID})
+public class MetadataProcessor extends AbstractProcessor {
+    static final String SQL = "com.ruquet.peopledb.anotation.SQL";
+    static final String MULTI_SQL = "com.ruquet.peopledb.anotation.MultiSQL";
+    static final String ID = "com.ruquet.peopledb.anotation.Id";
+    private static final String PACKAGE = "com.ruquet.peopledb.repository";
+    private static final String REPOSITORY = PACKAGE + ".CrudRepository";
+    private static final String OPERATION = "com.ruquet.peopledb.model.CrudOperation";
+
+    private Elements elements;
+    private Types types;
+    private Messager messager;
+    private Filer filer;
+    private boolean generated;
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        this.elements = processingEnv.getElementUtils();
+        this.types = processingEnv.getTypeUtils();
+        this.messager = processingEnv.getMessager();
+        this.filer = processingEnv.getFiler();
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (generated || roundEnv.processingOver()) {
+            return false;
+        }
+        generated = true;
+        Map<TypeElement, Map<String, String>> sqlByRepository = new LinkedHashMap<>();
+        for (String annotation : List.of(SQL, MULTI_SQL)) {
+            TypeElement type = elements.getTypeElement(annotation);
+            if (type == null) {
+                continue;
+            }
+            for (ExecutableElement method : ElementFilter.methodsIn(roundEnv.getElementsAnnotatedWith(type))) {
+                Map<String, String> sql = sqlByRepository.computeIfAbsent((TypeElement) method.getEnclosingElement(), r -> new LinkedHashMap<>());
+                for (AnnotationMirror mirror : method.getAnnotationMirrors()) {
+                    collectSql(mirror, sql);
+                }
+            }
+        }
+        Set<TypeElement> entities = new LinkedHashSet<>();
+        TypeElement id = elements.getTypeElement(ID);
+        if (id != null) {
+            for (VariableElement field : ElementFilter.fieldsIn(roundEnv.getElementsAnnotatedWith(id))) {
+                entities.add((TypeElement) field.getEnclosingElement());
+            }
+        }
+        Map<TypeElement, TypeElement> entityByRepository = new LinkedHashMap<>();
+        for (TypeElement repository : sqlByRepository.keySet()) {
+            TypeElement entity = entityType(repository);
+            if (entity != null) {
+                entityByRepository.put(repository, entity);
+            }
+        }
+        write(sqlByRepository, entityByRepository, entities);
+        return false;
+    }
+
+    private void collectSql(AnnotationMirror mirror, Map<String, String> sql) {
+        String name = ((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().toString();
+        if (name.equals(MULTI_SQL)) {
+            for (Object nested : (List<?>) value(mirror, "value")) {
+                collectSql((AnnotationMirror) ((AnnotationValue) nested).getValue(), sql);
+            }
+        } else if (name.equals(SQL)) {
+            String operation = ((VariableElement) value(mirror, "operationType")).getSimpleName().toString();
+            sql.putIfAbsent(operation, (String) value(mirror, "value"));
+        }
+    }
+
+    private static Object value(AnnotationMirror mirror, String name) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : mirror.getElementValues().entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals(name)) {
+                return entry.getValue().getValue();
+            }
+        }
+        throw new IllegalStateException("@" + mirror.getAnnotationType() + " has no " + name);
+    }
+
+    /**
+     * @return the type argument given to CrudRepository by the repository or one of its superclasses.
+     */
+    private TypeElement entityType(TypeElement repository) {
+        TypeMirror type = repository.asType();
+        while (type instanceof DeclaredType declared) {
+            TypeElement element = (TypeElement) declared.asElement();
+            TypeMirror superclass = element.getSuperclass();
+            if (superclass instanceof DeclaredType parent
+                    && ((TypeElement) parent.asElement()).getQualifiedName().contentEquals(REPOSITORY)) {
+                TypeMirror entity = types.erasure(parent.getTypeArguments().get(0));
+                return entity instanceof DeclaredType d ? (TypeElement) d.asElement() : null;
+            }
+            type = superclass;
+        }
+        return null;
+    }
+
+    private void write(Map<TypeElement, Map<String, String>> sqlByRepository, Map<TypeElement, TypeElement> entityByRepository,
+                       Set<TypeElement> entities) {
+        try (PrintWriter out = new PrintWriter(filer.createSourceFile(PACKAGE + ".GeneratedMetadata").openWriter())) {
+            out.println("package " + PACKAGE + ";");
+            out.println();
+            out.println("import " + OPERATION + ";");
+            out.println();
+            out.println("import java.util.Map;");
+            out.println();
+            out.println("/**");
+            out.println(" * Generated by " + MetadataProcessor.class.getName() + ", don't edit.");
+            out.println(" */");
+            out.println("@javax.annotation.processing.Generated(\"" + MetadataProcessor.class.getName() + "\")");
+            out.println("final class GeneratedMetadata {");
+            out.println();
+            out.println("    private GeneratedMetadata() {");
+            out.println("    }");
+            writeSql(out, sqlByRepository);
+            writeEntityTypes(out, entityByRepository);
+            writeIds(out, entities);
+            out.println("}");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeSql(PrintWriter out, Map<TypeElement, Map<String, String>> sqlByRepository) {
+        out.println();
+        out.println("    static Map<CrudOperation, String> sql(Class<?> repositoryType) {");
+        for (Map.Entry<TypeElement, Map<String, String>> repository : sqlByRepository.entrySet()) {
+            out.println("        if (repositoryType == " + repository.getKey().getQualifiedName() + ".class) {");
+            out.println("            return Map.ofEntries(");
+            List<String> entries = new ArrayList<>();
+            for (Map.Entry<String, String> sql : repository.getValue().entrySet()) {
+                entries.add("                    Map.entry(CrudOperation." + sql.getKey() + ", " + elements.getConstantExpression(sql.getValue()) + ")");
+            }
+            out.println(String.join(",\n", entries) + ");");
+            out.println("        }");
+        }
+        out.println("        return null;");
+        out.println("    }");
+    }
+
+    private void writeEntityTypes(PrintWriter out, Map<TypeElement, TypeElement> entityByRepository) {
+        out.println();
+        out.println("    static Class<?> entityType(Class<?> repositoryType) {");
+        for (Map.Entry<TypeElement, TypeElement> repository : entityByRepository.entrySet()) {
+            out.println("        if (repositoryType == " + repository.getKey().getQualifiedName() + ".class) {");
+            out.println("            return " + repository.getValue().getQualifiedName() + ".class;");
+            out.println("        }");
+        }
+        out.println("        return null;");
+        out.println("    }");
+    }
+
+    private void writeIds(PrintWriter out, Set<TypeElement> entities) {
+        Map<TypeElement, String> accessors = new LinkedHashMap<>();
+        for (TypeElement entity : entities) {
+            String accessor = idAccessor(entity);
+            if (accessor != null) {
+                accessors.put(entity, accessor);
+            }
+        }
+        out.println();
+        out.println("    @SuppressWarnings(\"unchecked\")");
+        out.println("    static <T> IdAccessor<T> ids(Class<T> type) {");
+        for (Map.Entry<TypeElement, String> accessor : accessors.entrySet()) {
+            String entity = accessor.getKey().getQualifiedName().toString();
+            out.println("        if (type == " + entity + ".class) {");
+            out.println("            return (IdAccessor<T>) new IdAccessor<" + entity + ">() {");
+            out.println("                @Override");
+            out.println("                public Long getId(" + entity + " entity) {");
+            out.println("                    return entity." + getter(accessor.getKey(), idField(accessor.getKey())).getSimpleName() + "();");
+            out.println("                }");
+            out.println();
+            out.println("                @Override");
+            out.println("                public " + entity + " withId(" + entity + " entity, Long id) {");
+            out.println(accessor.getValue());
+            out.println("                }");
+            out.println("            };");
+            out.println("        }");
+        }
+        out.println("        return null;");
+        out.println("    }");
+    }
+
+    /**
+     * @return the body of withId, or null when the entity doesn't expose what it needs.
+     */
+    private String idAccessor(TypeElement entity) {
+        String indent = "                    ";
+        VariableElement id = idField(entity);
+        if (!entity.getModifiers().contains(Modifier.PUBLIC) || !types.isSameType(id.asType(), elements.getTypeElement("java.lang.Long").asType())) {
+            return skip(entity, "it isn't public or its @Id isn't a Long");
+        }
+        if (getter(entity, id) == null) {
+            return skip(entity, "it has no public getter for " + id.getSimpleName());
+        }
+        List<ExecutableElement> methods = ElementFilter.methodsIn(elements.getAllMembers(entity));
+        if (!id.getModifiers().contains(Modifier.FINAL)) {
+            String setter = "set" + capitalize(id.getSimpleName().toString());
+            for (ExecutableElement method : methods) {
+                if (isPublic(method) && method.getSimpleName().contentEquals(setter) && method.getParameters().size() == 1
+                        && types.isSameType(method.getParameters().get(0).asType(), id.asType())) {
+                    return indent + "entity." + setter + "(id);\n" + indent + "return entity;";
+                }
+            }
+            return skip(entity, "it has no public " + setter + "(Long)");
+        }
+        for (ExecutableElement method : methods) {
+            if (isPublic(method) && method.getSimpleName().contentEquals("withId") && method.getParameters().size() == 1
+                    && types.isSameType(method.getReturnType(), entity.asType())) {
+                return indent + "return entity.withId(id);";
+            }
+        }
+        List<VariableElement> fields = ElementFilter.fieldsIn(entity.getEnclosedElements()).stream()
+                .filter(f -> !f.getModifiers().contains(Modifier.STATIC))
+                .toList();
+        boolean hasConstructor = ElementFilter.constructorsIn(entity.getEnclosedElements()).stream()
+                .filter(MetadataProcessor::isPublic)
+                .anyMatch(c -> sameTypes(c.getParameters(), fields));
+        if (!hasConstructor) {
+            return skip(entity, "it has no withId(Long) nor a public constructor taking every field");
+        }
+        List<String> args = new ArrayList<>();
+        for (VariableElement field : fields) {
+            if (field.equals(id)) {
+                args.add("id");
+                continue;
+            }
+            ExecutableElement getter = getter(entity, field);
+            if (getter == null) {
+                return skip(entity, "it has no public getter for " + field.getSimpleName());
+            }
+            args.add("entity." + getter.getSimpleName() + "()");
+        }
+        return indent + "return new " + entity.getQualifiedName() + "(" + String.join(", ", args) + ");";
+    }
+
+    private VariableElement idField(TypeElement entity) {
+        TypeElement id = elements.getTypeElement(ID);
+        for (VariableElement field : ElementFilter.fieldsIn(entity.getEnclosedElements())) {
+            for (AnnotationMirror mirror : field.getAnnotationMirrors()) {
+                if (types.isSameType(mirror.getAnnotationType(), id.asType())) {
+                    return field;
+                }
+            }
+        }
+        throw new IllegalStateException("No @Id found on " + entity.getQualifiedName());
+    }
+
+    /**
+     * @return the public {@code getName()}, {@code isName()} or record style {@code name()} method returning the field.
+     */
+    private ExecutableElement getter(TypeElement entity, VariableElement field) {
+        String name = field.getSimpleName().toString();
+        Set<String> names = Set.of(name, "get" + capitalize(name), "is" + capitalize(name));
+        for (ExecutableElement method : ElementFilter.methodsIn(elements.getAllMembers(entity))) {
+            if (isPublic(method) && method.getParameters().isEmpty() && names.contains(method.getSimpleName().toString())
+                    && types.isSameType(method.getReturnType(), field.asType())) {
+                return method;
+            }
+        }
+        return null;
+    }
+
+    private boolean sameTypes(List<? extends VariableElement> parameters, List<VariableElement> fields) {
+        if (parameters.size() != fields.size()) {
+            return false;
+        }
+        for (int i = 0; i < fields.size(); i++) {
+            if (!types.isSameType(types.erasure(parameters.get(i).asType()), types.erasure(fields.get(i).asType()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String skip(Element entity, String reason) {
+        messager.printMessage(Diagnostic.Kind.WARNING, "No id accessor generated for " + entity + ", " + reason
+                + ". Its @Id is accessed by reflection.", entity);
+        return null;
+    }
+
+    private static boolean isPublic(Element element) {
+        return element.getModifiers().contains(Modifier.PUBLIC);
+    }
+
+    private static String capitalize(String name) {
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+}
@@ -0,0 +1,70 @@
+package com.ruquet.peopledb.repository;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * In-memory H2 databases for the benchmarks, created by {@link SchemaManager} and seeded with SQL
+ * so millions of people load in seconds.
+ * Every tenth person is a parent of the nine people after it, people are married in pairs and
+ * share one address per ten people, half of them with a business address too.
+ */
+final class BenchmarkDatabase {
+
+    private BenchmarkDatabase() {
+    }
+
+    /**
+     * The database lives as long as the connection, close it to drop it.
+     */
+    static Connection open(int people) throws SQLException {
+        Connection connection = DriverManager.getConnection("jdbc:h2:mem:people" + people);
+        new SchemaManager(connection).migrate();
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("""
+                    INSERT INTO ADDRESSES (STREET_ADDRESS, ADDRESS2, CITY, STATE, POSTCODE, COUNTY, REGION, COUNTRY)
+                    SELECT 'Street ' || X, NULL, 'City ' || MOD(X, 1000), 'BA', CAST(1000 + MOD(X, 9000) AS VARCHAR), 'County', 'WEST', 'Argentina'
+                    FROM SYSTEM_RANGE(1, %d)
+                    """.formatted(addresses(people)));
+            stmt.execute("""
+                    INSERT INTO PEOPLE (FIRST_NAME, LAST_NAME, DOB, SALARY, EMAIL, HOME_ADDRESS, BIZ_ADDRESS, SPOUSE, PARENT_ID)
+                    SELECT 'First' || X, 'Last' || MOD(X, 5000), DATEADD(SECOND, X * 97, TIMESTAMP '1950-01-01 00:00:00'),
+                           CAST(20000 + MOD(X * 31, 180000) AS DECIMAL(15,2)), 'person' || X || '@peopledb.com',
+                           MOD(X, %2$d) + 1,
+                           CASE WHEN MOD(X, 2) = 0 THEN MOD(X + 1, %2$d) + 1 END,
+                           NULL, NULL
+                    FROM SYSTEM_RANGE(1, %1$d)
+                    """.formatted(people, addresses(people)));
+            // linked once every person exists, for the foreign keys
+            stmt.execute("""
+                    UPDATE PEOPLE SET
+                    SPOUSE = CASE WHEN MOD(ID, 2) = 1 THEN LEAST(ID + 1, %1$d) ELSE ID - 1 END,
+                    PARENT_ID = CASE WHEN MOD(ID, 10) <> 0 AND ID > 10 THEN ID - MOD(ID, 10) END
+                    """.formatted(people));
+        }
+        return connection;
+    }
+
+    /**
+     * Drops what the benchmarks saved, leaving the seeded rows.
+     */
+    static void reset(Connection connection, int people) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("DELETE FROM PEOPLE WHERE ID > " + people);
+            stmt.execute("DELETE FROM ADDRESSES WHERE ID > " + addresses(people));
+        }
+    }
+
+    /**
+     * @return the id of the i-th seeded parent, wrapping around.
+     */
+    static long parentId(long i, int people) {
+        return (i % (people / 10) + 1) * 10;
+    }
+
+    private static int addresses(int people) {
+        return Math.max(people / 10, 1);
+    }
+}
@@ -0,0 +1,142 @@
+package com.ruquet.peopledb.repository;
+
+import com.ruquet.peopledb.model.Address;
+import com.ruquet.peopledb.model.Person;
+import com.ruquet.peopledb.model.Region;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The hot paths of {@link PeopleRepository} against in-memory H2, see {@link BenchmarkDatabase} for the data.
+ * Run with {@code gradle jmh}, which adds the gc profiler so allocations per operation are reported too.
+ * Rows saved during an iteration are deleted after it, so every iteration sees the same table sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class PeopleRepositoryBenchmark {
+    private static final int BATCH = 1000;
+    private static final int DELETE_BATCH = 100;
+    private static final ZonedDateTime DOB = ZonedDateTime.of(1990, 6, 22, 2, 22, 26, 0, ZoneId.of("-3"));
+
+    @Param({"10000", "1000000", "5000000"})
+    public int people;
+
+    private Connection connection;
+    private PeopleRepository repo;
+    private Person updated;
+    private long next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        connection = BenchmarkDatabase.open(people);
+        repo = new PeopleRepository(connection);
+        repo.setChangeTrackingCapacity(CrudRepository.DEFAULT_CHANGE_TRACKING_CAPACITY);
+        updated = repo.findById(BenchmarkDatabase.parentId(0, people)).orElseThrow();
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteSaved() throws SQLException {
+        BenchmarkDatabase.reset(connection, people);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        repo.close();
+        connection.close();
+    }
+
+    private static Person newPerson(long n) {
+        Person person = new Person("Bench" + n, "Mark", DOB);
+        person.setSalary(new BigDecimal("50000.00"));
+        person.setHomeAddress(new Address(null, "Street " + n, null, "Ituzaingo", "BA", "1714", "Provincia", Region.WEST, "Argentina"));
+        return person;
+    }
+
+    @Benchmark
+    public Person save() {
+        return repo.save(newPerson(next++));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public List<Person> saveAll() {
+        List<Person> batch = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            batch.add(newPerson(next++));
+        }
+        return repo.saveAll(batch);
+    }
+
+    /**
+     * Parents with their addresses, spouse and nine children.
+     */
+    @Benchmark
+    public Optional<Person> findById() {
+        return repo.findById(BenchmarkDatabase.parentId(next++, people));
+    }
+
+    @Benchmark
+    public List<Person> findAll() {
+        return repo.findAll();
+    }
+
+    @Benchmark
+    public Long getCount() {
+        return repo.getCount();
+    }
+
+    @Benchmark
+    public void update() {
+        updated.setSalary(BigDecimal.valueOf(next++ % 100_000, 2));
+        repo.update(updated);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DELETE_BATCH)
+    public void delete(SavedPeople saved) {
+        repo.delete(saved.people);
+    }
+
+    /**
+     * People saved before every call of {@link #delete(SavedPeople)} so it always has rows to delete.
+     */
+    @State(Scope.Thread)
+    public static class SavedPeople {
+        Person[] people;
+
+        @Setup(Level.Invocation)
+        public void save(PeopleRepositoryBenchmark benchmark) {
+            List<Person> batch = new ArrayList<>(DELETE_BATCH);
+            for (int i = 0; i < DELETE_BATCH; i++) {
+                batch.add(new Person("Deleted" + i, "Mark", DOB));
+            }
+            people = benchmark.repo.saveAll(batch).toArray(Person[]::new);
+        }
+    }
+}
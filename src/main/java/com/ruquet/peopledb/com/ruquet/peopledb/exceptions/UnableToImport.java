@@ -0,0 +1,7 @@
+package com.ruquet.peopledb.com.ruquet.peopledb.exceptions;
+
+public class UnableToImport extends RuntimeException {
+    public UnableToImport(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
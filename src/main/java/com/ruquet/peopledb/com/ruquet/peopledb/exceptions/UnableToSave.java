@@ -4,4 +4,8 @@ public class UnableToSave extends RuntimeException {
     public UnableToSave(String message) {
         super(message);
     }
+
+    public UnableToSave(String message, Throwable cause) {
+        super(message, cause);
+    }
 }
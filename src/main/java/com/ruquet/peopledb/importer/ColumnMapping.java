@@ -0,0 +1,109 @@
+package com.ruquet.peopledb.importer;
+
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Tells the importer which CSV column holds each {@link CsvColumn} and how dates and times are written.
+ * Columns that are not mapped are left empty on the imported {@code Person}/{@code Address}.
+ */
+public class ColumnMapping {
+    private final Map<CsvColumn, Integer> indexes = new EnumMap<>(CsvColumn.class);
+    private String delimiter = ",";
+    private DateTimeFormatter dateFormat = DateTimeFormatter.ofPattern("M/d/yyyy");
+    private DateTimeFormatter timeFormat = DateTimeFormatter.ofPattern("hh:mm:ss a").withLocale(Locale.US);
+    private ZoneId zone = ZoneId.of("+0");
+    private String defaultCountry;
+
+    /**
+     * @return the layout of the Hr5m sample files, with the city, county, state, zip and region columns
+     * imported as the person's home address.
+     */
+    public static ColumnMapping hr5m() {
+        return new ColumnMapping()
+                .map(CsvColumn.FIRST_NAME, 2)
+                .map(CsvColumn.LAST_NAME, 4)
+                .map(CsvColumn.EMAIL, 6)
+                .map(CsvColumn.DOB_DATE, 10)
+                .map(CsvColumn.DOB_TIME, 11)
+                .map(CsvColumn.SALARY, 25)
+                .map(CsvColumn.COUNTY, 30)
+                .map(CsvColumn.CITY, 31)
+                .map(CsvColumn.STATE, 32)
+                .map(CsvColumn.POSTCODE, 33)
+                .map(CsvColumn.REGION, 34)
+                .defaultCountry("United States");
+    }
+
+    public ColumnMapping map(CsvColumn column, int index) {
+        if (index < 0) {
+            throw new IllegalArgumentException("Column index can't be negative: " + index);
+        }
+        indexes.put(column, index);
+        return this;
+    }
+
+    public ColumnMapping unmap(CsvColumn column) {
+        indexes.remove(column);
+        return this;
+    }
+
+    public ColumnMapping delimiter(String delimiter) {
+        this.delimiter = delimiter;
+        return this;
+    }
+
+    public ColumnMapping dateFormat(DateTimeFormatter dateFormat) {
+        this.dateFormat = dateFormat;
+        return this;
+    }
+
+    public ColumnMapping timeFormat(DateTimeFormatter timeFormat) {
+        this.timeFormat = timeFormat;
+        return this;
+    }
+
+    public ColumnMapping zone(ZoneId zone) {
+        this.zone = zone;
+        return this;
+    }
+
+    public ColumnMapping defaultCountry(String defaultCountry) {
+        this.defaultCountry = defaultCountry;
+        return this;
+    }
+
+    /**
+     * @return the index of the column, or -1 when it isn't mapped.
+     */
+    public int indexOf(CsvColumn column) {
+        return indexes.getOrDefault(column, -1);
+    }
+
+    public boolean isMapped(CsvColumn column) {
+        return indexes.containsKey(column);
+    }
+
+    public String getDelimiter() {
+        return delimiter;
+    }
+
+    public DateTimeFormatter getDateFormat() {
+        return dateFormat;
+    }
+
+    public DateTimeFormatter getTimeFormat() {
+        return timeFormat;
+    }
+
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    public String getDefaultCountry() {
+        return defaultCountry;
+    }
+}
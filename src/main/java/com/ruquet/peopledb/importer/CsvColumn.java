@@ -0,0 +1,18 @@
+package com.ruquet.peopledb.importer;
+
+public enum CsvColumn {
+    FIRST_NAME,
+    LAST_NAME,
+    EMAIL,
+    DOB_DATE,
+    DOB_TIME,
+    SALARY,
+    STREET_ADDRESS,
+    ADDRESS2,
+    CITY,
+    STATE,
+    POSTCODE,
+    COUNTY,
+    REGION,
+    COUNTRY
+}
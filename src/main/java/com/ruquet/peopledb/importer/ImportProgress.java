@@ -0,0 +1,68 @@
+package com.ruquet.peopledb.importer;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live counters of a running import. Safe to read from any thread while the import is going on.
+ */
+public class ImportProgress {
+    private final LongAdder linesRead = new LongAdder();
+    private final LongAdder rowsImported = new LongAdder();
+    private final LongAdder rowsRejected = new LongAdder();
+    private final long startNanos = System.nanoTime();
+    private volatile long endNanos;
+
+    void lineRead() {
+        linesRead.increment();
+    }
+
+    void rowsImported(int count) {
+        rowsImported.add(count);
+    }
+
+    void rowRejected() {
+        rowsRejected.increment();
+    }
+
+    void finish() {
+        endNanos = System.nanoTime();
+    }
+
+    public long getLinesRead() {
+        return linesRead.sum();
+    }
+
+    public long getRowsImported() {
+        return rowsImported.sum();
+    }
+
+    public long getRowsRejected() {
+        return rowsRejected.sum();
+    }
+
+    public boolean isFinished() {
+        return endNanos != 0;
+    }
+
+    public Duration getElapsed() {
+        long end = isFinished() ? endNanos : System.nanoTime();
+        return Duration.ofNanos(end - startNanos);
+    }
+
+    public double getRowsPerSecond() {
+        long nanos = getElapsed().toNanos();
+        return nanos == 0 ? 0 : getRowsImported() * 1_000_000_000d / nanos;
+    }
+
+    @Override
+    public String toString() {
+        return "ImportProgress{" +
+                "linesRead=" + getLinesRead() +
+                ", rowsImported=" + getRowsImported() +
+                ", rowsRejected=" + getRowsRejected() +
+                ", rowsPerSecond=" + String.format("%.1f", getRowsPerSecond()) +
+                ", elapsed=" + getElapsed() +
+                '}';
+    }
+}
@@ -0,0 +1,240 @@
+package com.ruquet.peopledb.importer;
+
+import com.ruquet.peopledb.com.ruquet.peopledb.exceptions.UnableToImport;
+import com.ruquet.peopledb.model.Person;
+import com.ruquet.peopledb.repository.PeopleRepository;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+/**
+ * Imports people from a CSV file through a pipeline: the calling thread reads lines in chunks,
+ * parse workers turn them into {@link Person}s and one writer per connection saves them in batches,
+ * committing every {@code commitInterval} rows. Both hand-offs go through bounded queues,
+ * so a slow database slows the reader down instead of filling the heap.
+ * Rows that can't be parsed are counted as rejected and skipped. When a writer fails, the reader and every worker
+ * stop at their next hand-off, and the other writers roll back what they didn't commit yet.
+ */
+public class PeopleImporter {
+    private static final long QUEUE_TIMEOUT_MS = 100;
+
+    private final PersonCsvParser parser;
+    private final List<Connection> connections;
+    private int parseWorkers = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    private int queueCapacity = 16;
+    private int batchSize = 1000;
+    private int commitInterval = 10_000;
+    private int headerLines = 1;
+    private volatile ImportProgress progress;
+
+    /**
+     * @param connections one writer runs on each connection, they shouldn't be shared with anything else during the import.
+     */
+    public PeopleImporter(ColumnMapping mapping, Connection... connections) {
+        if (connections.length == 0) {
+            throw new IllegalArgumentException("At least one connection is needed to import");
+        }
+        this.parser = new PersonCsvParser(mapping);
+        this.connections = List.of(connections);
+    }
+
+    public ImportProgress importFile(Path csv) throws IOException {
+        ImportProgress progress = new ImportProgress();
+        this.progress = progress;
+        BlockingQueue<List<String>> lines = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<List<Person>> people = new ArrayBlockingQueue<>(queueCapacity);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicInteger runningParsers = new AtomicInteger(parseWorkers);
+        ExecutorService executor = Executors.newFixedThreadPool(parseWorkers + connections.size());
+        List<Future<?>> tasks = new ArrayList<>();
+        try (Stream<String> stream = Files.lines(csv)) {
+            for (int i = 0; i < parseWorkers; i++) {
+                tasks.add(executor.submit(() -> parse(lines, people, runningParsers, progress, failure)));
+            }
+            for (Connection connection : connections) {
+                tasks.add(executor.submit(() -> write(connection, people, progress, failure)));
+            }
+            Iterator<String> iterator = stream.skip(headerLines).iterator();
+            List<String> chunk = new ArrayList<>(batchSize);
+            while (iterator.hasNext()) {
+                chunk.add(iterator.next());
+                progress.lineRead();
+                if (chunk.size() == batchSize || !iterator.hasNext()) {
+                    put(lines, chunk, failure);
+                    chunk = new ArrayList<>(batchSize);
+                }
+            }
+            for (int i = 0; i < parseWorkers; i++) {
+                put(lines, List.of(), failure);
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } catch (ExecutionException e) {
+            throw new UnableToImport("Import of " + csv + " failed", failure.get() != null ? failure.get() : e.getCause());
+        } catch (InterruptedException e) {
+            if (failure.get() != null) {
+                throw new UnableToImport("Import of " + csv + " failed", failure.get());
+            }
+            Thread.currentThread().interrupt();
+            throw new UnableToImport("Import of " + csv + " was interrupted", e);
+        } finally {
+            executor.shutdownNow();
+            progress.finish();
+        }
+        return progress;
+    }
+
+    private Void parse(BlockingQueue<List<String>> lines, BlockingQueue<List<Person>> people,
+                       AtomicInteger runningParsers, ImportProgress progress, AtomicReference<Throwable> failure) throws InterruptedException {
+        List<String> chunk;
+        while (!(chunk = take(lines, failure)).isEmpty()) {
+            List<Person> parsed = new ArrayList<>(chunk.size());
+            for (String line : chunk) {
+                try {
+                    parsed.add(parser.parse(line));
+                } catch (RuntimeException e) {
+                    progress.rowRejected();
+                }
+            }
+            if (!parsed.isEmpty()) {
+                put(people, parsed, failure);
+            }
+        }
+        if (runningParsers.decrementAndGet() == 0) {
+            for (int i = 0; i < connections.size(); i++) {
+                put(people, List.of(), failure);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Leaves the connection as it found it: what wasn't committed is rolled back when the writer stops early,
+     * however it stops, and its auto-commit mode is restored.
+     */
+    private Void write(Connection connection, BlockingQueue<List<Person>> people,
+                       ImportProgress progress, AtomicReference<Throwable> failure) throws SQLException, InterruptedException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        boolean done = false;
+        boolean interrupted = false;
+        try (PeopleRepository repository = new PeopleRepository(connection)) {
+            repository.setBatchSize(batchSize);
+            long uncommitted = 0;
+            List<Person> chunk;
+            while (!(chunk = take(people, failure)).isEmpty()) {
+                repository.saveAll(chunk);
+                uncommitted += chunk.size();
+                if (uncommitted >= commitInterval) {
+                    connection.commit();
+                    progress.rowsImported((int) uncommitted);
+                    uncommitted = 0;
+                }
+            }
+            connection.commit();
+            progress.rowsImported((int) uncommitted);
+            done = true;
+        } catch (InterruptedException e) {
+            interrupted = true;
+            throw e;
+        } catch (SQLException | RuntimeException e) {
+            failure.compareAndSet(null, e);
+            throw e;
+        } finally {
+            // JDBC calls are made before the interrupt is set again, some drivers fail on an interrupted thread
+            try {
+                if (!done) {
+                    connection.rollback();
+                }
+                connection.setAutoCommit(autoCommit);
+            } catch (SQLException e) {
+                if (done) {
+                    throw e;
+                }
+                // the connection is broken, the failure that stopped the writer says more
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @throws InterruptedException also when the import failed elsewhere meanwhile.
+     */
+    private static <E> void put(BlockingQueue<E> queue, E element, AtomicReference<Throwable> failure) throws InterruptedException {
+        do {
+            if (failure.get() != null) {
+                throw new InterruptedException("Import aborted");
+            }
+        } while (!queue.offer(element, QUEUE_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * @throws InterruptedException also when the import failed elsewhere meanwhile.
+     */
+    private static <E> E take(BlockingQueue<E> queue, AtomicReference<Throwable> failure) throws InterruptedException {
+        E element;
+        do {
+            if (failure.get() != null) {
+                throw new InterruptedException("Import aborted");
+            }
+        } while ((element = queue.poll(QUEUE_TIMEOUT_MS, TimeUnit.MILLISECONDS)) == null);
+        return element;
+    }
+
+    /**
+     * @return the progress of the running import, or of the last one when none is running.
+     */
+    public ImportProgress getProgress() {
+        return progress;
+    }
+
+    public void setParseWorkers(int parseWorkers) {
+        if (parseWorkers < 1) {
+            throw new IllegalArgumentException("There must be at least one parse worker");
+        }
+        this.parseWorkers = parseWorkers;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("Queue capacity must be greater than 0");
+        }
+        this.queueCapacity = queueCapacity;
+    }
+
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be greater than 0");
+        }
+        this.batchSize = batchSize;
+    }
+
+    public void setCommitInterval(int commitInterval) {
+        if (commitInterval < 1) {
+            throw new IllegalArgumentException("Commit interval must be greater than 0");
+        }
+        this.commitInterval = commitInterval;
+    }
+
+    public void setHeaderLines(int headerLines) {
+        if (headerLines < 0) {
+            throw new IllegalArgumentException("Header lines can't be negative");
+        }
+        this.headerLines = headerLines;
+    }
+}
@@ -0,0 +1,80 @@
+package com.ruquet.peopledb.importer;
+
+import com.ruquet.peopledb.model.Address;
+import com.ruquet.peopledb.model.Person;
+import com.ruquet.peopledb.model.Region;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZonedDateTime;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+class PersonCsvParser {
+    private static final Set<CsvColumn> ADDRESS_COLUMNS = EnumSet.of(CsvColumn.STREET_ADDRESS, CsvColumn.ADDRESS2,
+            CsvColumn.CITY, CsvColumn.STATE, CsvColumn.POSTCODE, CsvColumn.COUNTY, CsvColumn.REGION, CsvColumn.COUNTRY);
+
+    private final ColumnMapping mapping;
+    private final Pattern delimiter;
+    private final boolean hasAddress;
+
+    PersonCsvParser(ColumnMapping mapping) {
+        for (CsvColumn required : EnumSet.of(CsvColumn.FIRST_NAME, CsvColumn.LAST_NAME, CsvColumn.DOB_DATE)) {
+            if (!mapping.isMapped(required)) {
+                throw new IllegalArgumentException("Column mapping is missing " + required);
+            }
+        }
+        this.mapping = mapping;
+        this.delimiter = Pattern.compile(Pattern.quote(mapping.getDelimiter()));
+        this.hasAddress = ADDRESS_COLUMNS.stream().anyMatch(mapping::isMapped);
+        if (hasAddress && !mapping.isMapped(CsvColumn.REGION)) {
+            throw new IllegalArgumentException("Column mapping needs " + CsvColumn.REGION + " to import addresses");
+        }
+    }
+
+    /**
+     * @throws RuntimeException when the line doesn't have the mapped columns or a value can't be parsed.
+     */
+    Person parse(String line) {
+        String[] s = delimiter.split(line, -1);
+        Person person = new Person(value(s, CsvColumn.FIRST_NAME), value(s, CsvColumn.LAST_NAME), parseDob(s));
+        String salary = value(s, CsvColumn.SALARY);
+        if (salary != null && !salary.isBlank()) {
+            person.setSalary(new BigDecimal(salary.trim()));
+        }
+        person.setEmail(value(s, CsvColumn.EMAIL));
+        if (hasAddress) {
+            person.setHomeAddress(parseAddress(s));
+        }
+        return person;
+    }
+
+    private ZonedDateTime parseDob(String[] s) {
+        LocalDate dob = LocalDate.parse(value(s, CsvColumn.DOB_DATE), mapping.getDateFormat());
+        String time = value(s, CsvColumn.DOB_TIME);
+        LocalTime tob = time == null ? LocalTime.MIDNIGHT : LocalTime.parse(time, mapping.getTimeFormat());
+        return ZonedDateTime.of(LocalDateTime.of(dob, tob), mapping.getZone());
+    }
+
+    private Address parseAddress(String[] s) {
+        Region region = Region.valueOf(value(s, CsvColumn.REGION).trim().toUpperCase());
+        String country = value(s, CsvColumn.COUNTRY);
+        return new Address(null, value(s, CsvColumn.STREET_ADDRESS), value(s, CsvColumn.ADDRESS2),
+                value(s, CsvColumn.CITY), value(s, CsvColumn.STATE), value(s, CsvColumn.POSTCODE),
+                value(s, CsvColumn.COUNTY), region, country == null ? mapping.getDefaultCountry() : country);
+    }
+
+    private String value(String[] s, CsvColumn column) {
+        int idx = mapping.indexOf(column);
+        if (idx == -1) {
+            return null;
+        }
+        if (idx >= s.length) {
+            throw new IllegalArgumentException("Line has no column " + idx + " for " + column);
+        }
+        return s[idx];
+    }
+}
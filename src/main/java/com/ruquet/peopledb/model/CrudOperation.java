@@ -7,5 +7,10 @@ public enum CrudOperation {
     DELETE_ONE,
     DELETE_MANY,
     FIND_BY_ID,
-    FIND_ALL
+    FIND_ALL,
+    STREAM_ALL,
+    FIND_PAGE,
+    FIND_ALL_BY_ID,
+    AGGREGATE,
+    SCAN_RANGE
 }
@@ -0,0 +1,36 @@
+package com.ruquet.peopledb.model;
+
+import java.util.function.Supplier;
+
+/**
+ * A value that is either known or loaded on the first {@link #get()}, then kept. Not thread safe, like the entities holding it.
+ */
+final class Lazy<T> {
+    private Supplier<? extends T> loader;
+    private T value;
+
+    private Lazy(T value, Supplier<? extends T> loader) {
+        this.value = value;
+        this.loader = loader;
+    }
+
+    static <T> Lazy<T> of(T value) {
+        return new Lazy<>(value, null);
+    }
+
+    static <T> Lazy<T> loading(Supplier<? extends T> loader) {
+        return new Lazy<>(null, loader);
+    }
+
+    T get() {
+        if (loader != null) {
+            value = loader.get();
+            loader = null;
+        }
+        return value;
+    }
+
+    boolean isLoaded() {
+        return loader == null;
+    }
+}
@@ -6,10 +6,12 @@ import java.math.BigDecimal;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Supplier;
 
 public class Person implements Entity {
     @Id
@@ -20,10 +22,10 @@ public class Person implements Entity {
     private ZonedDateTime dob;
     private BigDecimal salary = new BigDecimal("0");
     private String email;
-    private Optional<Address> homeAddress = Optional.empty();
-    private Optional<Address> businessAddress = Optional.empty();
-    private Optional<Person> spouse = Optional.empty();
-    private Set<Person> children = new HashSet<>();
+    private Lazy<Optional<Address>> homeAddress = Lazy.of(Optional.empty());
+    private Lazy<Optional<Address>> businessAddress = Lazy.of(Optional.empty());
+    private Lazy<Optional<Person>> spouse = Lazy.of(Optional.empty());
+    private Lazy<Set<Person>> children = Lazy.of(new HashSet<>());
     private Optional<Person> parent = Optional.empty();
 
 
@@ -117,35 +119,89 @@ public class Person implements Entity {
 
 
     public void setHomeAddress(Address homeAddress) {
-        this.homeAddress = Optional.ofNullable(homeAddress);
+        this.homeAddress = Lazy.of(Optional.ofNullable(homeAddress));
+    }
+
+    /**
+     * The home address is loaded on the first {@link #getHomeAddress()}.
+     */
+    public void setHomeAddressLoader(Supplier<Optional<Address>> loader) {
+        this.homeAddress = Lazy.loading(loader);
     }
 
     public Optional<Address> getHomeAddress() {
-        return homeAddress;
+        return homeAddress.get();
+    }
+
+    public boolean isHomeAddressLoaded() {
+        return homeAddress.isLoaded();
     }
 
 
     public Optional<Address> getBusinessAddress() {
-        return businessAddress;
+        return businessAddress.get();
     }
 
     public void setBusinessAddress(Address businessAddress) {
-        this.businessAddress = Optional.ofNullable(businessAddress);
+        this.businessAddress = Lazy.of(Optional.ofNullable(businessAddress));
+    }
+
+    /**
+     * The business address is loaded on the first {@link #getBusinessAddress()}.
+     */
+    public void setBusinessAddressLoader(Supplier<Optional<Address>> loader) {
+        this.businessAddress = Lazy.loading(loader);
+    }
+
+    public boolean isBusinessAddressLoaded() {
+        return businessAddress.isLoaded();
     }
 
     public void setSpouse(Person spouse) {
-        this.spouse = Optional.ofNullable(spouse);
+        this.spouse = Lazy.of(Optional.ofNullable(spouse));
+    }
+
+    /**
+     * The spouse is loaded on the first {@link #getSpouse()}.
+     */
+    public void setSpouseLoader(Supplier<Optional<Person>> loader) {
+        this.spouse = Lazy.loading(loader);
     }
 
     public Optional<Person> getSpouse() {
-        return spouse;
+        return spouse.get();
+    }
+
+    public boolean isSpouseLoaded() {
+        return spouse.isLoaded();
     }
 
+    /**
+     * Loads the children first when they're lazy, so they're added to the loaded ones.
+     */
     public void addChild(Person child) {
-        children.add(child);
+        children.get().add(child);
         child.setParent(this);
     }
 
+    /**
+     * The children are loaded on the first {@link #getChildren()} or {@link #addChild(Person)}, and get this person as parent.
+     */
+    public void setChildrenLoader(Supplier<? extends Collection<Person>> loader) {
+        this.children = Lazy.loading(() -> {
+            Set<Person> loaded = new HashSet<>();
+            for (Person child : loader.get()) {
+                loaded.add(child);
+                child.setParent(this);
+            }
+            return loaded;
+        });
+    }
+
+    public boolean isChildrenLoaded() {
+        return children.isLoaded();
+    }
+
     public void setParent(Person parent) {
         this.parent = Optional.ofNullable(parent);
     }
@@ -155,6 +211,6 @@ public class Person implements Entity {
     }
 
     public Set<Person> getChildren() {
-        return children;
+        return children.get();
     }
 }
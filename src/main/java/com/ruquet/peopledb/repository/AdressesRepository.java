@@ -1,26 +1,90 @@
 package com.ruquet.peopledb.repository;
 
 import com.ruquet.peopledb.anotation.SQL;
+import com.ruquet.peopledb.com.ruquet.peopledb.exceptions.UnableToSave;
 import com.ruquet.peopledb.model.Address;
 import com.ruquet.peopledb.model.CrudOperation;
 import com.ruquet.peopledb.model.Region;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
+/**
+ * {@link #enableDeduplication(int)} stores every address once: saving one whose content is already stored reuses
+ * that row. Addresses are told apart by a SHA-256 hash of their fields, kept in CONTENT_HASH under a unique index,
+ * which needs version 2 of the {@link SchemaManager} schema.
+ */
 public class AdressesRepository extends CrudRepository<Address> {
+    static final String FIND_BY_CONTENT_HASH_SQL = "SELECT CONTENT_HASH, ID FROM ADDRESSES WHERE CONTENT_HASH IN (:ids)";
+    private static final String SAVE_WITH_CONTENT_HASH_SQL = """
+            INSERT INTO ADDRESSES (STREET_ADDRESS, ADDRESS2, CITY, STATE, POSTCODE, COUNTY, REGION, COUNTRY, CONTENT_HASH)
+            VALUES(?,?,?,?,?,?,?,?,?)
+            """;
+    private static final String SET_CONTENT_HASH_SQL = "UPDATE ADDRESSES SET CONTENT_HASH=? WHERE ID=?";
+    static final String COMPACTION_SCAN_SQL = """
+            SELECT ID, STREET_ADDRESS, ADDRESS2, CITY, STATE, POSTCODE, COUNTY, REGION, COUNTRY, CONTENT_HASH
+            FROM ADDRESSES
+            ORDER BY ID
+            """;
+    private static final String MOVE_HOME_ADDRESS_SQL = "UPDATE PEOPLE SET HOME_ADDRESS=? WHERE HOME_ADDRESS=?";
+    private static final String MOVE_BIZ_ADDRESS_SQL = "UPDATE PEOPLE SET BIZ_ADDRESS=? WHERE BIZ_ADDRESS=?";
+    private static final String DELETE_DUPLICATE_SQL = "DELETE FROM ADDRESSES WHERE ID=?";
+    static final List<String> COMPACTION_SQL = List.of(SET_CONTENT_HASH_SQL, MOVE_HOME_ADDRESS_SQL, MOVE_BIZ_ADDRESS_SQL, DELETE_DUPLICATE_SQL);
+    private static final String UNIQUE_VIOLATION = "23505";
+
+    private record StoredAddress(Address address, byte[] contentHash) {
+    }
+
+    private volatile Deduplication deduplication;
+
     public AdressesRepository(Connection connection) throws SQLException {
         super(connection);
     }
 
+    public AdressesRepository(ConnectionPool pool) {
+        super(pool);
+    }
+
+    AdressesRepository(ConnectionSource source) {
+        super(source, false);
+    }
+
+    @Override
+    protected String getTableName() {
+        return "ADDRESSES";
+    }
+
     @Override
     @SQL(operationType = CrudOperation.FIND_BY_ID, value = """
             SELECT ID, STREET_ADDRESS, ADDRESS2, CITY, STATE, POSTCODE, COUNTY, REGION, COUNTRY
             FROM ADDRESSES 
             WHERE ID = ?
             """)
+    @SQL(operationType = CrudOperation.FIND_ALL_BY_ID, value = """
+            SELECT ID, STREET_ADDRESS, ADDRESS2, CITY, STATE, POSTCODE, COUNTY, REGION, COUNTRY
+            FROM ADDRESSES
+            WHERE ID IN (:ids)
+            """)
+    @SQL(operationType = CrudOperation.SCAN_RANGE, value = """
+            SELECT ID, STREET_ADDRESS, ADDRESS2, CITY, STATE, POSTCODE, COUNTY, REGION, COUNTRY
+            FROM ADDRESSES
+            WHERE ID BETWEEN ? AND ?
+            ORDER BY ID
+            """)
     Address extractEntityFromResultSet(ResultSet rs) throws SQLException {
         long id = rs.getLong("ID");
         String streetAddress = rs.getString("STREET_ADDRESS");
@@ -52,7 +116,272 @@ public class AdressesRepository extends CrudRepository<Address> {
     }
 
     @Override
+    @SQL(operationType = CrudOperation.UPDATE, value = """
+            UPDATE ADDRESSES SET STREET_ADDRESS=?, ADDRESS2=?, CITY=?, STATE=?, POSTCODE=?, COUNTY=?, REGION=?, COUNTRY=?
+            WHERE ID=?
+            """)
     void mapForUpdate(Address entity, PreparedStatement ps) throws SQLException {
+        mapForSave(entity, ps);
+    }
+
+    /**
+     * With deduplication on, the addresses whose content is stored get the id of that row instead of being inserted:
+     * their hashes are looked up in the index, then the ones it misses in the database, in one query. The rest is
+     * inserted once per content, with its hash. When another writer stored the same content meanwhile, the unique
+     * index rejects the batch and the hashes are looked up again before inserting what's still missing.
+     * On a connection in auto-commit the ids are indexed right away, in a transaction only once it commits.
+     */
+    @Override
+    protected List<Address> saveBatch(List<Address> batch) throws UnableToSave {
+        Deduplication deduplication = this.deduplication;
+        if (deduplication == null) {
+            return super.saveBatch(batch);
+        }
+        List<ByteBuffer> hashes = new ArrayList<>(batch.size());
+        Map<ByteBuffer, Long> ids = new HashMap<>();
+        Map<ByteBuffer, Address> missing = new LinkedHashMap<>();
+        for (Address address : batch) {
+            ByteBuffer hash = ByteBuffer.wrap(contentHash(address));
+            hashes.add(hash);
+            Long id = deduplication.index.get(hash);
+            if (id != null) {
+                ids.put(hash, id);
+            } else {
+                missing.putIfAbsent(hash, address);
+            }
+        }
+        boolean autoCommit;
+        // one session for the lookup and the insert, so both run on the connection the caller may have open
+        try (Session session = connectionSource().open()) {
+            autoCommit = session.connection().getAutoCommit();
+            findByContentHash(missing.keySet(), ids);
+            missing.keySet().removeAll(ids.keySet());
+            if (!missing.isEmpty()) {
+                insertMissing(new ArrayList<>(missing.keySet()), new ArrayList<>(missing.values()), ids);
+            }
+        } catch (SQLException e) {
+            throw new UnableToSave("Tried to save a batch of " + batch.size() + " addresses", e);
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            Long id = ids.get(hashes.get(i));
+            if (autoCommit) {
+                deduplication.index.put(hashes.get(i), id);
+            }
+            batch.set(i, withId(batch.get(i), id));
+        }
+        batch.forEach(this::invalidateCached);
+        return batch;
+    }
+
+    /**
+     * Indexes the ids of addresses saved in a transaction once it committed. Until then they're left out of the
+     * index, so a rollback never leaves it an id that doesn't exist.
+     */
+    void committed(List<Address> saved) {
+        Deduplication deduplication = this.deduplication;
+        if (deduplication == null) {
+            return;
+        }
+        for (Address address : saved) {
+            deduplication.index.put(ByteBuffer.wrap(contentHash(address)), address.id());
+        }
+    }
+
+    private void insertMissing(List<ByteBuffer> hashes, List<Address> addresses, Map<ByteBuffer, Long> ids) {
+        try {
+            insert(SAVE_WITH_CONTENT_HASH_SQL, addresses, this::mapForSaveWithContentHash);
+        } catch (UnableToSave e) {
+            if (!isUniqueViolation(e)) {
+                throw e;
+            }
+            // also finds the rows of the batch inserted before the one rejected
+            findByContentHash(hashes, ids);
+            List<ByteBuffer> stillMissing = new ArrayList<>();
+            List<Address> toInsert = new ArrayList<>();
+            for (int i = 0; i < hashes.size(); i++) {
+                if (!ids.containsKey(hashes.get(i))) {
+                    stillMissing.add(hashes.get(i));
+                    toInsert.add(addresses.get(i));
+                }
+            }
+            hashes = stillMissing;
+            addresses = toInsert;
+            insert(SAVE_WITH_CONTENT_HASH_SQL, addresses, this::mapForSaveWithContentHash);
+        }
+        for (int i = 0; i < hashes.size(); i++) {
+            ids.put(hashes.get(i), addresses.get(i).id());
+        }
+    }
+
+    private void mapForSaveWithContentHash(Address entity, PreparedStatement ps) throws SQLException {
+        mapForSave(entity, ps);
+        ps.setBytes(9, contentHash(entity));
+    }
+
+    private void findByContentHash(Collection<ByteBuffer> hashes, Map<ByteBuffer, Long> ids) {
+        if (hashes.isEmpty()) {
+            return;
+        }
+        List<byte[]> keys = hashes.stream().map(ByteBuffer::array).toList();
+        queryByIds(CrudOperation.FIND_ALL_BY_ID, FIND_BY_CONTENT_HASH_SQL, keys,
+                rs -> Map.entry(ByteBuffer.wrap(rs.getBytes(1)), rs.getLong(2)))
+                .forEach(row -> ids.put(row.getKey(), row.getValue()));
+    }
+
+    private static boolean isUniqueViolation(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sqlException) {
+                for (SQLException next = sqlException; next != null; next = next.getNextException()) {
+                    if (UNIQUE_VIOLATION.equals(next.getSQLState())) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private static Address withId(Address address, Long id) {
+        return new Address(id, address.streetAddres(), address.address2(), address.city(), address.state(), address.postCode(),
+                address.county(), address.region(), address.country());
+    }
+
+    /**
+     * SHA-256 of every field but the id, each one length prefixed so no two addresses hash the same fields
+     * the same way, and null told apart from empty.
+     */
+    static byte[] contentHash(Address address) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        String region = address.region() == null ? null : address.region().toString();
+        for (String field : new String[]{address.streetAddres(), address.address2(), address.city(), address.state(),
+                address.postCode(), address.county(), region, address.country()}) {
+            if (field == null) {
+                digest.update((byte) 0);
+            } else {
+                byte[] bytes = field.getBytes(StandardCharsets.UTF_8);
+                digest.update((byte) 1);
+                digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(bytes.length).array());
+                digest.update(bytes);
+            }
+        }
+        return digest.digest();
+    }
+
+    /**
+     * Saves addresses with deduplication from now on, keeping the ids of up to {@code indexSize} committed hashes
+     * in memory. Addresses updated or deleted through the repository leave the index, updated ones also lose their
+     * hash, since their content changed, so they're never reused. So do the duplicates deleted by a compaction. The
+     * index doesn't see addresses deleted by other writers, enable deduplication again to start from an empty one.
+     */
+    public synchronized void enableDeduplication(int indexSize) {
+        if (indexSize < 1) {
+            throw new IllegalArgumentException("The content index must hold at least one address");
+        }
+        disableDeduplication();
+        Deduplication deduplication = new Deduplication(new ContentIndex(indexSize));
+        addEntityListener(deduplication);
+        this.deduplication = deduplication;
+    }
+
+    public synchronized void disableDeduplication() {
+        if (deduplication != null) {
+            removeEntityListener(deduplication);
+            deduplication = null;
+        }
+    }
+
+    public boolean isDeduplicating() {
+        return deduplication != null;
+    }
+
+    /**
+     * Merges the addresses stored more than once into the first one stored: the people living or working at
+     * a duplicate are moved to it, the duplicates are deleted and it gets its hash, so deduplicated saves reuse it.
+     * A one-off job, i.e. before enabling deduplication on a table saved without it, meant to run with nothing
+     * else writing addresses. Interrupted, it can run again. People loaded before still hold the deleted ids.
+     * @return the number of duplicates deleted.
+     */
+    public long compactDuplicates() {
+        Map<ByteBuffer, Long> firstIds = new HashMap<>();
+        List<long[]> duplicates = new ArrayList<>();
+        List<StoredAddress> unhashed = new ArrayList<>();
+        List<Long> staleHashes = new ArrayList<>();
+        try (Stream<StoredAddress> rows = stream(COMPACTION_SCAN_SQL,
+                rs -> new StoredAddress(extractEntityFromResultSet(rs), rs.getBytes("CONTENT_HASH")))) {
+            rows.forEach(row -> {
+                byte[] hash = contentHash(row.address());
+                Long firstId = firstIds.putIfAbsent(ByteBuffer.wrap(hash), row.address().id());
+                if (firstId != null) {
+                    duplicates.add(new long[]{row.address().id(), firstId});
+                } else if (!Arrays.equals(hash, row.contentHash())) {
+                    unhashed.add(new StoredAddress(row.address(), hash));
+                    if (row.contentHash() != null) {
+                        staleHashes.add(row.address().id());
+                    }
+                }
+            });
+        }
+        StatementBinder<long[]> move = (duplicate, ps) -> {
+            ps.setLong(1, duplicate[1]);
+            ps.setLong(2, duplicate[0]);
+        };
+        executeInBatches(MOVE_HOME_ADDRESS_SQL, duplicates, move);
+        executeInBatches(MOVE_BIZ_ADDRESS_SQL, duplicates, move);
+        executeInBatches(DELETE_DUPLICATE_SQL, duplicates, (duplicate, ps) -> ps.setLong(1, duplicate[0]));
+        // rows updated without deduplication may hold the hash of other content, that content's row takes it
+        executeInBatches(SET_CONTENT_HASH_SQL, staleHashes, (id, ps) -> {
+            ps.setBytes(1, null);
+            ps.setLong(2, id);
+        });
+        executeInBatches(SET_CONTENT_HASH_SQL, unhashed, (row, ps) -> {
+            ps.setBytes(1, row.contentHash());
+            ps.setLong(2, row.address().id());
+        });
+        Deduplication deduplication = this.deduplication;
+        if (deduplication != null) {
+            deduplication.index.clear();
+        }
+        clearCache();
+        return duplicates.size();
+    }
+
+    private <E> void executeInBatches(String sql, List<E> items, StatementBinder<E> binder) {
+        for (int from = 0; from < items.size(); from += getBatchSize()) {
+            executeBatch(sql, items.subList(from, Math.min(items.size(), from + getBatchSize())), binder);
+        }
+    }
+
+    /**
+     * Keeps the index and the stored hashes in line with the writes made through the repository.
+     */
+    private final class Deduplication implements EntityListener<Address> {
+        private final ContentIndex index;
+
+        Deduplication(ContentIndex index) {
+            this.index = index;
+        }
+
+        @Override
+        public void onSaved(Address entity) {
+        }
+
+        @Override
+        public void onUpdated(Address entity) {
+            index.remove(entity.id());
+            executeBatch(SET_CONTENT_HASH_SQL, List.of(entity.id()), (id, ps) -> {
+                ps.setBytes(1, null);
+                ps.setLong(2, id);
+            });
+        }
 
+        @Override
+        public void onDeleted(Long id) {
+            index.remove(id);
+        }
     }
 }
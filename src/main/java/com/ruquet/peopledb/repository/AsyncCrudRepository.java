@@ -0,0 +1,210 @@
+package com.ruquet.peopledb.repository;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+/**
+ * Runs the operations of a repository on an executor and returns {@link CompletableFuture}s, so callers can
+ * fan out many lookups and saves without blocking their own thread. At most as many operations as the repository's
+ * {@link ConnectionPool} has connections run at once, the rest wait for one of them to finish, however long it takes,
+ * so a burst of operations never fails on the pool's acquire timeout.
+ * <p>
+ * Cancelling a future, or letting it time out (see {@link #setTimeout(Duration)}), is cooperative: an operation
+ * that hasn't started yet never runs, and the bulk ones stop before their next batch. A statement already sent
+ * to the database runs to completion, threads are never interrupted in the middle of JDBC calls.
+ */
+public class AsyncCrudRepository<T> implements AutoCloseable {
+    private final CrudRepository<T> repository;
+    private final Executor executor;
+    private final boolean ownsRepository;
+    private final boolean ownsExecutor;
+    private final Semaphore inFlight;
+    private volatile Duration timeout;
+
+    AsyncCrudRepository(CrudRepository<T> repository, boolean ownsRepository, Executor executor, boolean ownsExecutor) {
+        this.repository = repository;
+        this.inFlight = new Semaphore(maxInFlight(repository.connectionSource()), true);
+        this.executor = executor;
+        this.ownsRepository = ownsRepository;
+        this.ownsExecutor = ownsExecutor;
+    }
+
+    /**
+     * @return the connections of the pool, or 1 for a single connection, which runs one operation at a time anyway.
+     */
+    private static int maxInFlight(ConnectionSource connectionSource) {
+        return connectionSource instanceof ConnectionPool pool ? pool.getMetrics().maxSize() : 1;
+    }
+
+    /**
+     * @return an executor starting a virtual thread per task when the JVM has them, otherwise a pool of
+     * {@code threads} daemon threads, which is enough to keep every pooled connection busy.
+     */
+    static ExecutorService defaultExecutor(int threads) {
+        try {
+            return (ExecutorService) MethodHandles.publicLookup()
+                    .findStatic(Executors.class, "newVirtualThreadPerTaskExecutor", MethodType.methodType(ExecutorService.class))
+                    .invoke();
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            AtomicInteger count = new AtomicInteger();
+            return Executors.newFixedThreadPool(threads, task -> {
+                Thread thread = new Thread(task, "peopledb-async-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        } catch (Throwable e) {
+            throw new IllegalStateException("Unable to create the default executor", e);
+        }
+    }
+
+    public CompletableFuture<Optional<T>> findByIdAsync(Long id) {
+        return submit(cancelled -> repository.findById(id));
+    }
+
+    /**
+     * Looks the ids up {@link CrudRepository#ID_LIST_SIZES the largest id list} at a time.
+     */
+    public CompletableFuture<List<T>> findAllByIdAsync(Collection<Long> ids) {
+        List<Long> distinctIds = List.copyOf(new LinkedHashSet<>(ids));
+        int chunkSize = CrudRepository.ID_LIST_SIZES[CrudRepository.ID_LIST_SIZES.length - 1];
+        return submit(cancelled -> {
+            List<T> found = new ArrayList<>(distinctIds.size());
+            for (int from = 0; from < distinctIds.size(); from += chunkSize) {
+                stopIfCancelled(cancelled);
+                found.addAll(repository.findAllById(distinctIds.subList(from, Math.min(distinctIds.size(), from + chunkSize))));
+            }
+            return found;
+        });
+    }
+
+    public CompletableFuture<T> saveAsync(T entity) {
+        return submit(cancelled -> repository.save(entity));
+    }
+
+    /**
+     * Saves the entities {@link CrudRepository#getBatchSize() a batch} at a time. When cancelled midway,
+     * the batches already saved stay saved.
+     */
+    public CompletableFuture<List<T>> saveAllAsync(Iterable<? extends T> entities) {
+        return submit(cancelled -> {
+            List<T> saved = new ArrayList<>();
+            repository.saveInBatches(entities.iterator(), batch -> {
+                saved.addAll(batch);
+                stopIfCancelled(cancelled);
+            });
+            return saved;
+        });
+    }
+
+    public CompletableFuture<Void> updateAsync(T entity) {
+        return submit(cancelled -> {
+            repository.update(entity);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> deleteAsync(T entity) {
+        return submit(cancelled -> {
+            repository.delete(entity);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Long> countAsync() {
+        return submit(cancelled -> repository.getCount());
+    }
+
+    /**
+     * @param task gets a check telling whether the future was cancelled or timed out, for tasks running in steps.
+     */
+    private <R> CompletableFuture<R> submit(Function<BooleanSupplier, R> task) {
+        CompletableFuture<R> future = new CompletableFuture<>();
+        Duration timeout = this.timeout;
+        if (timeout != null) {
+            future.orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        }
+        try {
+            executor.execute(() -> {
+                if (future.isDone()) {
+                    return;
+                }
+                try {
+                    inFlight.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    future.completeExceptionally(e);
+                    return;
+                }
+                try {
+                    if (!future.isDone()) {
+                        future.complete(task.apply(future::isDone));
+                    }
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                } finally {
+                    inFlight.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private static void stopIfCancelled(BooleanSupplier cancelled) {
+        if (cancelled.getAsBoolean()) {
+            throw new CancellationException();
+        }
+    }
+
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Fails every future returned from now on with a {@link java.util.concurrent.TimeoutException} when it doesn't
+     * complete in time, the time waiting for a thread and a connection included. {@code null} waits forever.
+     */
+    public void setTimeout(Duration timeout) {
+        if (timeout != null && (timeout.isNegative() || timeout.isZero())) {
+            throw new IllegalArgumentException("Timeout must be positive");
+        }
+        this.timeout = timeout;
+    }
+
+    /**
+     * Shuts down the executor and closes the repository when they were created by this facade,
+     * the operations already submitted still run.
+     */
+    @Override
+    public void close() {
+        if (ownsExecutor && executor instanceof ExecutorService service) {
+            service.shutdown();
+            try {
+                service.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (ownsRepository) {
+            repository.close();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.ruquet.peopledb.repository;
+
+import com.ruquet.peopledb.model.Person;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Asynchronous access to people stored through a {@link ConnectionPool}.
+ */
+public class AsyncPeopleRepository extends AsyncCrudRepository<Person> {
+
+    /**
+     * Runs on virtual threads when the JVM has them, or else on as many threads as the pool has connections.
+     */
+    public AsyncPeopleRepository(ConnectionPool pool) {
+        super(new PeopleRepository(pool), true, defaultExecutor(pool.getMetrics().maxSize()), true);
+    }
+
+    /**
+     * @param executor runs the operations, it's left running on {@link #close()}.
+     */
+    public AsyncPeopleRepository(ConnectionPool pool, Executor executor) {
+        super(new PeopleRepository(pool), true, executor, false);
+    }
+
+    /**
+     * Wraps a repository the caller keeps ownership of, i.e. one configured with a cache or a batch size.
+     */
+    public AsyncPeopleRepository(PeopleRepository repository, Executor executor) {
+        super(repository, false, executor, false);
+    }
+}
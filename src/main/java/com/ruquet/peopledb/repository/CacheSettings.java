@@ -0,0 +1,42 @@
+package com.ruquet.peopledb.repository;
+
+import java.time.Duration;
+
+/**
+ * Settings of the entity cache a repository keeps in front of {@code findById}.
+ */
+public class CacheSettings {
+    private int maxSize = 10_000;
+    private Duration timeToLive;
+
+    /**
+     * Entities kept at most, the least recently used one is evicted when it's full.
+     */
+    public CacheSettings maxSize(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Max size must be greater than 0");
+        }
+        this.maxSize = maxSize;
+        return this;
+    }
+
+    /**
+     * How long an entity is served from the cache after it was loaded, {@code null} keeps it until it's evicted
+     * or invalidated. Set it when other processes write to the same tables.
+     */
+    public CacheSettings timeToLive(Duration timeToLive) {
+        if (timeToLive != null && (timeToLive.isNegative() || timeToLive.isZero())) {
+            throw new IllegalArgumentException("Time to live must be positive");
+        }
+        this.timeToLive = timeToLive;
+        return this;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public Duration getTimeToLive() {
+        return timeToLive;
+    }
+}
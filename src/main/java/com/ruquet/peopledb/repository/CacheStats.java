@@ -0,0 +1,21 @@
+package com.ruquet.peopledb.repository;
+
+import java.time.Duration;
+
+/**
+ * A snapshot of the counters of a repository's entity cache.
+ *
+ * @param evictions   entities dropped because the cache was full.
+ * @param expirations entities dropped because they outlived the time to live.
+ * @param loads       lookups that went to the database after a miss.
+ */
+public record CacheStats(int size, long hits, long misses, long evictions, long expirations,
+                         long invalidations, long loads, Duration averageLoadTime) {
+
+    static final CacheStats EMPTY = new CacheStats(0, 0, 0, 0, 0, 0, 0, Duration.ZERO);
+
+    public double hitRatio() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+}
@@ -0,0 +1,63 @@
+package com.ruquet.peopledb.repository;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The distinct values of a string column, each one stored once and referenced by its code, the order it was first
+ * seen in. Null is {@link #NULL}. Codes never change, a refreshed column gets a copy with the new values appended.
+ */
+final class ColumnDictionary {
+    static final int NULL = -1;
+
+    private String[] values;
+    private int size;
+    private final Map<String, Integer> codes;
+
+    ColumnDictionary() {
+        this.values = new String[16];
+        this.codes = new HashMap<>();
+    }
+
+    private ColumnDictionary(ColumnDictionary other) {
+        this.values = Arrays.copyOf(other.values, Math.max(other.size, 16));
+        this.size = other.size;
+        this.codes = new HashMap<>(other.codes);
+    }
+
+    ColumnDictionary copy() {
+        return new ColumnDictionary(this);
+    }
+
+    int encode(String value) {
+        if (value == null) {
+            return NULL;
+        }
+        Integer code = codes.get(value);
+        if (code != null) {
+            return code;
+        }
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size] = value;
+        codes.put(value, size);
+        return size++;
+    }
+
+    /**
+     * @return the code of the value, {@link #NULL} for null, or -2 when it was never seen.
+     */
+    int code(String value) {
+        return value == null ? NULL : codes.getOrDefault(value, -2);
+    }
+
+    String decode(int code) {
+        return code == NULL ? null : values[code];
+    }
+
+    int size() {
+        return size;
+    }
+}
@@ -0,0 +1,209 @@
+package com.ruquet.peopledb.repository;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A small pool of connections taken from a {@link DataSource}. Repositories built on a pool borrow a connection
+ * for each operation, so they can be used from many threads at once, and at most {@code maxSize} operations
+ * run at the same time. Each connection keeps its own prepared statement cache.
+ * Connections are used in auto-commit mode, every operation commits on its own.
+ */
+public class ConnectionPool extends ConnectionSource implements AutoCloseable {
+    private record PooledConnection(Connection connection, StatementCache statements) {
+    }
+
+    private static final class Lease {
+        private final PooledConnection connection;
+        private int holds = 1;
+
+        private Lease(PooledConnection connection) {
+            this.connection = connection;
+        }
+    }
+
+    private final DataSource dataSource;
+    private final PoolSettings settings;
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final List<PooledConnection> open = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<Lease> leases = new ThreadLocal<>();
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private volatile boolean closed;
+
+    public ConnectionPool(DataSource dataSource) throws SQLException {
+        this(dataSource, new PoolSettings());
+    }
+
+    public ConnectionPool(DataSource dataSource, PoolSettings settings) throws SQLException {
+        if (settings.getMinSize() > settings.getMaxSize()) {
+            throw new IllegalArgumentException("Min size can't be greater than max size");
+        }
+        this.dataSource = dataSource;
+        this.settings = settings;
+        this.permits = new Semaphore(settings.getMaxSize(), true);
+        for (int i = 0; i < settings.getMinSize(); i++) {
+            idle.add(create());
+        }
+    }
+
+    @Override
+    Session open() throws SQLException {
+        Lease current = leases.get();
+        if (current != null) {
+            current.holds++;
+        } else {
+            current = new Lease(borrow());
+            leases.set(current);
+        }
+        Lease lease = current;
+        return new Session(lease.connection.connection(), lease.connection.statements(), () -> {
+            if (--lease.holds == 0) {
+                leases.remove();
+                giveBack(lease.connection);
+            }
+        });
+    }
+
+    @Override
+    Session openDedicated() throws SQLException {
+        PooledConnection pooled = borrow();
+        return new Session(pooled.connection(), pooled.statements(), () -> giveBack(pooled));
+    }
+
+    private PooledConnection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(settings.getAcquireTimeout().toNanos(), TimeUnit.NANOSECONDS)) {
+                timeouts.increment();
+                throw new SQLTimeoutException("Timed out after " + settings.getAcquireTimeout()
+                        + " waiting for a connection, all " + settings.getMaxSize() + " are in use");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", e);
+        }
+        long waited = System.nanoTime() - start;
+        waitNanos.add(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+        try {
+            PooledConnection pooled;
+            while ((pooled = idle.pollFirst()) != null && !isValid(pooled)) {
+                discard(pooled);
+            }
+            if (pooled == null) {
+                pooled = create();
+            }
+            active.incrementAndGet();
+            acquired.increment();
+            return pooled;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private boolean isValid(PooledConnection pooled) {
+        try {
+            Connection connection = pooled.connection();
+            return settings.getValidationTimeoutSeconds() == 0
+                    ? !connection.isClosed()
+                    : connection.isValid(settings.getValidationTimeoutSeconds());
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private PooledConnection create() throws SQLException {
+        Connection connection = dataSource.getConnection();
+        connection.setAutoCommit(true);
+        PooledConnection pooled = new PooledConnection(connection, new StatementCache(connection, settings.getStatementCacheSize()));
+        open.add(pooled);
+        return pooled;
+    }
+
+    private void giveBack(PooledConnection pooled) {
+        active.decrementAndGet();
+        try {
+            if (closed || pooled.connection().isClosed()) {
+                discard(pooled);
+            } else {
+                idle.offerFirst(pooled);
+            }
+        } catch (SQLException e) {
+            discard(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void discard(PooledConnection pooled) {
+        open.remove(pooled);
+        pooled.statements().close();
+        try {
+            pooled.connection().close();
+        } catch (SQLException e) {
+            // the connection is being thrown away anyway
+        }
+    }
+
+    public PoolMetrics getMetrics() {
+        long count = acquired.sum();
+        return new PoolMetrics(settings.getMaxSize(), open.size(), active.get(), idle.size(), permits.getQueueLength(),
+                count, timeouts.sum(),
+                Duration.ofNanos(count == 0 ? 0 : waitNanos.sum() / count),
+                Duration.ofNanos(maxWaitNanos.get()));
+    }
+
+    @Override
+    long getStatementCacheHits() {
+        return open.stream().mapToLong(p -> p.statements().getHits()).sum();
+    }
+
+    @Override
+    long getStatementCacheMisses() {
+        return open.stream().mapToLong(p -> p.statements().getMisses()).sum();
+    }
+
+    @Override
+    long getStatementCacheEvictions() {
+        return open.stream().mapToLong(p -> p.statements().getEvictions()).sum();
+    }
+
+    /**
+     * The pool belongs to whoever created it, closing a repository doesn't close it.
+     */
+    @Override
+    void release() {
+    }
+
+    /**
+     * Closes the idle connections right away and the ones in use as soon as they're given back.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            discard(pooled);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.ruquet.peopledb.repository;
+
+import java.sql.SQLException;
+
+/**
+ * Where a repository gets a connection from for each operation.
+ */
+abstract class ConnectionSource {
+
+    /**
+     * Opens a session for one operation. Nested calls on the same thread, like a save that saves its
+     * addresses first, get the same connection.
+     */
+    abstract Session open() throws SQLException;
+
+    /**
+     * Opens a session that isn't tied to the calling thread, for streams that stay open across calls
+     * and may be closed from another thread.
+     */
+    abstract Session openDedicated() throws SQLException;
+
+    abstract long getStatementCacheHits();
+
+    abstract long getStatementCacheMisses();
+
+    abstract long getStatementCacheEvictions();
+
+    /**
+     * Called when the repository that created this source is closed.
+     */
+    abstract void release();
+}
@@ -0,0 +1,63 @@
+package com.ruquet.peopledb.repository;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The ids of the committed rows last saved or found by their content hash, so saving the same content again reuses
+ * the row without a query. Bounded, the least recently used hash is dropped first, a missing hash is looked up in
+ * the database.
+ */
+final class ContentIndex {
+    private final LinkedHashMap<ByteBuffer, Long> ids;
+    private final Map<Long, ByteBuffer> hashes = new HashMap<>();
+
+    ContentIndex(int capacity) {
+        this.ids = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ByteBuffer, Long> eldest) {
+                if (size() <= capacity) {
+                    return false;
+                }
+                hashes.remove(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    synchronized Long get(ByteBuffer hash) {
+        return ids.get(hash);
+    }
+
+    synchronized void put(ByteBuffer hash, Long id) {
+        ByteBuffer previous = hashes.put(id, hash);
+        if (previous != null && !previous.equals(hash)) {
+            ids.remove(previous);
+        }
+        Long replaced = ids.put(hash, id);
+        if (replaced != null && !replaced.equals(id)) {
+            hashes.remove(replaced);
+        }
+    }
+
+    /**
+     * Forgets the row, i.e. once it's deleted or its content changed.
+     */
+    synchronized void remove(Long id) {
+        ByteBuffer hash = hashes.remove(id);
+        if (hash != null) {
+            ids.remove(hash);
+        }
+    }
+
+    synchronized void clear() {
+        ids.clear();
+        hashes.clear();
+    }
+
+    synchronized int size() {
+        return ids.size();
+    }
+}
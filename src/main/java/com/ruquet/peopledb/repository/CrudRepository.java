@@ -1,181 +1,1100 @@
 package com.ruquet.peopledb.repository;
 
-import com.ruquet.peopledb.anotation.Id;
-import com.ruquet.peopledb.anotation.MultiSQL;
-import com.ruquet.peopledb.anotation.SQL;
 import com.ruquet.peopledb.com.ruquet.peopledb.exceptions.UnableToSave;
 import com.ruquet.peopledb.model.CrudOperation;
 
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.function.Supplier;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-import static java.util.stream.Collectors.joining;
 
-abstract class CrudRepository<T> {
+abstract class CrudRepository<T> implements AutoCloseable {
 
-    protected Connection connection;
-    private PreparedStatement savePS;
-    private PreparedStatement findByIdPS;
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    public static final int DEFAULT_STATEMENT_CACHE_SIZE = 32;
+    public static final int DEFAULT_FETCH_SIZE = 1000;
+    public static final int DEFAULT_CHANGE_TRACKING_CAPACITY = 10_000;
+    /**
+     * Sizes of the "IN (?, ...)" lists used to look up or delete many ids, so only a few statements get prepared.
+     */
+    static final int[] ID_LIST_SIZES = {1, 8, 64, 512};
+
+    private final ConnectionSource source;
+    private final boolean ownsSource;
+    private final EntityMetadata<T> metadata;
+    private final SqlCatalog sqlCatalog;
+    private final Map<String, String[]> idListSql = new ConcurrentHashMap<>();
+    private final UpdateColumns<T> updateColumns;
+    private final LongAdder skippedUpdates = new LongAdder();
+    private volatile SnapshotStore snapshots;
+    private volatile RepositoryListener listener = RepositoryListener.NONE;
+    private final List<EntityListener<T>> entityListeners = new CopyOnWriteArrayList<>();
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private int fetchSize = DEFAULT_FETCH_SIZE;
+    private volatile EntityCache<T> cache;
 
 
     public CrudRepository(Connection connection) throws SQLException {
-        this.connection = connection;
-        savePS = connection.prepareStatement(getSqlByAnotation(CrudOperation.SAVE, this::getSaveSQL), Statement.RETURN_GENERATED_KEYS);
-        findByIdPS = connection.prepareStatement(getSqlByAnotation(CrudOperation.FIND_BY_ID, this::getFindByIdSql));
+        this(connection, DEFAULT_STATEMENT_CACHE_SIZE);
     }
 
-    private String getSqlByAnotation(CrudOperation operationType, Supplier<String> sqlGetter) {
-        Stream<SQL> multiSqlStream = Arrays.stream(this.getClass().getDeclaredMethods())
-                .filter(ms -> ms.isAnnotationPresent(MultiSQL.class))
-                .map(ms -> ms.getAnnotation(MultiSQL.class))
-                .flatMap(ms -> Arrays.stream(ms.value()));
+    public CrudRepository(Connection connection, int statementCacheSize) throws SQLException {
+        this(new SingleConnectionSource(connection, statementCacheSize), true);
+    }
+
+    /**
+     * Builds a repository that borrows a pooled connection for every operation, so it can be shared by many threads.
+     */
+    public CrudRepository(ConnectionPool pool) {
+        this(pool, false);
+    }
 
-        Stream<SQL> sqlStream = Arrays.stream(this.getClass().getDeclaredMethods())
-                .filter(s -> s.isAnnotationPresent(SQL.class))
-                .map(s -> s.getAnnotation(SQL.class));
+    CrudRepository(ConnectionSource source, boolean ownsSource) {
+        this.source = source;
+        this.ownsSource = ownsSource;
+        this.metadata = EntityMetadata.of(resolveEntityType());
+        this.sqlCatalog = SqlCatalog.of(getClass(), Map.ofEntries(
+                Map.entry(CrudOperation.SAVE, this::getSaveSQL),
+                Map.entry(CrudOperation.UPDATE, this::getUpdateSql),
+                Map.entry(CrudOperation.COUNT, this::getCountSql),
+                Map.entry(CrudOperation.DELETE_ONE, this::getDeleteSql),
+                Map.entry(CrudOperation.DELETE_MANY, this::getDeleteManyInSql),
+                Map.entry(CrudOperation.FIND_BY_ID, this::getFindByIdSql),
+                Map.entry(CrudOperation.FIND_ALL, this::getFindAllSql),
+                Map.entry(CrudOperation.STREAM_ALL, this::getStreamAllSql),
+                Map.entry(CrudOperation.FIND_PAGE, this::getFindPageSql),
+                Map.entry(CrudOperation.FIND_ALL_BY_ID, this::getFindAllByIdSql),
+                Map.entry(CrudOperation.SCAN_RANGE, this::getScanRangeSql)));
+        this.updateColumns = updateColumns();
+    }
 
-        return Stream.concat(multiSqlStream, sqlStream)
-                .filter(a -> a.operationType().equals(operationType))
-                .map(s -> s.value())
-                .findFirst().orElseGet(sqlGetter);
+    ConnectionSource connectionSource() {
+        return source;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Class<T> resolveEntityType() {
+        Class<?> generated = GeneratedMetadata.entityType(getClass());
+        if (generated != null) {
+            return (Class<T>) generated;
+        }
+        Class<?> c = getClass();
+        while (c.getSuperclass() != CrudRepository.class) {
+            c = c.getSuperclass();
+        }
+        Type type = ((ParameterizedType) c.getGenericSuperclass()).getActualTypeArguments()[0];
+        return (Class<T>) (type instanceof ParameterizedType p ? p.getRawType() : type);
+    }
+
+    private PreparedStatement prepare(Session session, CrudOperation operationType) throws SQLException {
+        return session.statements().prepare(sqlCatalog.get(operationType));
     }
 
     public T save(T entity) throws UnableToSave {
-        Long id = null;
-        try {
-            savePS.clearParameters();
-            mapForSave(entity, savePS);
-            int recordsAffected = savePS.executeUpdate();
-            System.out.printf("Records Affected: %d%n", recordsAffected);
-            ResultSet rs = savePS.getGeneratedKeys();
-            while (rs.next()) {
-                 id = rs.getLong(1);
-                setByAnnotation(id, entity);
+        List<T> batch = new ArrayList<>(1);
+        batch.add(entity);
+        return saveBatch(batch).get(0);
+    }
+
+    /**
+     * Saves every entity using JDBC batching, sending at most {@link #getBatchSize()} inserts per round trip.
+     * Generated ids are assigned back to each entity and {@link #postSave(Object, long)} runs for each one.
+     * @return the saved entities in the same order, which are copies for entities with an immutable id.
+     */
+    public List<T> saveAll(Iterable<? extends T> entities) throws UnableToSave {
+        List<T> saved = new ArrayList<>();
+        saveInBatches(entities.iterator(), saved::addAll);
+        return saved;
+    }
+
+    /**
+     * Same as {@link #saveAll(Iterable)} but without keeping the saved entities around,
+     * so arbitrarily large streams can be saved in constant memory.
+     * @return the number of entities saved
+     */
+    public long saveAll(Stream<? extends T> entities) throws UnableToSave {
+        return saveInBatches(entities.iterator(), batch -> {});
+    }
 
-                //System.out.println(entity);
+    /**
+     * @param onBatchSaved gets each batch once saved, it can throw to stop before the next one.
+     */
+    long saveInBatches(Iterator<? extends T> entities, Consumer<List<T>> onBatchSaved) {
+        long count = 0;
+        List<T> batch = new ArrayList<>(batchSize);
+        while (entities.hasNext()) {
+            batch.add(entities.next());
+            if (batch.size() == batchSize || !entities.hasNext()) {
+                onBatchSaved.accept(saveBatch(batch));
+                count += batch.size();
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Saves one batch of at most {@link #getBatchSize()} entities: runs {@link #saveDependencies}, inserts them
+     * and runs {@link #postSaveAll}. Repositories of entity graphs can override it to save the whole graph
+     * their own way through {@link #insert(List)}.
+     * @return the batch, with the entities replaced by their copies when their id is immutable.
+     */
+    protected List<T> saveBatch(List<T> batch) throws UnableToSave {
+        saveDependencies(batch);
+        insert(batch);
+        postSaveAll(batch);
+        batch.forEach(this::invalidateCached);
+        return batch;
+    }
+
+    /**
+     * Inserts the entities in one JDBC batch and assigns the generated ids back, in place.
+     * Only runs the save statement, no hooks.
+     */
+    void insert(List<T> batch) throws UnableToSave {
+        insert(sqlCatalog.get(CrudOperation.SAVE), batch, this::mapForSave);
+    }
+
+    /**
+     * Same as {@link #insert(List)} through another insert statement, i.e. one writing more columns.
+     */
+    void insert(String sql, List<T> batch, StatementBinder<T> binder) throws UnableToSave {
+        RepositoryListener listener = this.listener;
+        long start = System.nanoTime();
+        try (Session session = source.open()) {
+            PreparedStatement savePS = session.statements().prepareReturningKeys(sql);
+            boolean committed = session.connection().getAutoCommit();
+            for (T entity : batch) {
+                binder.bind(entity, savePS);
+                savePS.addBatch();
+            }
+            int recordsAffected = Arrays.stream(savePS.executeBatch()).sum();
+            try (ResultSet rs = savePS.getGeneratedKeys()) {
+                int idx = 0;
+                while (rs.next() && idx < batch.size()) {
+                    batch.set(idx, metadata.withId(batch.get(idx), rs.getLong(1)));
+                    if (committed) {
+                        track(batch.get(idx));
+                    }
+                    idx++;
+                }
+            }
+            listener.onOperation(CrudOperation.SAVE, System.nanoTime() - start, recordsAffected, 0);
+            for (EntityListener<T> entityListener : entityListeners) {
+                batch.forEach(entityListener::onSaved);
             }
         } catch (SQLException e) {
-            throw new UnableToSave("Tried to save person: " + entity);
+            listener.onError(CrudOperation.SAVE, System.nanoTime() - start, e);
+            throw new UnableToSave(batch.size() == 1
+                    ? "Tried to save person: " + batch.get(0)
+                    : "Tried to save a batch of " + batch.size() + " entities", e);
         }
-        postSave(entity, id);
-        return entity;
+    }
+
+    /**
+     * Forgets an entity whose insert was rolled back, before its id is reset: its change tracking is dropped
+     * and the entity listeners are told it's gone, since they were told it was saved.
+     */
+    void rolledBack(T entity) {
+        untrack(entity);
+        Long id = metadata.getId(entity);
+        entityListeners.forEach(entityListener -> entityListener.onDeleted(id));
+    }
+
+    /**
+     * Runs {@code sql} once per item in a single JDBC batch.
+     */
+    <E> void executeBatch(String sql, List<? extends E> items, StatementBinder<E> binder) {
+        try (Session session = source.open()) {
+            PreparedStatement ps = session.statements().prepare(sql);
+            for (E item : items) {
+                binder.bind(item, ps);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @FunctionalInterface
+    interface StatementBinder<E> {
+        void bind(E item, PreparedStatement ps) throws SQLException;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be greater than 0");
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Called before the entities are bound to the save statement, so anything they reference
+     * (addresses, other entities) can be saved first and already have an id when {@link #mapForSave} runs.
+     */
+    protected void saveDependencies(List<T> entities) {
     }
 
     protected void postSave(T entity, long id) {
     }
 
+    /**
+     * Called once per saved batch, after every entity in it got its id.
+     * By default it just runs {@link #postSave(Object, long)} for each entity.
+     */
+    protected void postSaveAll(List<T> entities) {
+        for (T entity : entities) {
+            postSave(entity, metadata.getId(entity));
+        }
+    }
+
+    /**
+     * Writes the entity. With change tracking on, see {@link #setChangeTrackingCapacity(int)}, only the columns
+     * that changed on this object since this repository read or wrote it are updated, and nothing runs when none
+     * did. Objects without snapshot, i.e. dropped, read by another repository or built by hand, get every column written.
+     */
     public void update(T entity) {
-        try {
-            PreparedStatement updatePS = connection.prepareStatement(getSqlByAnotation(CrudOperation.UPDATE, this::getUpdateSql));
-            mapForUpdate(entity, updatePS);
-            updatePS.setLong(5, getByAnnotation(entity));
-            updatePS.executeUpdate();
+        RepositoryListener listener = this.listener;
+        long start = System.nanoTime();
+        try (Session session = source.open()) {
+            SnapshotStore snapshots = this.snapshots;
+            if (snapshots == null) {
+                PreparedStatement updatePS = prepare(session, CrudOperation.UPDATE);
+                mapForUpdate(entity, updatePS);
+                bindUpdateId(updatePS, metadata.getId(entity));
+                int recordsAffected = updatePS.executeUpdate();
+                listener.onOperation(CrudOperation.UPDATE, System.nanoTime() - start, recordsAffected, 0);
+                entityListeners.forEach(l -> l.onUpdated(entity));
+                return;
+            }
+            Long id = metadata.getId(entity);
+            Object[] values = updateColumns.values(entity);
+            long changed = changedColumns(snapshots, entity, values);
+            if (changed == 0) {
+                skippedUpdates.increment();
+                return;
+            }
+            PreparedStatement updatePS = session.statements().prepare(updateColumns.sql(changed));
+            updateColumns.bind(updatePS, changed, values, id);
+            int recordsAffected = updatePS.executeUpdate();
+            if (session.connection().getAutoCommit()) {
+                snapshots.put(entity, values);
+            }
+            listener.onOperation(CrudOperation.UPDATE, System.nanoTime() - start, recordsAffected, 0);
+            entityListeners.forEach(l -> l.onUpdated(entity));
         } catch (SQLException e) {
+            listener.onError(CrudOperation.UPDATE, System.nanoTime() - start, e);
             throw new RuntimeException(e);
+        } finally {
+            invalidateCached(entity);
         }
     }
 
-    private void setByAnnotation(Long id, T entity) {
-        Arrays.stream(entity.getClass().getDeclaredFields())
-                .filter(f -> f.isAnnotationPresent(Id.class))
-                .forEach(f -> {
-                    f.setAccessible(true);
-                    try {
-                        f.set(entity, id);
-                    } catch (IllegalAccessException e) {
-                        throw new RuntimeException("Unable to save an Id");
-                    }
-                });
+    /**
+     * Same as {@link #update(Object)} for many entities, sent {@link #getBatchSize()} at a time.
+     * Entities that changed the same columns share one JDBC batch.
+     * @return the number of entities written, the unchanged ones are skipped.
+     */
+    public long updateAll(Iterable<? extends T> entities) {
+        long written = 0;
+        Iterator<? extends T> iterator = entities.iterator();
+        List<T> batch = new ArrayList<>(batchSize);
+        while (iterator.hasNext()) {
+            batch.add(iterator.next());
+            if (batch.size() == batchSize || !iterator.hasNext()) {
+                try {
+                    written += updateBatch(batch);
+                } finally {
+                    batch.forEach(this::invalidateCached);
+                }
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        return written;
     }
 
-    private Long getByAnnotation(T entity) {
-        return Arrays.stream(entity.getClass().getDeclaredFields())
-                .filter(f -> f.isAnnotationPresent(Id.class))
-                .map(f -> {
-                    f.setAccessible(true);
-                    Long id = 0L;
-                    try {
-                        id = (Long) f.get(entity);
-                    } catch (IllegalAccessException e) {
-                        throw new RuntimeException(e);
+    private record Change<T>(T entity, Long id, Object[] values) {
+    }
+
+    private long updateBatch(List<T> batch) {
+        RepositoryListener listener = this.listener;
+        long start = System.nanoTime();
+        try (Session session = source.open()) {
+            SnapshotStore snapshots = this.snapshots;
+            if (snapshots == null) {
+                PreparedStatement updatePS = prepare(session, CrudOperation.UPDATE);
+                for (T entity : batch) {
+                    mapForUpdate(entity, updatePS);
+                    bindUpdateId(updatePS, metadata.getId(entity));
+                    updatePS.addBatch();
+                }
+                int recordsAffected = Arrays.stream(updatePS.executeBatch()).sum();
+                listener.onOperation(CrudOperation.UPDATE, System.nanoTime() - start, recordsAffected, 0);
+                for (EntityListener<T> entityListener : entityListeners) {
+                    batch.forEach(entityListener::onUpdated);
+                }
+                return batch.size();
+            }
+            Map<Long, List<Change<T>>> changesByColumns = new LinkedHashMap<>();
+            for (T entity : batch) {
+                Long id = metadata.getId(entity);
+                Object[] values = updateColumns.values(entity);
+                long changed = changedColumns(snapshots, entity, values);
+                if (changed == 0) {
+                    skippedUpdates.increment();
+                } else {
+                    changesByColumns.computeIfAbsent(changed, k -> new ArrayList<>()).add(new Change<>(entity, id, values));
+                }
+            }
+            if (changesByColumns.isEmpty()) {
+                return 0;
+            }
+            long written = 0;
+            long recordsAffected = 0;
+            boolean committed = session.connection().getAutoCommit();
+            for (Map.Entry<Long, List<Change<T>>> group : changesByColumns.entrySet()) {
+                PreparedStatement updatePS = session.statements().prepare(updateColumns.sql(group.getKey()));
+                for (Change<T> change : group.getValue()) {
+                    updateColumns.bind(updatePS, group.getKey(), change.values(), change.id());
+                    updatePS.addBatch();
+                }
+                recordsAffected += Arrays.stream(updatePS.executeBatch()).sum();
+                if (committed) {
+                    for (Change<T> change : group.getValue()) {
+                        snapshots.put(change.entity(), change.values());
                     }
-                    return id;
-                })
-                .findFirst().orElseThrow(() -> new RuntimeException("No ID Found"));
+                }
+                written += group.getValue().size();
+            }
+            listener.onOperation(CrudOperation.UPDATE, System.nanoTime() - start, recordsAffected, 0);
+            for (EntityListener<T> entityListener : entityListeners) {
+                changesByColumns.values().forEach(changes -> changes.forEach(change -> entityListener.onUpdated(change.entity())));
+            }
+            return written;
+        } catch (SQLException e) {
+            listener.onError(CrudOperation.UPDATE, System.nanoTime() - start, e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    private long changedColumns(SnapshotStore snapshots, T entity, Object[] values) {
+        Object[] snapshot = snapshots.get(entity);
+        return snapshot == null ? updateColumns.allColumns() : updateColumns.changed(snapshot, values);
+    }
+
+    /**
+     * The id is bound to the last parameter of the update SQL.
+     */
+    private static void bindUpdateId(PreparedStatement updatePS, Long id) throws SQLException {
+        updatePS.setLong(updatePS.getParameterMetaData().getParameterCount(), id);
+    }
+
+    /**
+     * Takes the snapshot of an entity whose values were just committed, or read outside of a transaction.
+     */
+    void track(T entity) {
+        SnapshotStore snapshots = this.snapshots;
+        if (snapshots != null && entity != null) {
+            snapshots.put(entity, updateColumns.values(entity));
+        }
+    }
+
+    private void untrack(T entity) {
+        SnapshotStore snapshots = this.snapshots;
+        if (snapshots != null) {
+            snapshots.remove(entity);
+        }
+    }
+
+    /**
+     * Tracks what the reader reads, unless it reads inside a transaction of the caller: a rollback would leave
+     * the snapshots ahead of the database.
+     */
+    private EntityReader<T> tracking(EntityReader<T> reader, ResultSet rs) throws SQLException {
+        if (snapshots == null || !rs.getStatement().getConnection().getAutoCommit()) {
+            return reader;
+        }
+        return () -> {
+            T entity = reader.read();
+            track(entity);
+            return entity;
+        };
+    }
+
+    /**
+     * Turns change tracking on, off by default: keeps the snapshots of the last {@code capacity} objects read or
+     * written, i.e. {@link #DEFAULT_CHANGE_TRACKING_CAPACITY}, so updates only write the columns changed on them.
+     * 0 turns it off again, every update writes every column. Snapshots are only taken of committed values,
+     * writes and reads inside a transaction of the caller leave them as they were, so a rollback can't make
+     * an update skip a column the database doesn't have. Changes made elsewhere to the columns an object
+     * didn't change are kept.
+     */
+    public void setChangeTrackingCapacity(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Change tracking capacity can't be negative");
+        }
+        this.snapshots = capacity == 0 || updateColumns == null ? null : new SnapshotStore(capacity);
     }
 
+    /**
+     * @return updates skipped because nothing changed since the entity was read or last written.
+     */
+    public long getSkippedUpdates() {
+        return skippedUpdates.sum();
+    }
 
+    /**
+     * Served from the entity cache when {@link #enableCache(CacheSettings) enabled}, the returned entity is
+     * always a copy the caller is free to change.
+     */
     public Optional<T> findById(Long id) {
+        EntityCache<T> cache = this.cache;
+        if (cache == null) {
+            return Optional.ofNullable(load(id));
+        }
+        T cached = cache.get(id);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        long version = cache.version();
+        long start = System.nanoTime();
+        T entity = load(id);
+        if (entity != null) {
+            cache.put(id, entity, version, System.nanoTime() - start);
+        }
+        return Optional.ofNullable(entity);
+    }
+
+    private T load(Long id) {
         T entity = null;
-        try {
+        RepositoryListener listener = this.listener;
+        long start = System.nanoTime();
+        try (Session session = source.open()) {
+            String sql = sqlCatalog.get(CrudOperation.FIND_BY_ID);
+            PreparedStatement findByIdPS = session.statements().prepare(sql);
             findByIdPS.setLong(1, id);
-            ResultSet rs = findByIdPS.executeQuery();
-            while (rs.next()) {
-                entity = extractEntityFromResultSet(rs);
+            try (ResultSet rs = findByIdPS.executeQuery()) {
+                entity = tracking(newEntityReader(sql, rs), rs).read();
             }
+            listener.onOperation(CrudOperation.FIND_BY_ID, System.nanoTime() - start, 0, entity == null ? 0 : 1);
         } catch (SQLException e) {
+            listener.onError(CrudOperation.FIND_BY_ID, System.nanoTime() - start, e);
             throw new RuntimeException(e);
         }
-        return Optional.ofNullable(entity);
+        return entity;
+    }
+
+    /**
+     * Loads the entities with the given ids in a few round trips: ids go in chunks through "IN (?, ...)" lists
+     * of a few fixed sizes, see {@link #ID_LIST_SIZES}, the last chunk padded by repeating its last id.
+     * Entities in the cache, when enabled, aren't looked up again.
+     * @return the entities found, in the order of their ids in {@code ids}. Ids not found are skipped.
+     */
+    public List<T> findAllById(Collection<Long> ids) {
+        Set<Long> distinctIds = new LinkedHashSet<>(ids);
+        distinctIds.remove(null);
+        Map<Long, T> found = new HashMap<>(distinctIds.size() * 2);
+        EntityCache<T> cache = this.cache;
+        if (cache != null) {
+            for (Long id : distinctIds) {
+                T cached = cache.get(id);
+                if (cached != null) {
+                    found.put(id, cached);
+                }
+            }
+        }
+        List<Long> missing = distinctIds.stream().filter(id -> !found.containsKey(id)).toList();
+        long version = cache == null ? 0 : cache.version();
+        RepositoryListener listener = this.listener;
+        long start = System.nanoTime();
+        List<T> loaded = new ArrayList<>(missing.size());
+        try (Session session = source.open()) {
+            int from = 0;
+            while (from < missing.size()) {
+                int sizeIdx = idListSizeFor(missing.size() - from);
+                int to = Math.min(missing.size(), from + ID_LIST_SIZES[sizeIdx]);
+                String sql = idListSql(sqlCatalog.get(CrudOperation.FIND_ALL_BY_ID), sizeIdx);
+                PreparedStatement findAllByIdPS = session.statements().prepare(sql);
+                bindIds(findAllByIdPS, missing, from, to, ID_LIST_SIZES[sizeIdx]);
+                try (ResultSet rs = findAllByIdPS.executeQuery()) {
+                    readAll(tracking(newEntityReader(sql, rs), rs), loaded);
+                }
+                from = to;
+            }
+            listener.onOperation(CrudOperation.FIND_ALL_BY_ID, System.nanoTime() - start, 0, loaded.size());
+        } catch (SQLException e) {
+            listener.onError(CrudOperation.FIND_ALL_BY_ID, System.nanoTime() - start, e);
+            throw new RuntimeException(e);
+        }
+        long loadTimePerEntity = loaded.isEmpty() ? 0 : (System.nanoTime() - start) / loaded.size();
+        for (T entity : loaded) {
+            Long id = metadata.getId(entity);
+            found.put(id, entity);
+            if (cache != null) {
+                cache.put(id, entity, version, loadTimePerEntity);
+            }
+        }
+        return distinctIds.stream().map(found::get).filter(Objects::nonNull).toList();
+    }
+
+    /**
+     * Runs a query the repository built itself, with an '(:ids)' parameter, for every id in chunks like
+     * {@link #findAllById(Collection)}, every row mapped by {@code mapper}. Ids are bound through setObject,
+     * so any key the list compares against works.
+     */
+    <R> List<R> queryByIds(CrudOperation operation, String sql, List<?> ids, Projection.RowMapper<R> mapper) {
+        List<R> results = new ArrayList<>();
+        RepositoryListener listener = this.listener;
+        long start = System.nanoTime();
+        try (Session session = source.open()) {
+            int from = 0;
+            while (from < ids.size()) {
+                int sizeIdx = idListSizeFor(ids.size() - from);
+                int to = Math.min(ids.size(), from + ID_LIST_SIZES[sizeIdx]);
+                PreparedStatement ps = session.statements().prepare(idListSql(sql, sizeIdx));
+                bindIds(ps, ids, from, to, ID_LIST_SIZES[sizeIdx]);
+                try (ResultSet rs = ps.executeQuery()) {
+                    readAll(rowReader(mapper, rs), results);
+                }
+                from = to;
+            }
+            listener.onOperation(operation, System.nanoTime() - start, 0, results.size());
+        } catch (SQLException e) {
+            listener.onError(operation, System.nanoTime() - start, e);
+            throw new RuntimeException(e);
+        }
+        return results;
+    }
+
+    private static int idListSizeFor(int remaining) {
+        for (int i = 0; i < ID_LIST_SIZES.length; i++) {
+            if (ID_LIST_SIZES[i] >= remaining) {
+                return i;
+            }
+        }
+        return ID_LIST_SIZES.length - 1;
+    }
+
+    /**
+     * @return {@code sql} with its '(:ids)' parameter expanded to {@code ID_LIST_SIZES[sizeIdx]} "?".
+     */
+    private String idListSql(String sql, int sizeIdx) {
+        return idListSql.computeIfAbsent(sql, s -> Arrays.stream(ID_LIST_SIZES)
+                .mapToObj(size -> s.replace(":ids", String.join(",", Collections.nCopies(size, "?"))))
+                .toArray(String[]::new))[sizeIdx];
+    }
+
+    /**
+     * Binds ids[from, to) to the first {@code size} parameters, repeating the last id when there are fewer.
+     */
+    private static void bindIds(PreparedStatement ps, List<?> ids, int from, int to, int size) throws SQLException {
+        for (int param = 1; param <= size; param++) {
+            ps.setObject(param, ids.get(Math.min(from + param, to) - 1));
+        }
+    }
+
+    /**
+     * Runs an id list statement for every id, with one JDBC batch per list size.
+     * @return the rows affected.
+     */
+    private long executeForIds(Session session, String sql, List<Long> ids) throws SQLException {
+        PreparedStatement[] statements = new PreparedStatement[ID_LIST_SIZES.length];
+        int from = 0;
+        while (from < ids.size()) {
+            int sizeIdx = idListSizeFor(ids.size() - from);
+            int to = Math.min(ids.size(), from + ID_LIST_SIZES[sizeIdx]);
+            if (statements[sizeIdx] == null) {
+                statements[sizeIdx] = session.statements().prepare(idListSql(sql, sizeIdx));
+            }
+            bindIds(statements[sizeIdx], ids, from, to, ID_LIST_SIZES[sizeIdx]);
+            statements[sizeIdx].addBatch();
+            from = to;
+        }
+        long recordsAffected = 0;
+        for (PreparedStatement ps : statements) {
+            if (ps != null) {
+                for (int count : ps.executeBatch()) {
+                    recordsAffected += Math.max(count, 0);
+                }
+            }
+        }
+        return recordsAffected;
     }
 
     public List<T> findAll() {
         List<T> entities = new ArrayList<>();
+        RepositoryListener listener = this.listener;
+        long start = System.nanoTime();
+        try (Session session = source.open()) {
+            String sql = sqlCatalog.get(CrudOperation.FIND_ALL);
+            PreparedStatement findAllPS = session.statements().prepare(sql);
+            try (ResultSet rs = findAllPS.executeQuery()) {
+                readAll(tracking(newEntityReader(sql, rs), rs), entities);
+            }
+            listener.onOperation(CrudOperation.FIND_ALL, System.nanoTime() - start, 0, entities.size());
+        } catch (SQLException e) {
+            listener.onError(CrudOperation.FIND_ALL, System.nanoTime() - start, e);
+            throw new RuntimeException(e);
+        }
+        return entities;
+    }
+
+    /**
+     * Streams every entity through a forward-only cursor that fetches {@link #getFetchSize()} rows at a time,
+     * so the whole table can be walked without materializing it.
+     * The stream holds its own statement, close it (i.e. try-with-resources) to release the cursor.
+     */
+    public Stream<T> streamAll() {
+        return stream(sqlCatalog.get(CrudOperation.STREAM_ALL));
+    }
+
+    /**
+     * Reads only the columns of the projection, of every row of {@link #getTableName()}, without building entities.
+     */
+    public <R> List<R> findAll(Projection<R> projection) {
+        List<R> results = new ArrayList<>();
+        String sql = projection.selectFrom(getTableName());
+        RepositoryListener listener = this.listener;
+        long start = System.nanoTime();
+        try (Session session = source.open()) {
+            PreparedStatement ps = session.statements().prepare(sql);
+            try (ResultSet rs = ps.executeQuery()) {
+                readAll(projectionReader(projection, rs), results);
+            }
+            listener.onOperation(CrudOperation.FIND_ALL, System.nanoTime() - start, 0, results.size());
+        } catch (SQLException e) {
+            listener.onError(CrudOperation.FIND_ALL, System.nanoTime() - start, e);
+            throw new RuntimeException(e);
+        }
+        return results;
+    }
+
+    /**
+     * Streams every entity in parallel: the ids are split into {@code partitions} ranges of about as many rows,
+     * each one read by its own cursor on its own connection, see {@link #getScanRangeSql()}. The stream splits
+     * between ranges, so fork-join consumers read up to {@code partitions} of them at the same time, and it's sized
+     * by the rows each range had when the scan was planned. Entities come ordered by id.
+     * <p>
+     * Use at most as many partitions as the pool has connections, a range waits for a free connection up to the
+     * pool's acquire timeout. Repositories built on one connection read every range through it.
+     * Close the stream to release the cursors a short-circuiting operation left open.
+     */
+    public Stream<T> streamAll(int partitions) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("A scan needs at least one partition");
+        }
+        String sql = sqlCatalog.get(CrudOperation.SCAN_RANGE);
+        // NTILE deals the ids out in order, so every range gets about as many rows whatever the gaps between ids
+        List<long[]> tiles = query(CrudOperation.AGGREGATE, "SELECT MIN(ID), COUNT(*) FROM (SELECT ID, NTILE(" + partitions + ") OVER (ORDER BY ID) AS TILE FROM "
+                + getTableName() + ") AS TILES GROUP BY TILE ORDER BY 1", List.of(), rs -> new long[]{rs.getLong(1), rs.getLong(2)});
+        List<PartitionedScan.Partition> ranges = new ArrayList<>(tiles.size());
+        for (int i = 0; i < tiles.size(); i++) {
+            // ranges meet, so rows inserted since the plan are read too
+            long fromId = i == 0 ? Long.MIN_VALUE : tiles.get(i)[0];
+            long toId = i == tiles.size() - 1 ? Long.MAX_VALUE : tiles.get(i + 1)[0] - 1;
+            ranges.add(new PartitionedScan.Partition(fromId, toId, tiles.get(i)[1]));
+        }
+        PartitionedScan<T> scan = new PartitionedScan<>(source, sql, fetchSize, rs -> tracking(newEntityReader(sql, rs), rs), listener, ranges);
+        return StreamSupport.stream(scan.spliterator(), true).onClose(scan::close);
+    }
+
+    /**
+     * Same as {@link #findAll(Projection)} but streamed like {@link #streamAll()}, close the stream to release its cursor.
+     */
+    public <R> Stream<R> streamAll(Projection<R> projection) {
+        return openStream(projection.selectFrom(getTableName()), rs -> projectionReader(projection, rs));
+    }
+
+    private static <R> EntityReader<R> projectionReader(Projection<R> projection, ResultSet rs) {
+        return rowReader(projection::map, rs);
+    }
+
+    private static <R> EntityReader<R> rowReader(Projection.RowMapper<R> mapper, ResultSet rs) {
+        return () -> rs.next() ? mapper.map(rs) : null;
+    }
+
+    Stream<T> stream(String sql) {
+        return openStream(sql, rs -> tracking(newEntityReader(sql, rs), rs));
+    }
+
+    /**
+     * Streams a query the repository built itself, every row mapped by {@code mapper}. Close it to release its cursor.
+     */
+    <R> Stream<R> stream(String sql, Projection.RowMapper<R> mapper) {
+        return openStream(sql, rs -> rowReader(mapper, rs));
+    }
+
+    @FunctionalInterface
+    interface ReaderFactory<R> {
+        EntityReader<R> open(ResultSet rs) throws SQLException;
+    }
+
+    /**
+     * Reported to the listener as {@link CrudOperation#STREAM_ALL} when the stream is closed, timed from when it was opened.
+     */
+    private <R> Stream<R> openStream(String sql, ReaderFactory<R> readers) {
+        RepositoryListener listener = this.listener;
+        long start = System.nanoTime();
+        LongAdder mapped = new LongAdder();
+        Session session = null;
+        PreparedStatement ps = null;
         try {
-            PreparedStatement findAllPS = connection.prepareStatement(getSqlByAnotation(CrudOperation.FIND_ALL, this::getFindAllSql), ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+            session = source.openDedicated();
+            ps = session.connection().prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            EntityReader<R> reader = readers.open(ps.executeQuery());
+            PreparedStatement streamPS = ps;
+            Session streamSession = session;
+            return StreamSupport.stream(new Spliterators.AbstractSpliterator<R>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+                @Override
+                public boolean tryAdvance(Consumer<? super R> action) {
+                    try {
+                        R entity = reader.read();
+                        if (entity == null) {
+                            return false;
+                        }
+                        mapped.increment();
+                        action.accept(entity);
+                        return true;
+                    } catch (SQLException e) {
+                        listener.onError(CrudOperation.STREAM_ALL, System.nanoTime() - start, e);
+                        throw new RuntimeException(e);
+                    }
+                }
+            }, false).onClose(() -> {
+                try {
+                    streamPS.close();
+                    listener.onOperation(CrudOperation.STREAM_ALL, System.nanoTime() - start, 0, mapped.sum());
+                } catch (SQLException e) {
+                    throw new RuntimeException(e);
+                } finally {
+                    streamSession.close();
+                }
+            });
+        } catch (SQLException e) {
+            listener.onError(CrudOperation.STREAM_ALL, System.nanoTime() - start, e);
+            StatementCache.closeQuietly(ps);
+            if (session != null) {
+                session.close();
+            }
+            throw new RuntimeException(e);
+        }
+    }
 
-            ResultSet rs = findAllPS.executeQuery();
-            while (rs.next()) {
-                entities.add(extractEntityFromResultSet(rs));
+    /**
+     * Keyset pagination: returns up to {@code limit} entities whose id is greater than {@code afterId}, ordered by id.
+     * Pass {@code null} for the first page and the id of the last entity of a page to get the next one.
+     */
+    public List<T> findPage(Long afterId, int limit) {
+        List<T> entities = new ArrayList<>(limit);
+        RepositoryListener listener = this.listener;
+        long start = System.nanoTime();
+        try (Session session = source.open()) {
+            String sql = sqlCatalog.get(CrudOperation.FIND_PAGE);
+            PreparedStatement findPagePS = session.statements().prepare(sql);
+            findPagePS.setLong(1, afterId == null ? Long.MIN_VALUE : afterId);
+            findPagePS.setInt(2, limit);
+            try (ResultSet rs = findPagePS.executeQuery()) {
+                readAll(tracking(newEntityReader(sql, rs), rs), entities);
             }
+            listener.onOperation(CrudOperation.FIND_PAGE, System.nanoTime() - start, 0, entities.size());
         } catch (SQLException e) {
+            listener.onError(CrudOperation.FIND_PAGE, System.nanoTime() - start, e);
             throw new RuntimeException(e);
         }
         return entities;
     }
 
+    /**
+     * Runs a query the repository built itself, with one parameter bound to {@code id}, reading the entities through
+     * {@link #newEntityReader}. Reported to the listener as {@code operation}.
+     */
+    List<T> findBy(CrudOperation operation, String sql, Long id) {
+        return findBy(operation, sql, List.of(id));
+    }
+
+    /**
+     * Same as {@link #findBy(CrudOperation, String, Long)} with every parameter bound in order through setObject.
+     */
+    List<T> findBy(CrudOperation operation, String sql, List<?> parameters) {
+        return read(operation, sql, parameters, rs -> tracking(newEntityReader(sql, rs), rs));
+    }
+
+    /**
+     * Same as {@link #findBy(CrudOperation, String, List)} with every row mapped by {@code mapper} instead of
+     * building entities, i.e. for aggregates.
+     */
+    <R> List<R> query(CrudOperation operation, String sql, List<?> parameters, Projection.RowMapper<R> mapper) {
+        return read(operation, sql, parameters, rs -> rowReader(mapper, rs));
+    }
+
+    private <R> List<R> read(CrudOperation operation, String sql, List<?> parameters, ReaderFactory<R> readers) {
+        List<R> results = new ArrayList<>();
+        RepositoryListener listener = this.listener;
+        long start = System.nanoTime();
+        try (Session session = source.open()) {
+            PreparedStatement ps = session.statements().prepare(sql);
+            for (int i = 0; i < parameters.size(); i++) {
+                ps.setObject(i + 1, parameters.get(i));
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                readAll(readers.open(rs), results);
+            }
+            listener.onOperation(operation, System.nanoTime() - start, 0, results.size());
+        } catch (SQLException e) {
+            listener.onError(operation, System.nanoTime() - start, e);
+            throw new RuntimeException(e);
+        }
+        return results;
+    }
+
+    private static <E> void readAll(EntityReader<E> reader, List<E> entities) throws SQLException {
+        E entity;
+        while ((entity = reader.read()) != null) {
+            entities.add(entity);
+        }
+    }
+
     public Long getCount() {
         Long count = 0L;
-        try {
-            PreparedStatement getCountPS = connection.prepareStatement(getSqlByAnotation(CrudOperation.COUNT, this::getCountSql));
-            ResultSet resultSet = getCountPS.executeQuery();
-            while (resultSet.next()) {
-                count = resultSet.getLong(1);
+        RepositoryListener listener = this.listener;
+        long start = System.nanoTime();
+        try (Session session = source.open()) {
+            PreparedStatement getCountPS = prepare(session, CrudOperation.COUNT);
+            try (ResultSet resultSet = getCountPS.executeQuery()) {
+                while (resultSet.next()) {
+                    count = resultSet.getLong(1);
+                }
             }
+            listener.onOperation(CrudOperation.COUNT, System.nanoTime() - start, 0, 0);
         } catch (SQLException e) {
+            listener.onError(CrudOperation.COUNT, System.nanoTime() - start, e);
             throw new RuntimeException(e);
         }
         return count;
     }
 
     public void delete(T entity) {
-        PreparedStatement deletePS = null;
-        try {
-             deletePS = connection.prepareStatement(getSqlByAnotation(CrudOperation.DELETE_ONE, this::getDeleteSql));
-            deletePS.setLong(1, getByAnnotation(entity));
+        RepositoryListener listener = this.listener;
+        long start = System.nanoTime();
+        try (Session session = source.open()) {
+            for (String cascadeSql : getDeleteCascadeSql()) {
+                executeForIds(session, cascadeSql, List.of(metadata.getId(entity)));
+            }
+            PreparedStatement deletePS = prepare(session, CrudOperation.DELETE_ONE);
+            deletePS.setLong(1, metadata.getId(entity));
             int recordsAffected = deletePS.executeUpdate();
-            System.out.println(recordsAffected);
+            listener.onOperation(CrudOperation.DELETE_ONE, System.nanoTime() - start, recordsAffected, 0);
+            entityListeners.forEach(l -> l.onDeleted(metadata.getId(entity)));
         } catch (SQLException e) {
+            listener.onError(CrudOperation.DELETE_ONE, System.nanoTime() - start, e);
             throw new RuntimeException(e);
+        } finally {
+            untrack(entity);
+            invalidateCached(entity);
         }
     }
 
+    /**
+     * Deletes the entities with bound ids, in chunks of the sizes in {@link #ID_LIST_SIZES} sent as one batch per size.
+     */
     public void delete(T... entities) {
+        List<Long> ids = Arrays.stream(entities).map(metadata::getId).filter(Objects::nonNull).distinct().toList();
         try {
-            Statement stmt = connection.createStatement();
-            String ids = Arrays.stream(entities).map(this::getByAnnotation).map(String::valueOf).collect(joining(","));
-            int recordsAffected = stmt.executeUpdate(getSqlByAnotation(CrudOperation.DELETE_MANY, this::getDeleteManyInSql).replace(":ids", ids));
-            System.out.println(recordsAffected);
+            deleteIds(ids);
+        } finally {
+            for (T entity : entities) {
+                invalidateCached(entity);
+            }
+        }
+    }
+
+    /**
+     * Deletes every id of the stream, {@link #getBatchSize()} ids at a time, so purges of any size run
+     * in constant memory. Rows referencing the deleted ones are handled first, see {@link #getDeleteCascadeSql()}.
+     * @return the number of entities deleted.
+     */
+    public long deleteAllById(Stream<Long> ids) {
+        long deleted = 0;
+        List<Long> chunk = new ArrayList<>(batchSize);
+        Iterator<Long> iterator = ids.filter(Objects::nonNull).iterator();
+        while (iterator.hasNext()) {
+            chunk.add(iterator.next());
+            if (chunk.size() == batchSize || !iterator.hasNext()) {
+                List<Long> distinctIds = chunk.stream().distinct().toList();
+                try {
+                    deleted += deleteIds(distinctIds);
+                } finally {
+                    EntityCache<T> cache = this.cache;
+                    if (cache != null) {
+                        distinctIds.forEach(cache::invalidate);
+                    }
+                }
+                chunk = new ArrayList<>(batchSize);
+            }
+        }
+        return deleted;
+    }
+
+    private long deleteIds(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        RepositoryListener listener = this.listener;
+        long start = System.nanoTime();
+        try (Session session = source.open()) {
+            for (String cascadeSql : getDeleteCascadeSql()) {
+                executeForIds(session, cascadeSql, ids);
+            }
+            long recordsAffected = executeForIds(session, sqlCatalog.get(CrudOperation.DELETE_MANY), ids);
+            listener.onOperation(CrudOperation.DELETE_MANY, System.nanoTime() - start, recordsAffected, 0);
+            for (EntityListener<T> entityListener : entityListeners) {
+                ids.forEach(entityListener::onDeleted);
+            }
+            return recordsAffected;
         } catch (SQLException e) {
+            listener.onError(CrudOperation.DELETE_MANY, System.nanoTime() - start, e);
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Puts a bounded cache in front of {@link #findById(Long)}, replacing the current one if any.
+     * Saves, updates and deletes made through this repository invalidate it, changes made any other way
+     * are only seen once the entity expires, see {@link CacheSettings#timeToLive}.
+     */
+    public void enableCache(CacheSettings settings) {
+        this.cache = new EntityCache<>(settings, this::copy, this::referencedIds);
+    }
+
+    public void disableCache() {
+        this.cache = null;
+    }
+
+    /**
+     * Drops every cached entity, i.e. after the tables were changed outside of this repository.
+     */
+    public void clearCache() {
+        EntityCache<T> cache = this.cache;
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+
+    public CacheStats getCacheStats() {
+        EntityCache<T> cache = this.cache;
+        return cache == null ? CacheStats.EMPTY : cache.stats();
+    }
+
+    void invalidateCached(T entity) {
+        EntityCache<T> cache = this.cache;
+        if (cache != null) {
+            cachedIdsAffectedBy(entity).forEach(cache::invalidate);
+        }
+    }
+
+    /**
+     * @return the ids whose cached entity is stale once {@code entity} is written. By default just its own id,
+     * cached entities that embed it are dropped too, see {@link #referencedIds(Object)}.
+     */
+    protected Stream<Long> cachedIdsAffectedBy(T entity) {
+        return Stream.ofNullable(metadata.getId(entity));
+    }
+
+    /**
+     * @return the ids of the other entities embedded in a loaded entity, so writing any of them invalidates it.
+     */
+    protected Stream<Long> referencedIds(T entity) {
+        return Stream.empty();
+    }
+
+    /**
+     * @return a copy of the entity that shares no mutable state with it, the entity cache stores and hands out copies.
+     * Entities that can't be changed can be returned as they are, which is the default.
+     */
+    protected T copy(T entity) {
+        return entity;
+    }
+
+    /**
+     * Reports every operation run against the database to the listener, i.e. a {@link RepositoryMetrics}.
+     * {@code null} goes back to {@link RepositoryListener#NONE}.
+     */
+    public void setListener(RepositoryListener listener) {
+        this.listener = listener == null ? RepositoryListener.NONE : listener;
+    }
+
+    public RepositoryListener getListener() {
+        return listener;
+    }
+
+    void addEntityListener(EntityListener<T> entityListener) {
+        entityListeners.add(entityListener);
+    }
+
+    void removeEntityListener(EntityListener<T> entityListener) {
+        entityListeners.remove(entityListener);
+    }
+
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    public void setFetchSize(int fetchSize) {
+        if (fetchSize < 1) {
+            throw new IllegalArgumentException("Fetch size must be greater than 0");
+        }
+        this.fetchSize = fetchSize;
+    }
+
+    public long getStatementCacheHits() {
+        return source.getStatementCacheHits();
+    }
+
+    public long getStatementCacheMisses() {
+        return source.getStatementCacheMisses();
+    }
+
+    public long getStatementCacheEvictions() {
+        return source.getStatementCacheEvictions();
+    }
+
+    /**
+     * Closes the prepared statements of this repository. The connection or pool is left open, it belongs to the caller.
+     */
+    @Override
+    public void close() {
+        if (ownsSource) {
+            source.release();
+        }
+    }
+
 
     protected String getUpdateSql() {
         throw new RuntimeException("Can't find sql input");
@@ -187,6 +1106,14 @@ abstract class CrudRepository<T> {
 
     }
 
+    /**
+     * @return statements with an '(:ids)' parameter that run before entities are deleted, to clean up the rows
+     * referencing them, i.e. "UPDATE PEOPLE SET SPOUSE = NULL WHERE SPOUSE IN (:ids)". None by default.
+     */
+    protected List<String> getDeleteCascadeSql() {
+        return List.of();
+    }
+
     /**
      * @return Should return a SQL string like:
      * "DELETE FROM PEOPLE WHERE ID IN (:ids)"
@@ -197,6 +1124,13 @@ abstract class CrudRepository<T> {
 
     }
 
+    /**
+     * @return the table the entities are stored in, projections select from it.
+     */
+    protected String getTableName() {
+        throw new RuntimeException("Can't find the table name");
+    }
+
     protected String getCountSql() {
         throw new RuntimeException("Can't find sql input");
 
@@ -216,13 +1150,65 @@ abstract class CrudRepository<T> {
 
     }
 
+    /**
+     * @return SQL that selects every entity, one row per entity, without any limit.
+     */
+    protected String getStreamAllSql() {
+        throw new RuntimeException("Can't find sql input");
+    }
+
+    /**
+     * @return SQL with two parameters, the first and last id of a range, that selects the entities in it ordered by id,
+     * i.e. "SELECT ... WHERE ID BETWEEN ? AND ? ORDER BY ID". Used by {@link #streamAll(int)}.
+     */
+    protected String getScanRangeSql() {
+        throw new RuntimeException("Can't find sql input");
+    }
+
+    /**
+     * @return SQL with two parameters, the id to start after and the page size, i.e.
+     * "SELECT ... WHERE ID > ? ORDER BY ID FETCH FIRST ? ROWS ONLY"
+     */
+    protected String getFindPageSql() {
+        throw new RuntimeException("Can't find sql input");
+    }
+
+    /**
+     * @return SQL that selects the entities whose id is in a list, i.e.
+     * "SELECT ... WHERE ID IN (:ids)". Be sure to include the '(:ids)' named parameter, it's replaced by
+     * the right number of "?". Entities spanning several rows must come ordered by id.
+     */
+    protected String getFindAllByIdSql() {
+        throw new RuntimeException("Can't find sql input");
+    }
+
     private String getSaveSQL() {
         throw new RuntimeException("Can't find sql input");
     }
 
     abstract T extractEntityFromResultSet(ResultSet rs) throws SQLException;
 
+    /**
+     * @return the columns {@link #update(Object)} tracks, or {@code null} to always write every column
+     * through {@link #mapForUpdate}. Called once, from the constructor.
+     */
+    UpdateColumns<T> updateColumns() {
+        return null;
+    }
+
+    /**
+     * Creates the reader used by every query of this repository. By default every row is one entity,
+     * mapped by {@link #extractEntityFromResultSet(ResultSet)}.
+     * @param sql the query that produced the result set, so readers can keep per-query state.
+     */
+    EntityReader<T> newEntityReader(String sql, ResultSet rs) throws SQLException {
+        return () -> rs.next() ? extractEntityFromResultSet(rs) : null;
+    }
+
     abstract void mapForSave(T entity, PreparedStatement ps) throws SQLException;
 
+    /**
+     * Binds every updated column, the id is bound after them to the last parameter.
+     */
     abstract void mapForUpdate(T entity, PreparedStatement ps) throws SQLException;
 }
@@ -0,0 +1,152 @@
+package com.ruquet.peopledb.repository;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+/**
+ * Entities by id, kept in LRU order and bounded by {@link CacheSettings#getMaxSize()}.
+ * The cache holds its own copy of every entity and hands out copies, so callers can't change what others read.
+ * Cached entities can embed others (a person's spouse and children), invalidating an id also drops
+ * every cached entity that embeds it.
+ * Every invalidation bumps a version, and a load only gets cached if no invalidation happened while it ran,
+ * so a slow read can't put back an entity that was just updated.
+ */
+final class EntityCache<T> {
+    private record Entry<T>(T entity, List<Long> references, long expiresAt) {
+    }
+
+    private final UnaryOperator<T> copier;
+    private final Function<T, Stream<Long>> references;
+    private final LongSupplier clock;
+    private final long ttlNanos;
+    private final LinkedHashMap<Long, Entry<T>> entries;
+    private final Map<Long, Set<Long>> embeddedIn = new HashMap<>();
+    private long version;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+    private long invalidations;
+    private long loads;
+    private long loadNanos;
+
+    EntityCache(CacheSettings settings, UnaryOperator<T> copier, Function<T, Stream<Long>> references) {
+        this(settings, copier, references, System::nanoTime);
+    }
+
+    EntityCache(CacheSettings settings, UnaryOperator<T> copier, Function<T, Stream<Long>> references, LongSupplier clock) {
+        int maxSize = settings.getMaxSize();
+        Duration ttl = settings.getTimeToLive();
+        this.copier = copier;
+        this.references = references;
+        this.clock = clock;
+        this.ttlNanos = ttl == null ? 0 : ttl.toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry<T>> eldest) {
+                if (size() <= maxSize) {
+                    return false;
+                }
+                evictions++;
+                unlink(eldest.getKey(), eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * @return a copy of the cached entity, or {@code null} when it isn't cached or has expired.
+     */
+    synchronized T get(Long id) {
+        Entry<T> entry = entries.get(id);
+        if (entry != null && ttlNanos != 0 && clock.getAsLong() - entry.expiresAt() >= 0) {
+            remove(id);
+            expirations++;
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return copier.apply(entry.entity());
+    }
+
+    synchronized long version() {
+        return version;
+    }
+
+    /**
+     * Caches a copy of an entity loaded from the database, unless something was invalidated since {@code version}.
+     */
+    synchronized void put(Long id, T entity, long version, long loadTimeNanos) {
+        loads++;
+        loadNanos += loadTimeNanos;
+        if (version != this.version) {
+            return;
+        }
+        remove(id);
+        List<Long> refs = references.apply(entity).filter(ref -> !ref.equals(id)).distinct().toList();
+        for (Long ref : refs) {
+            embeddedIn.computeIfAbsent(ref, k -> new HashSet<>()).add(id);
+        }
+        entries.put(id, new Entry<>(copier.apply(entity), refs, clock.getAsLong() + ttlNanos));
+    }
+
+    synchronized void invalidate(Long id) {
+        version++;
+        if (remove(id)) {
+            invalidations++;
+        }
+        Set<Long> embedding = embeddedIn.remove(id);
+        if (embedding != null) {
+            for (Long owner : embedding) {
+                if (remove(owner)) {
+                    invalidations++;
+                }
+            }
+        }
+    }
+
+    synchronized void invalidateAll() {
+        version++;
+        invalidations += entries.size();
+        entries.clear();
+        embeddedIn.clear();
+    }
+
+    synchronized CacheStats stats() {
+        return new CacheStats(entries.size(), hits, misses, evictions, expirations, invalidations, loads,
+                Duration.ofNanos(loads == 0 ? 0 : loadNanos / loads));
+    }
+
+    private boolean remove(Long id) {
+        Entry<T> entry = entries.remove(id);
+        if (entry == null) {
+            return false;
+        }
+        unlink(id, entry);
+        return true;
+    }
+
+    private void unlink(Long id, Entry<T> entry) {
+        for (Long ref : entry.references()) {
+            Set<Long> owners = embeddedIn.get(ref);
+            if (owners != null) {
+                owners.remove(id);
+                if (owners.isEmpty()) {
+                    embeddedIn.remove(ref);
+                }
+            }
+        }
+    }
+}
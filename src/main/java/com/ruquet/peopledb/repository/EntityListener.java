@@ -0,0 +1,19 @@
+package com.ruquet.peopledb.repository;
+
+/**
+ * Told about every entity a repository wrote, once the write succeeded. Called on the thread that wrote it,
+ * so implementations must be thread safe. Writes made any other way aren't seen.
+ */
+interface EntityListener<T> {
+    /**
+     * @param entity with its generated id.
+     */
+    void onSaved(T entity);
+
+    /**
+     * Only for entities that had a column written, updates skipped by change tracking aren't reported.
+     */
+    void onUpdated(T entity);
+
+    void onDeleted(Long id);
+}
@@ -0,0 +1,147 @@
+package com.ruquet.peopledb.repository;
+
+import com.ruquet.peopledb.anotation.Id;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.VarHandle;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Id access for an entity class, resolved once per class and shared by every repository.
+ * Entities compiled with the metadata processor use the {@link IdAccessor} it generated, without any reflection.
+ * For the others the {@link Id} field is read through a {@link VarHandle}. Mutable entities get their id written through it too,
+ * while entities with a final id get a copy built through a {@code withId(Long)} method when there is one,
+ * or else through the constructor that takes every field in declaration order (like {@code Address}).
+ */
+final class EntityMetadata<T> {
+    private static final ClassValue<EntityMetadata<?>> REGISTRY = new ClassValue<>() {
+        @Override
+        protected EntityMetadata<?> computeValue(Class<?> type) {
+            return new EntityMetadata<>(type);
+        }
+    };
+
+    private final Class<T> type;
+    private final IdAccessor<T> generated;
+    private final VarHandle idHandle;
+    private final boolean immutable;
+    private final MethodHandle wither;
+    private final MethodHandle constructor;
+    private final VarHandle[] constructorArgs;
+    private final int idArgIndex;
+
+    @SuppressWarnings("unchecked")
+    static <T> EntityMetadata<T> of(Class<T> type) {
+        return (EntityMetadata<T>) REGISTRY.get(type);
+    }
+
+    private EntityMetadata(Class<T> type) {
+        this.type = type;
+        this.generated = GeneratedMetadata.ids(type);
+        if (generated != null) {
+            this.idHandle = null;
+            this.immutable = false;
+            this.wither = null;
+            this.constructor = null;
+            this.constructorArgs = null;
+            this.idArgIndex = -1;
+            return;
+        }
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+            Field idField = findIdField(type);
+            this.idHandle = lookup.unreflectVarHandle(idField);
+            this.immutable = Modifier.isFinal(idField.getModifiers());
+            if (!immutable) {
+                this.wither = null;
+                this.constructor = null;
+                this.constructorArgs = null;
+                this.idArgIndex = -1;
+                return;
+            }
+            this.wither = findWither(lookup, type);
+            if (wither != null) {
+                this.constructor = null;
+                this.constructorArgs = null;
+                this.idArgIndex = -1;
+                return;
+            }
+            List<Field> fields = Arrays.stream(type.getDeclaredFields())
+                    .filter(f -> !Modifier.isStatic(f.getModifiers()))
+                    .toList();
+            Class<?>[] fieldTypes = fields.stream().map(Field::getType).toArray(Class<?>[]::new);
+            Constructor<T> ctor = type.getDeclaredConstructor(fieldTypes);
+            this.constructor = lookup.unreflectConstructor(ctor).asSpreader(Object[].class, fieldTypes.length)
+                    .asType(MethodType.methodType(Object.class, Object[].class));
+            this.constructorArgs = new VarHandle[fields.size()];
+            for (int i = 0; i < fields.size(); i++) {
+                constructorArgs[i] = lookup.unreflectVarHandle(fields.get(i));
+            }
+            this.idArgIndex = fields.indexOf(idField);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to read the @Id of " + type.getName(), e);
+        }
+    }
+
+    private static Field findIdField(Class<?> type) {
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field f : c.getDeclaredFields()) {
+                if (f.isAnnotationPresent(Id.class)) {
+                    if (f.getType() != Long.class) {
+                        throw new IllegalStateException("@Id of " + type.getName() + " must be a Long");
+                    }
+                    return f;
+                }
+            }
+        }
+        throw new IllegalStateException("No @Id found on " + type.getName());
+    }
+
+    private static MethodHandle findWither(MethodHandles.Lookup lookup, Class<?> type) throws IllegalAccessException {
+        try {
+            return lookup.findVirtual(type, "withId", MethodType.methodType(type, Long.class))
+                    .asType(MethodType.methodType(Object.class, Object.class, Long.class));
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    Long getId(T entity) {
+        if (generated != null) {
+            return generated.getId(entity);
+        }
+        return (Long) idHandle.get(entity);
+    }
+
+    /**
+     * @return the same entity with its id set when the id is mutable, otherwise a copy with the new id.
+     */
+    @SuppressWarnings("unchecked")
+    T withId(T entity, Long id) {
+        if (generated != null) {
+            return generated.withId(entity, id);
+        }
+        if (!immutable) {
+            idHandle.set(entity, id);
+            return entity;
+        }
+        try {
+            if (wither != null) {
+                return (T) wither.invokeExact((Object) entity, id);
+            }
+            Object[] args = new Object[constructorArgs.length];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = i == idArgIndex ? id : constructorArgs[i].get(entity);
+            }
+            return (T) constructor.invokeExact(args);
+        } catch (Throwable e) {
+            throw new IllegalStateException("Unable to set the id of " + type.getName(), e);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.ruquet.peopledb.repository;
+
+import java.sql.SQLException;
+
+/**
+ * Reads entities out of a forward-only result set, one call per entity.
+ */
+@FunctionalInterface
+interface EntityReader<T> {
+    /**
+     * @return the next entity, or null when there are no more rows.
+     */
+    T read() throws SQLException;
+}
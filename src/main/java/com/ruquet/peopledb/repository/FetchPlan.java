@@ -0,0 +1,57 @@
+package com.ruquet.peopledb.repository;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The associations of a person joined by {@link PeopleRepository#findById(Long, FetchPlan)}, i.e.
+ * {@code FetchPlan.of(HOME_ADDRESS, CHILDREN)}. The others are loaded lazily, on first access.
+ */
+public final class FetchPlan {
+    public enum Association {
+        HOME_ADDRESS,
+        BUSINESS_ADDRESS,
+        SPOUSE,
+        CHILDREN
+    }
+
+    public static final FetchPlan NONE = new FetchPlan(EnumSet.noneOf(Association.class));
+    public static final FetchPlan ALL = new FetchPlan(EnumSet.allOf(Association.class));
+
+    private final Set<Association> associations;
+
+    private FetchPlan(EnumSet<Association> associations) {
+        this.associations = Collections.unmodifiableSet(associations);
+    }
+
+    public static FetchPlan of(Association... associations) {
+        EnumSet<Association> fetched = EnumSet.noneOf(Association.class);
+        fetched.addAll(Arrays.asList(associations));
+        return new FetchPlan(fetched);
+    }
+
+    public boolean fetches(Association association) {
+        return associations.contains(association);
+    }
+
+    public Set<Association> getAssociations() {
+        return associations;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o instanceof FetchPlan plan && associations.equals(plan.associations);
+    }
+
+    @Override
+    public int hashCode() {
+        return associations.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "FetchPlan" + associations;
+    }
+}
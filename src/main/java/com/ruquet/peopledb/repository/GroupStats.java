@@ -0,0 +1,42 @@
+package com.ruquet.peopledb.repository;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Headcount and salary of one group of people, see {@link PeopleStatistics}. Salaries are summed with the scale
+ * of the SALARY column, people without one count in the headcount only.
+ * @param key       what the group has in common, null for the people without it, i.e. without a home address.
+ * @param salaried  people with a salary.
+ * @param minSalary null when nobody in the group has a salary, same for maxSalary.
+ */
+public record GroupStats<K>(K key, long headcount, long salaried, BigDecimal totalSalary, BigDecimal minSalary,
+                            BigDecimal maxSalary) {
+
+    /**
+     * @return rounded to cents, null when nobody in the group has a salary.
+     */
+    public BigDecimal averageSalary() {
+        return salaried == 0 ? null : totalSalary.divide(BigDecimal.valueOf(salaried), 2, RoundingMode.HALF_EVEN);
+    }
+
+    /**
+     * @return both groups as one, under {@code key}.
+     */
+    <N> GroupStats<N> merge(N key, GroupStats<?> other) {
+        return new GroupStats<>(key, headcount + other.headcount, salaried + other.salaried,
+                totalSalary.add(other.totalSalary), min(minSalary, other.minSalary), max(maxSalary, other.maxSalary));
+    }
+
+    <N> GroupStats<N> withKey(N key) {
+        return new GroupStats<>(key, headcount, salaried, totalSalary, minSalary, maxSalary);
+    }
+
+    private static BigDecimal min(BigDecimal a, BigDecimal b) {
+        return a == null ? b : b == null ? a : a.min(b);
+    }
+
+    private static BigDecimal max(BigDecimal a, BigDecimal b) {
+        return a == null ? b : b == null ? a : a.max(b);
+    }
+}
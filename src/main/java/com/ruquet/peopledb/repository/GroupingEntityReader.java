@@ -0,0 +1,65 @@
+package com.ruquet.peopledb.repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Objects;
+
+/**
+ * Assembles entities that span several consecutive rows, like a parent joined with its children,
+ * without ever moving the cursor backwards. The rows of one entity must come together,
+ * so the query has to be ordered by the entity's key.
+ * The first row of the next entity is consumed to notice that the current one ended, so it's kept
+ * and becomes the start of the next call.
+ */
+final class GroupingEntityReader<T> implements EntityReader<T> {
+    @FunctionalInterface
+    interface RowFunction<R> {
+        R apply(ResultSet rs) throws SQLException;
+    }
+
+    @FunctionalInterface
+    interface RowMerger<T> {
+        void merge(T entity, ResultSet rs) throws SQLException;
+    }
+
+    private final ResultSet rs;
+    private final RowFunction<Object> keyReader;
+    private final RowFunction<T> entityReader;
+    private final RowMerger<T> rowMerger;
+    private T pending;
+    private Object pendingKey;
+
+    /**
+     * @param keyReader    reads the key of the entity the current row belongs to.
+     * @param entityReader creates the entity from its first row, including what that row joins to it.
+     * @param rowMerger    adds what the following rows of the same entity join to it.
+     */
+    GroupingEntityReader(ResultSet rs, RowFunction<Object> keyReader, RowFunction<T> entityReader, RowMerger<T> rowMerger) {
+        this.rs = rs;
+        this.keyReader = keyReader;
+        this.entityReader = entityReader;
+        this.rowMerger = rowMerger;
+    }
+
+    @Override
+    public T read() throws SQLException {
+        T current = pending;
+        Object currentKey = pendingKey;
+        pending = null;
+        pendingKey = null;
+        while (rs.next()) {
+            Object key = keyReader.apply(rs);
+            if (current == null) {
+                current = entityReader.apply(rs);
+                currentKey = key;
+            } else if (Objects.equals(key, currentKey)) {
+                rowMerger.merge(current, rs);
+            } else {
+                pending = entityReader.apply(rs);
+                pendingKey = key;
+                return current;
+            }
+        }
+        return current;
+    }
+}
@@ -0,0 +1,14 @@
+package com.ruquet.peopledb.repository;
+
+/**
+ * Reads and writes the {@link com.ruquet.peopledb.anotation.Id} of an entity. Generated at compile time
+ * into {@code GeneratedMetadata} for the entities of this build, see {@link EntityMetadata}.
+ */
+interface IdAccessor<T> {
+    Long getId(T entity);
+
+    /**
+     * @return the same entity with its id set when the id is mutable, otherwise a copy with the new id.
+     */
+    T withId(T entity, Long id);
+}
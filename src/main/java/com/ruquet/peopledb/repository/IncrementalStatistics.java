@@ -0,0 +1,207 @@
+package com.ruquet.peopledb.repository;
+
+import com.ruquet.peopledb.model.Person;
+import com.ruquet.peopledb.repository.PeopleStatistics.Dimension;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Period;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The numbers of {@link PeopleStatistics} kept in memory: what they need of every person, by id, and running totals
+ * per group, updated by every write the repository reports. The salaries of a group are kept counted by amount,
+ * so its min and max are still known once people leave it.
+ * <p>
+ * Updates only write the columns of PEOPLE, so an updated person keeps the address keys they were saved or loaded with.
+ */
+final class IncrementalStatistics implements EntityListener<Person> {
+    private static final Dimension[] DIMENSIONS = Dimension.values();
+    private static final String LOAD_SQL = "SELECT PARENT.ID, PARENT.SALARY, PARENT.DOB, "
+            + Stream.of(DIMENSIONS).map(d -> d.column).collect(Collectors.joining(", "))
+            + " FROM PEOPLE AS PARENT " + PeopleRepository.HOME_JOIN + " " + PeopleRepository.BIZ_JOIN;
+
+    /**
+     * @param keys by {@link Dimension#ordinal()}.
+     */
+    private record Row(Long id, BigDecimal salary, LocalDate dob, String[] keys) {
+        static Row of(Person person, String[] keys) {
+            BigDecimal salary = person.getSalary() == null ? null : person.getSalary().setScale(2, RoundingMode.HALF_UP);
+            LocalDate dob = person.getDob() == null ? null : person.getDob().withZoneSameInstant(ZoneOffset.UTC).toLocalDate();
+            return new Row(person.getId(), salary, dob, keys);
+        }
+
+        static Row read(ResultSet rs) throws SQLException {
+            LocalDateTime dob = rs.getObject(3, LocalDateTime.class);
+            String[] keys = new String[DIMENSIONS.length];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = rs.getString(i + 4);
+            }
+            return new Row(rs.getLong(1), rs.getBigDecimal(2), dob == null ? null : dob.toLocalDate(), keys);
+        }
+    }
+
+    private static final class Accumulator {
+        private long headcount;
+        private long salaried;
+        private BigDecimal total = BigDecimal.ZERO.setScale(2);
+        private final TreeMap<BigDecimal, Integer> salaries = new TreeMap<>();
+
+        void add(BigDecimal salary) {
+            headcount++;
+            if (salary != null) {
+                salaried++;
+                total = total.add(salary);
+                salaries.merge(salary, 1, Integer::sum);
+            }
+        }
+
+        void remove(BigDecimal salary) {
+            headcount--;
+            if (salary != null) {
+                salaried--;
+                total = total.subtract(salary);
+                salaries.computeIfPresent(salary, (amount, count) -> count == 1 ? null : count - 1);
+            }
+        }
+
+        <K> GroupStats<K> stats(K key) {
+            return new GroupStats<>(key, headcount, salaried, total,
+                    salaries.isEmpty() ? null : salaries.firstKey(), salaries.isEmpty() ? null : salaries.lastKey());
+        }
+    }
+
+    private final Map<Long, Row> rows = new HashMap<>();
+    private final Accumulator overall = new Accumulator();
+    private final List<Map<String, Accumulator>> groups = new ArrayList<>();
+    private final TreeMap<LocalDate, Accumulator> byDob = new TreeMap<>();
+    private final Accumulator withoutDob = new Accumulator();
+
+    private IncrementalStatistics() {
+        for (int i = 0; i < DIMENSIONS.length; i++) {
+            groups.add(new HashMap<>());
+        }
+    }
+
+    /**
+     * Listens to the repository before reading the table, holding the lock so the writes reported meanwhile
+     * wait and then replace what was read.
+     */
+    static IncrementalStatistics load(PeopleRepository repository) {
+        IncrementalStatistics statistics = new IncrementalStatistics();
+        synchronized (statistics) {
+            repository.addEntityListener(statistics);
+            try (Stream<Row> rows = repository.stream(LOAD_SQL, Row::read)) {
+                rows.forEach(statistics::put);
+            } catch (RuntimeException e) {
+                repository.removeEntityListener(statistics);
+                throw e;
+            }
+        }
+        return statistics;
+    }
+
+    @Override
+    public synchronized void onSaved(Person person) {
+        String[] keys = new String[DIMENSIONS.length];
+        for (Dimension dimension : DIMENSIONS) {
+            keys[dimension.ordinal()] = dimension.key.apply(person);
+        }
+        put(Row.of(person, keys));
+    }
+
+    @Override
+    public synchronized void onUpdated(Person person) {
+        Row row = rows.get(person.getId());
+        if (row == null) {
+            onSaved(person);
+            return;
+        }
+        String[] keys = row.keys().clone();
+        for (Dimension dimension : DIMENSIONS) {
+            if (dimension.join == null) {
+                keys[dimension.ordinal()] = dimension.key.apply(person);
+            }
+        }
+        put(Row.of(person, keys));
+    }
+
+    @Override
+    public synchronized void onDeleted(Long id) {
+        Row row = rows.remove(id);
+        if (row != null) {
+            remove(row);
+        }
+    }
+
+    private void put(Row row) {
+        Row previous = rows.put(row.id(), row);
+        if (previous != null) {
+            remove(previous);
+        }
+        overall.add(row.salary());
+        for (int i = 0; i < DIMENSIONS.length; i++) {
+            groups.get(i).computeIfAbsent(row.keys()[i], key -> new Accumulator()).add(row.salary());
+        }
+        (row.dob() == null ? withoutDob : byDob.computeIfAbsent(row.dob(), dob -> new Accumulator())).add(row.salary());
+    }
+
+    private void remove(Row row) {
+        overall.remove(row.salary());
+        for (int i = 0; i < DIMENSIONS.length; i++) {
+            removeFrom(groups.get(i), row.keys()[i], row.salary());
+        }
+        if (row.dob() == null) {
+            withoutDob.remove(row.salary());
+        } else {
+            removeFrom(byDob, row.dob(), row.salary());
+        }
+    }
+
+    private static <K> void removeFrom(Map<K, Accumulator> accumulators, K key, BigDecimal salary) {
+        Accumulator accumulator = accumulators.get(key);
+        accumulator.remove(salary);
+        if (accumulator.headcount == 0) {
+            accumulators.remove(key);
+        }
+    }
+
+    synchronized GroupStats<Void> overall() {
+        return overall.stats(null);
+    }
+
+    synchronized List<GroupStats<String>> by(Dimension dimension) {
+        return groups.get(dimension.ordinal()).entrySet().stream()
+                .sorted(Map.Entry.comparingByKey(Comparator.nullsFirst(Comparator.naturalOrder())))
+                .map(group -> group.getValue().stats(group.getKey()))
+                .toList();
+    }
+
+    /**
+     * @return by age in whole years at {@code today}, youngest first after the people without a date of birth.
+     */
+    synchronized List<GroupStats<Integer>> byAge(LocalDate today) {
+        Map<Integer, GroupStats<Integer>> ages = new LinkedHashMap<>();
+        if (withoutDob.headcount > 0) {
+            ages.put(null, withoutDob.stats(null));
+        }
+        for (Map.Entry<LocalDate, Accumulator> birthday : byDob.descendingMap().entrySet()) {
+            int age = Period.between(birthday.getKey(), today).getYears();
+            ages.merge(age, birthday.getValue().stats(age), (stats, other) -> stats.merge(age, other));
+        }
+        return List.copyOf(ages.values());
+    }
+}
@@ -0,0 +1,113 @@
+package com.ruquet.peopledb.repository;
+
+import com.ruquet.peopledb.model.CrudOperation;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Publishes a {@link RepositoryMetrics} as one MBean per operation, named
+ * {@code com.ruquet.peopledb:type=Repository,name=<name>,operation=<operation>}.
+ * Every attribute read takes a fresh snapshot. Closing it unregisters the MBeans.
+ */
+public class JmxMetricsExporter implements AutoCloseable {
+    private final MBeanServer server;
+    private final List<ObjectName> names = new ArrayList<>();
+
+    private JmxMetricsExporter(MBeanServer server) {
+        this.server = server;
+    }
+
+    public static JmxMetricsExporter register(String name, RepositoryMetrics metrics) {
+        return register(ManagementFactory.getPlatformMBeanServer(), name, metrics);
+    }
+
+    public static JmxMetricsExporter register(MBeanServer server, String name, RepositoryMetrics metrics) {
+        JmxMetricsExporter exporter = new JmxMetricsExporter(server);
+        try {
+            for (CrudOperation operation : CrudOperation.values()) {
+                ObjectName objectName = new ObjectName("com.ruquet.peopledb:type=Repository,name="
+                        + ObjectName.quote(name) + ",operation=" + operation);
+                server.registerMBean(new StandardMBean(new View(metrics, operation), OperationStatsMBean.class), objectName);
+                exporter.names.add(objectName);
+            }
+        } catch (JMException e) {
+            exporter.close();
+            throw new IllegalStateException("Unable to register the metrics of " + name, e);
+        }
+        return exporter;
+    }
+
+    @Override
+    public void close() {
+        for (ObjectName name : names) {
+            try {
+                server.unregisterMBean(name);
+            } catch (JMException e) {
+                // already gone
+            }
+        }
+        names.clear();
+    }
+
+    private record View(RepositoryMetrics metrics, CrudOperation operation) implements OperationStatsMBean {
+        private OperationStats stats() {
+            return metrics.snapshot(operation);
+        }
+
+        private static double millis(Duration duration) {
+            return duration.toNanos() / 1_000_000d;
+        }
+
+        @Override
+        public long getCount() {
+            return stats().count();
+        }
+
+        @Override
+        public long getErrors() {
+            return stats().errors();
+        }
+
+        @Override
+        public long getRowsAffected() {
+            return stats().rowsAffected();
+        }
+
+        @Override
+        public long getRowsMapped() {
+            return stats().rowsMapped();
+        }
+
+        @Override
+        public double getMeanMillis() {
+            return millis(stats().meanTime());
+        }
+
+        @Override
+        public double getMaxMillis() {
+            return millis(stats().maxTime());
+        }
+
+        @Override
+        public double getP50Millis() {
+            return millis(stats().p50());
+        }
+
+        @Override
+        public double getP95Millis() {
+            return millis(stats().p95());
+        }
+
+        @Override
+        public double getP99Millis() {
+            return millis(stats().p99());
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.ruquet.peopledb.repository;
+
+import com.ruquet.peopledb.model.CrudOperation;
+
+import java.time.Duration;
+
+/**
+ * A snapshot of what a {@link RepositoryMetrics} recorded for one operation. Percentiles come from a histogram
+ * with power of two buckets, they're the upper bound of their bucket so at most twice the real value.
+ */
+public record OperationStats(CrudOperation operation, long count, long errors, long rowsAffected, long rowsMapped,
+                             Duration totalTime, Duration maxTime, Duration p50, Duration p95, Duration p99) {
+
+    public Duration meanTime() {
+        long calls = count + errors;
+        return calls == 0 ? Duration.ZERO : totalTime.dividedBy(calls);
+    }
+}
@@ -0,0 +1,24 @@
+package com.ruquet.peopledb.repository;
+
+/**
+ * The JMX view of the {@link OperationStats} of one operation, times in milliseconds.
+ */
+public interface OperationStatsMBean {
+    long getCount();
+
+    long getErrors();
+
+    long getRowsAffected();
+
+    long getRowsMapped();
+
+    double getMeanMillis();
+
+    double getMaxMillis();
+
+    double getP50Millis();
+
+    double getP95Millis();
+
+    double getP99Millis();
+}
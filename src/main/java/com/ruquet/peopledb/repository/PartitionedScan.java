@@ -0,0 +1,175 @@
+package com.ruquet.peopledb.repository;
+
+import com.ruquet.peopledb.model.CrudOperation;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * A table read in ranges of ids, each one through its own dedicated session, see {@link CrudRepository#streamAll(int)}.
+ * The spliterator splits between ranges, never inside one, and opens the cursor of a range the first time
+ * it's advanced, so every range is read on the thread that got it. Cursors are closed as soon as their range
+ * is read, {@link #close()} closes the ones a short-circuiting stream left open.
+ */
+final class PartitionedScan<T> implements AutoCloseable {
+
+    /**
+     * Ids from {@code fromId} to {@code toId}, both included, and the rows they had when the scan was planned.
+     */
+    record Partition(long fromId, long toId, long rows) {
+    }
+
+    private final ConnectionSource source;
+    private final String sql;
+    private final int fetchSize;
+    private final CrudRepository.ReaderFactory<T> readers;
+    private final RepositoryListener listener;
+    private final List<Partition> partitions;
+    private final Set<Cursor> open = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param sql selects the rows whose id is between its two parameters, ordered by id.
+     */
+    PartitionedScan(ConnectionSource source, String sql, int fetchSize, CrudRepository.ReaderFactory<T> readers,
+                    RepositoryListener listener, List<Partition> partitions) {
+        this.source = source;
+        this.sql = sql;
+        this.fetchSize = fetchSize;
+        this.readers = readers;
+        this.listener = listener;
+        this.partitions = List.copyOf(partitions);
+    }
+
+    Spliterator<T> spliterator() {
+        return new PartitionSpliterator(0, partitions.size());
+    }
+
+    @Override
+    public void close() {
+        open.forEach(Cursor::close);
+    }
+
+    private final class Cursor {
+        private final long start = System.nanoTime();
+        private final Session session;
+        private final PreparedStatement ps;
+        private final EntityReader<T> reader;
+        private long mapped;
+
+        Cursor(Partition partition) throws SQLException {
+            Session session = source.openDedicated();
+            PreparedStatement ps = null;
+            try {
+                ps = session.connection().prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                ps.setFetchSize(fetchSize);
+                ps.setLong(1, partition.fromId());
+                ps.setLong(2, partition.toId());
+                this.reader = readers.open(ps.executeQuery());
+            } catch (SQLException e) {
+                StatementCache.closeQuietly(ps);
+                session.close();
+                throw e;
+            }
+            this.session = session;
+            this.ps = ps;
+            open.add(this);
+        }
+
+        T read() throws SQLException {
+            T entity = reader.read();
+            if (entity != null) {
+                mapped++;
+            }
+            return entity;
+        }
+
+        void close() {
+            if (!open.remove(this)) {
+                return;
+            }
+            try {
+                ps.close();
+                listener.onOperation(CrudOperation.SCAN_RANGE, System.nanoTime() - start, 0, mapped);
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            } finally {
+                session.close();
+            }
+        }
+    }
+
+    /**
+     * Covers the partitions from {@code from}, included, to {@code to}, excluded.
+     */
+    private final class PartitionSpliterator implements Spliterator<T> {
+        private int from;
+        private final int to;
+        private Cursor cursor;
+
+        PartitionSpliterator(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            long start = System.nanoTime();
+            try {
+                while (from < to) {
+                    if (cursor == null) {
+                        cursor = new Cursor(partitions.get(from));
+                    }
+                    T entity = cursor.read();
+                    if (entity != null) {
+                        action.accept(entity);
+                        return true;
+                    }
+                    cursor.close();
+                    cursor = null;
+                    from++;
+                }
+                return false;
+            } catch (SQLException e) {
+                listener.onError(CrudOperation.SCAN_RANGE, System.nanoTime() - start, e);
+                throw new RuntimeException(e);
+            }
+        }
+
+        /**
+         * Hands over the first half of the partitions, unless reading started: the prefix would be the one being read.
+         */
+        @Override
+        public Spliterator<T> trySplit() {
+            if (cursor != null || to - from < 2) {
+                return null;
+            }
+            int middle = (from + to) >>> 1;
+            PartitionSpliterator prefix = new PartitionSpliterator(from, middle);
+            from = middle;
+            return prefix;
+        }
+
+        /**
+         * The rows the partitions had when the scan was planned, less the ones read.
+         */
+        @Override
+        public long estimateSize() {
+            long rows = cursor == null ? 0 : -cursor.mapped;
+            for (int i = from; i < to; i++) {
+                rows += partitions.get(i).rows();
+            }
+            return Math.max(rows, 0);
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | DISTINCT | NONNULL;
+        }
+    }
+}
@@ -1,87 +1,234 @@
 package com.ruquet.peopledb.repository;
 
 import com.ruquet.peopledb.anotation.SQL;
+import com.ruquet.peopledb.com.ruquet.peopledb.exceptions.UnableToSave;
 import com.ruquet.peopledb.model.Address;
 import com.ruquet.peopledb.model.CrudOperation;
 import com.ruquet.peopledb.model.Person;
-import com.ruquet.peopledb.model.Region;
 
-import java.math.BigDecimal;
 import java.sql.*;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
 
 public class PeopleRepository extends CrudRepository<Person> {
     private AdressesRepository adressesRepository = null;
     public static final String SAVE_PERSON_SQL = "INSERT INTO PEOPLE (FIRST_NAME, LAST_NAME, DOB, SALARY, EMAIL, HOME_ADDRESS, BIZ_ADDRESS, SPOUSE, PARENT_ID) VALUES(?,?,?,?,?,?,?,?,?)";
     public static final String FIND_BY_ID = "SELECT ID, FIRST_NAME, LAST_NAME, DOB, SALARY, HOME_ADDRESS, BIZ_ADDRESS FROM PEOPLE WHERE ID = ?";
-    public static final String FIND_ALL_SQL = """
-               SELECT 
-               PARENT.ID AS PARENT_ID, PARENT.FIRST_NAME AS PARENT_FIRST_NAME, PARENT.LAST_NAME AS PARENT_LAST_NAME, PARENT.DOB AS PARENT_DOB, PARENT.SALARY AS PARENT_SALARY, PARENT.HOME_ADDRESS AS PARENT_HOME_ADDRESS, PARENT.BIZ_ADDRESS AS PARENT_BIZ_ADDRESS
-               FROM PEOPLE AS PARENT
-               FETCH FIRST 100 ROWS ONLY
-            """;
+    private static final String PARENT_COLUMNS = "PARENT.ID AS PARENT_ID, PARENT.FIRST_NAME AS PARENT_FIRST_NAME, PARENT.LAST_NAME AS PARENT_LAST_NAME, PARENT.DOB AS PARENT_DOB, PARENT.SALARY AS PARENT_SALARY, PARENT.EMAIL AS PARENT_EMAIL, PARENT.HOME_ADDRESS AS PARENT_HOME_ADDRESS, PARENT.BIZ_ADDRESS AS PARENT_BIZ_ADDRESS";
+    public static final String FIND_ALL_SQL = "SELECT\n" + PARENT_COLUMNS + "\nFROM PEOPLE AS PARENT\nFETCH FIRST 100 ROWS ONLY\n";
+    public static final String STREAM_ALL_SQL = "SELECT\n" + PARENT_COLUMNS + "\nFROM PEOPLE AS PARENT\n";
+    public static final String FIND_PAGE_SQL = "SELECT\n" + PARENT_COLUMNS + "\nFROM PEOPLE AS PARENT\n"
+            + "WHERE PARENT.ID > ?\nORDER BY PARENT.ID\nFETCH FIRST ? ROWS ONLY\n";
+    public static final String SCAN_RANGE_SQL = "SELECT\n" + PARENT_COLUMNS + "\nFROM PEOPLE AS PARENT\n"
+            + "WHERE PARENT.ID BETWEEN ? AND ?\nORDER BY PARENT.ID\n";
+    private static final String HOME_COLUMNS = "HOME.ID AS HOME_ID, HOME.STREET_ADDRESS AS HOME_STREET_ADDRESS, HOME.ADDRESS2 AS HOME_ADDRESS2, HOME.CITY AS HOME_CITY, HOME.STATE AS HOME_STATE, HOME.POSTCODE AS HOME_POSTCODE, HOME.COUNTY AS HOME_COUNTY, HOME.REGION AS HOME_REGION, HOME.COUNTRY AS HOME_COUNTRY";
+    private static final String BIZ_COLUMNS = "BIZ.ID AS BIZ_ID, BIZ.STREET_ADDRESS AS BIZ_STREET_ADDRESS, BIZ.ADDRESS2 AS BIZ_ADDRESS2, BIZ.CITY AS BIZ_CITY, BIZ.STATE AS BIZ_STATE, BIZ.POSTCODE AS BIZ_POSTCODE, BIZ.COUNTY AS BIZ_COUNTY, BIZ.REGION AS BIZ_REGION, BIZ.COUNTRY AS BIZ_COUNTRY";
+    private static final String SPOUSE_COLUMNS = "SPOUSE.ID AS SPOUSE_ID, SPOUSE.FIRST_NAME AS SPOUSE_FIRST_NAME, SPOUSE.LAST_NAME AS SPOUSE_LAST_NAME, SPOUSE.DOB AS SPOUSE_DOB, SPOUSE.SALARY AS SPOUSE_SALARY, SPOUSE.HOME_ADDRESS AS SPOUSE_HOME_ADDRESS, SPOUSE.BIZ_ADDRESS AS SPOUSE_BIZ_ADDRESS";
+    private static final String CHILDREN_COLUMNS = "CHILDREN.ID AS CHILDREN_ID, CHILDREN.FIRST_NAME AS CHILDREN_FIRST_NAME, CHILDREN.LAST_NAME AS CHILDREN_LAST_NAME, CHILDREN.DOB AS CHILDREN_DOB, CHILDREN.SALARY AS CHILDREN_SALARY, CHILDREN.EMAIL AS CHILDREN_EMAIL, CHILDREN.HOME_ADDRESS AS CHILDREN_HOME_ADDRESS, CHILDREN.BIZ_ADDRESS AS CHILDREN_BIZ_ADDRESS";
+    static final String HOME_JOIN = "LEFT OUTER JOIN ADDRESSES AS HOME ON PARENT.HOME_ADDRESS = HOME.ID";
+    static final String BIZ_JOIN = "LEFT OUTER JOIN ADDRESSES AS BIZ ON PARENT.BIZ_ADDRESS = BIZ.ID";
+    private static final String SPOUSE_JOIN = "LEFT OUTER JOIN PEOPLE SPOUSE ON PARENT.SPOUSE = SPOUSE.ID";
+    private static final String CHILDREN_JOIN = "LEFT OUTER JOIN PEOPLE CHILDREN ON PARENT.ID = CHILDREN.PARENT_ID";
+    private static final String PERSON_GRAPH_SQL = "SELECT\n"
+            + PARENT_COLUMNS + ",\n" + HOME_COLUMNS + ",\n" + BIZ_COLUMNS + ",\n" + SPOUSE_COLUMNS + ",\n" + CHILDREN_COLUMNS + "\n"
+            + "FROM PEOPLE AS PARENT\n"
+            + HOME_JOIN + "\n" + BIZ_JOIN + "\n" + SPOUSE_JOIN + "\n" + CHILDREN_JOIN + "\n";
+    public static final String FIND_BY_ID_SQL = PERSON_GRAPH_SQL + "WHERE PARENT.ID=?";
+    public static final String FIND_ALL_BY_ID_SQL = PERSON_GRAPH_SQL + "WHERE PARENT.ID IN (:ids) ORDER BY PARENT.ID";
+    public static final String FIND_ALL_WITH_GRAPH_SQL = PERSON_GRAPH_SQL + "ORDER BY PARENT.ID";
     public static final String SELECT_COUNT_SQL = "SELECT COUNT(*) FROM PEOPLE";
     public static final String DELETE_SQL = "DELETE FROM PEOPLE WHERE ID=?";
     public static final String DELETE_MANY_SQL = "DELETE FROM PEOPLE WHERE ID IN(:ids)";
     public static final String UPDATE_SQL = "UPDATE PEOPLE SET FIRST_NAME=?, LAST_NAME=?, DOB=?, SALARY=? WHERE ID=?";
+    private static final int QUERY_SQL_CACHE_SIZE = 256;
+    static final String UPDATE_LINKS_SQL = "UPDATE PEOPLE SET SPOUSE=?, PARENT_ID=? WHERE ID=?";
+    static final List<String> DELETE_CASCADE_SQL = List.of(
+            "UPDATE PEOPLE SET SPOUSE = NULL WHERE SPOUSE IN (:ids)",
+            "UPDATE PEOPLE SET PARENT_ID = NULL WHERE PARENT_ID IN (:ids)");
 
-    private Map<String, Integer> aliasColIdxMap = new HashMap<>();
+    private final Map<String, PersonRowMapper> rowMappers = new ConcurrentHashMap<>();
+    private volatile CompiledMapper lastCompiled;
+    private final Map<FetchPlan, String> fetchPlanSql = new ConcurrentHashMap<>();
+    /**
+     * The fetch plan of every query built from one, its reader attaches the loaders of what it didn't join.
+     */
+    private final Map<String, FetchPlan> fetchPlans = new ConcurrentHashMap<>();
+    private final String childrenSql = fetchPlanSql(FetchPlan.NONE, "WHERE PARENT.PARENT_ID=? ORDER BY PARENT.ID");
+    /**
+     * The SQL of the query shapes last used, bounded since the shapes combine freely.
+     */
+    private final Map<PersonQuery.Shape, String> querySql = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<PersonQuery.Shape, String> eldest) {
+            return size() > QUERY_SQL_CACHE_SIZE;
+        }
+    });
 
 
     public PeopleRepository(Connection connection) throws SQLException {
         super(connection);
-        adressesRepository = new AdressesRepository(connection);
+        adressesRepository = new AdressesRepository(connectionSource());
+    }
+
+    public PeopleRepository(ConnectionPool pool) {
+        super(pool);
+        adressesRepository = new AdressesRepository(pool);
     }
 
     @Override
     @SQL(value = SAVE_PERSON_SQL, operationType = CrudOperation.SAVE)
     void mapForSave(Person entity, PreparedStatement ps) throws SQLException {
-//        Address savedAddress = null;
-//        Person spouse = null;
         ps.setString(1, entity.getFirstName());
         ps.setString(2, entity.getLastName());
         ps.setTimestamp(3, convertDobToTimeStamp(entity.getDob()));
         ps.setBigDecimal(4, entity.getSalary());
         ps.setString(5, entity.getEmail());
-        associateAddressWithPerson(ps, entity.getHomeAddress(), 6);
-        associateAddressWithPerson(ps, entity.getBusinessAddress(), 7);
-        associateSpouseWithPerson(ps, entity.getSpouse(), 8);
-        associatePersonWithChildren(entity, ps);
+        ps.setObject(6, entity.getHomeAddress().map(Address::id).orElse(null));
+        ps.setObject(7, entity.getBusinessAddress().map(Address::id).orElse(null));
+        ps.setObject(8, entity.getSpouse().map(Person::getId).orElse(null));
+        ps.setObject(9, entity.getParent().map(Person::getId).orElse(null));
     }
 
-    private static void associatePersonWithChildren(Person entity, PreparedStatement ps) throws SQLException {
-        Optional<Person> parent = entity.getParent();
-        if (parent.isPresent()) {
-            ps.setLong(9, parent.get().getId());
-        } else ps.setObject(9, null);
+    /**
+     * Saves the batch with everyone reachable from it as one unit of work: the unsaved addresses in one batch,
+     * then the people level by level as planned by {@link PersonGraph}, then the references that had to wait
+     * for a cycle to be broken. Shared objects are inserted once and it all runs on one connection, atomically,
+     * see {@link UnitOfWork}. When any of it fails nothing is left written and the people get back their ids
+     * and addresses.
+     */
+    @Override
+    protected List<Person> saveBatch(List<Person> batch) throws UnableToSave {
+        PersonGraph graph = PersonGraph.of(batch);
+        List<Unsaved> unsaved = graph.people().stream().map(Unsaved::of).toList();
+        try (Session session = connectionSource().open()) {
+            UnitOfWork work = UnitOfWork.begin(session.connection());
+            try {
+                List<Address> savedAddresses = saveAddresses(graph);
+                for (List<Person> level : graph.levels()) {
+                    for (int from = 0; from < level.size(); from += getBatchSize()) {
+                        insert(level.subList(from, Math.min(level.size(), from + getBatchSize())));
+                    }
+                }
+                if (!graph.deferred().isEmpty()) {
+                    executeBatch(UPDATE_LINKS_SQL, graph.deferred(), (person, ps) -> {
+                        ps.setObject(1, person.getSpouse().map(Person::getId).orElse(null));
+                        ps.setObject(2, person.getParent().map(Person::getId).orElse(null));
+                        ps.setLong(3, person.getId());
+                    });
+                }
+                work.commit();
+                if (session.connection().getAutoCommit()) {
+                    graph.people().forEach(this::track);
+                    adressesRepository.committed(savedAddresses);
+                }
+            } catch (SQLException | RuntimeException e) {
+                work.rollback();
+                unsaved.forEach(this::restore);
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new UnableToSave("Tried to save a batch of " + batch.size() + " people", e);
+        }
+        graph.people().forEach(this::invalidateCached);
+        return batch;
     }
 
-    private void associateAddressWithPerson(PreparedStatement ps, Optional<Address> address, int parameterIndex) throws SQLException {
-        Address savedAddress;
-        if (address.isPresent()) {
-            savedAddress = adressesRepository.save(address.get());
-            ps.setLong(parameterIndex, savedAddress.id());
-        } else {
-            ps.setObject(parameterIndex, null);
+    /**
+     * A person of a graph as it was before saving it.
+     */
+    private record Unsaved(Person person, Long id, Address homeAddress, Address businessAddress) {
+        static Unsaved of(Person person) {
+            return new Unsaved(person, person.getId(), person.getHomeAddress().orElse(null), person.getBusinessAddress().orElse(null));
         }
     }
 
+    private void restore(Unsaved unsaved) {
+        Person person = unsaved.person();
+        if (person.getId() != null && !person.getId().equals(unsaved.id())) {
+            rolledBack(person);
+        }
+        person.setId(unsaved.id());
+        person.getHomeAddress().filter(address -> address != unsaved.homeAddress())
+                .ifPresent(adressesRepository::rolledBack);
+        person.getBusinessAddress().filter(address -> address != unsaved.businessAddress())
+                .ifPresent(adressesRepository::rolledBack);
+        person.setHomeAddress(unsaved.homeAddress());
+        person.setBusinessAddress(unsaved.businessAddress());
+    }
+
+    /**
+     * @return the addresses as saved.
+     */
+    private List<Address> saveAddresses(PersonGraph graph) {
+        List<Address> addresses = graph.addresses();
+        if (addresses.isEmpty()) {
+            return addresses;
+        }
+        List<Address> savedAddresses = adressesRepository.saveAll(addresses);
+        Map<Address, Address> savedByOriginal = new IdentityHashMap<>();
+        for (int i = 0; i < addresses.size(); i++) {
+            savedByOriginal.put(addresses.get(i), savedAddresses.get(i));
+        }
+        for (Person person : graph.people()) {
+            person.getHomeAddress().map(savedByOriginal::get).ifPresent(person::setHomeAddress);
+            person.getBusinessAddress().map(savedByOriginal::get).ifPresent(person::setBusinessAddress);
+        }
+        return savedAddresses;
+    }
+
     @Override
-    protected void postSave(Person entity, long id) {
-        entity.getChildren().stream().forEach(this::save);
+    protected String getTableName() {
+        return "PEOPLE";
+    }
 
+    /**
+     * Deleted people stop being anyone's spouse or parent, their children and spouse are kept.
+     */
+    @Override
+    protected List<String> getDeleteCascadeSql() {
+        return DELETE_CASCADE_SQL;
     }
 
-    private void associateSpouseWithPerson(PreparedStatement ps, Optional<Person> spouse, int parameterIndex) throws SQLException {
-        Person savedSpouse;
-        if (spouse.isPresent()) {
-            savedSpouse = save(spouse.get());
-            ps.setLong(parameterIndex, savedSpouse.getId());
-        } else {
-            ps.setObject(parameterIndex, null);
+    /**
+     * A person's parent embeds them as a child, so writing the person makes the cached parent stale too.
+     */
+    @Override
+    protected Stream<Long> cachedIdsAffectedBy(Person entity) {
+        return Stream.concat(Stream.ofNullable(entity.getId()),
+                entity.getParent().map(Person::getId).stream());
+    }
+
+    @Override
+    protected Stream<Long> referencedIds(Person entity) {
+        return Stream.of(entity.getSpouse().stream(), entity.getParent().stream(), entity.getChildren().stream())
+                .flatMap(s -> s)
+                .map(Person::getId);
+    }
+
+    @Override
+    protected Person copy(Person entity) {
+        return copy(entity, new IdentityHashMap<>());
+    }
+
+    private static Person copy(Person person, Map<Person, Person> copies) {
+        Person copy = copies.get(person);
+        if (copy != null) {
+            return copy;
+        }
+        copy = new Person(person.getId(), person.getFirstName(), person.getLastName(), person.getDob(), person.getSalary());
+        copies.put(person, copy);
+        copy.setEmail(person.getEmail());
+        copy.setHomeAddress(person.getHomeAddress().orElse(null));
+        copy.setBusinessAddress(person.getBusinessAddress().orElse(null));
+        copy.setSpouse(person.getSpouse().map(s -> copy(s, copies)).orElse(null));
+        copy.setParent(person.getParent().map(p -> copy(p, copies)).orElse(null));
+        for (Person child : person.getChildren()) {
+            copy.addChild(copy(child, copies));
         }
+        return copy;
     }
 
 
@@ -94,100 +241,223 @@ public class PeopleRepository extends CrudRepository<Person> {
         ps.setBigDecimal(4, entity.getSalary());
     }
 
+    /**
+     * The same columns as {@link #UPDATE_SQL}, so partial updates write what a full one would.
+     */
+    @Override
+    UpdateColumns<Person> updateColumns() {
+        return UpdateColumns.<Person>of("PEOPLE", "ID")
+                .column("FIRST_NAME", Person::getFirstName)
+                .column("LAST_NAME", Person::getLastName)
+                .column("DOB", p -> p.getDob() == null ? null : convertDobToTimeStamp(p.getDob()))
+                .column("SALARY", Person::getSalary);
+    }
+
     @Override
-    @SQL(value = """
-              SELECT
-              PARENT.ID AS PARENT_ID, PARENT.FIRST_NAME AS PARENT_FIRST_NAME, PARENT.LAST_NAME AS PARENT_LAST_NAME, PARENT.DOB AS PARENT_DOB, PARENT.SALARY AS PARENT_SALARY, PARENT.EMAIL AS PARENT_EMAIL, PARENT.HOME_ADDRESS AS PARENT_HOME_ADDRESS, PARENT.BIZ_ADDRESS AS PARENT_BIZ_ADDRESS,
-              HOME.ID AS HOME_ID, HOME.STREET_ADDRESS AS HOME_STREET_ADDRESS, HOME.ADDRESS2 AS HOME_ADDRESS2, HOME.CITY AS HOME_CITY, HOME.STATE AS HOME_STATE, HOME.POSTCODE AS HOME_POSTCODE, HOME.COUNTY AS HOME_COUNTY, HOME.REGION AS HOME_REGION, HOME.COUNTRY AS HOME_COUNTRY,
-              BIZ.ID AS BIZ_ID, BIZ.STREET_ADDRESS AS BIZ_STREET_ADDRESS, BIZ.ADDRESS2 AS BIZ_ADDRESS2, BIZ.CITY AS BIZ_CITY, BIZ.STATE AS BIZ_STATE, BIZ.POSTCODE AS BIZ_POSTCODE, BIZ.COUNTY AS BIZ_COUNTY, BIZ.REGION AS BIZ_REGION, BIZ.COUNTRY AS BIZ_COUNTRY,
-              SPOUSE.ID AS SPOUSE_ID, SPOUSE.FIRST_NAME AS SPOUSE_FIRST_NAME, SPOUSE.LAST_NAME AS SPOUSE_LAST_NAME, SPOUSE.DOB AS SPOUSE_DOB, SPOUSE.SALARY AS SPOUSE_SALARY, SPOUSE.HOME_ADDRESS AS SPOUSE_HOME_ADDRESS, SPOUSE.BIZ_ADDRESS AS SPOUSE_BIZ_ADDRESS,
-              CHILDREN.ID AS CHILDREN_ID, CHILDREN.FIRST_NAME AS CHILDREN_FIRST_NAME, CHILDREN.LAST_NAME AS CHILDREN_LAST_NAME, CHILDREN.DOB AS CHILDREN_DOB, CHILDREN.SALARY AS CHILDREN_SALARY, CHILDREN.EMAIL AS CHILDREN_EMAIL, CHILDREN.HOME_ADDRESS AS CHILDREN_HOME_ADDRESS, CHILDREN.BIZ_ADDRESS AS CHILDREN_BIZ_ADDRESS
-              FROM PEOPLE AS PARENT
-              LEFT OUTER JOIN ADDRESSES AS HOME ON PARENT.HOME_ADDRESS = HOME.ID
-              LEFT OUTER JOIN ADDRESSES AS BIZ ON PARENT.BIZ_ADDRESS = BIZ.ID
-              LEFT OUTER JOIN PEOPLE SPOUSE ON PARENT.SPOUSE = SPOUSE.ID            
-              LEFT OUTER JOIN PEOPLE CHILDREN ON PARENT.ID = CHILDREN.PARENT_ID
-              WHERE PARENT.ID=?
-            """, operationType = CrudOperation.FIND_BY_ID)
+    @SQL(value = FIND_BY_ID_SQL, operationType = CrudOperation.FIND_BY_ID)
     @SQL(value = FIND_ALL_SQL, operationType = CrudOperation.FIND_ALL)
+    @SQL(value = STREAM_ALL_SQL, operationType = CrudOperation.STREAM_ALL)
+    @SQL(value = FIND_PAGE_SQL, operationType = CrudOperation.FIND_PAGE)
+    @SQL(value = SCAN_RANGE_SQL, operationType = CrudOperation.SCAN_RANGE)
+    @SQL(value = FIND_ALL_BY_ID_SQL, operationType = CrudOperation.FIND_ALL_BY_ID)
     @SQL(value = SELECT_COUNT_SQL, operationType = CrudOperation.COUNT)
     @SQL(value = DELETE_SQL, operationType = CrudOperation.DELETE_ONE)
     @SQL(value = DELETE_MANY_SQL, operationType = CrudOperation.DELETE_MANY)
     protected Person extractEntityFromResultSet(ResultSet rs) throws SQLException {
-        Person finalParent = null;
-        do {
-            Person currentParent = extractPerson(rs, "PARENT_").get();
-            if (finalParent == null) {
-                finalParent = currentParent;
-            }
-            if (!finalParent.equals(currentParent)) {
-                rs.previous();
-                break;
-            }
-            Optional<Person> spouse = extractPerson(rs, "SPOUSE_");
-            Optional<Person> child = extractPerson(rs, "CHILDREN_");
-
-            Address homeAddress = extractAddres(rs, "HOME_");
-            Address bizAddress = extractAddres(rs, "BIZ_");
-            finalParent.setHomeAddress(homeAddress);
-            finalParent.setBusinessAddress(bizAddress);
-
-            spouse.ifPresent(finalParent::setSpouse);
-            child.ifPresent(finalParent::addChild);
-        } while (rs.next());
-        return finalParent;
-    }
-
-    private Optional<Person> extractPerson(ResultSet rs, String alias) throws SQLException {
-        Long peopleID = getValueByAlias(alias + "ID", rs, Long.class);
-        if (peopleID == null) {
-            return Optional.empty();
-        }
-        String firstName = getValueByAlias(alias + "FIRST_NAME", rs, String.class);
-        String lastName = getValueByAlias(alias + "LAST_NAME", rs, String.class);
-        ZonedDateTime dob = ZonedDateTime.of(getValueByAlias(alias + "DOB", rs, Timestamp.class).toLocalDateTime(), ZoneId.of("+0"));
-        BigDecimal salary = getValueByAlias(alias + "SALARY", rs, BigDecimal.class);
-        Person person = new Person(peopleID, firstName, lastName, dob, salary);
-        return Optional.of(person);
-    }
-
-    private Address extractAddres(ResultSet rs, String alias) throws SQLException {
-        Long addrId = getValueByAlias(alias + "ID", rs, Long.class);
-        if (addrId == null) {return null;}
-//        long addrId = rs.getLong("A_ID");
-        String streetAddress = getValueByAlias(alias + "STREET_ADDRESS", rs, String.class);
-        String address2 = getValueByAlias(alias + "ADDRESS2", rs, String.class);
-        String city = getValueByAlias(alias + "CITY", rs, String.class);
-        String state = getValueByAlias(alias + "STATE", rs, String.class);
-        String postCode = getValueByAlias(alias + "POSTCODE", rs, String.class);
-        String county = getValueByAlias(alias + "COUNTY", rs, String.class);
-        Region region = Region.valueOf(getValueByAlias(alias + "REGION", rs, String.class).toUpperCase());
-        String country = getValueByAlias(alias + "COUNTRY", rs, String.class);
-        Address address = new Address(addrId, streetAddress, address2, city, state, postCode, county, region, country);
-        return address;
-    }
-
-    private <T> T getValueByAlias(String alias, ResultSet rs, Class<T> clazz) throws SQLException {
-        int columnCount = rs.getMetaData().getColumnCount();
-        Integer foundIdx = 0;
-        foundIdx = getIndexForAlias(alias, rs, columnCount);
-        return foundIdx == 0 ? null : (T) rs.getObject(foundIdx);
-    }
-
-    private int getIndexForAlias(String alias, ResultSet rs, int columnCount) throws SQLException {
-        Integer foundIdx = aliasColIdxMap.getOrDefault(alias, 0);
-        if (foundIdx == 0) {
-            for (int columnIdx = 1; columnIdx <= columnCount; columnIdx++) {
-                if (alias.equals(rs.getMetaData().getColumnLabel(columnIdx))) {
-                    foundIdx = columnIdx;
-                    aliasColIdxMap.put(alias, foundIdx);
-                    break;
-                }
-            }
+        CompiledMapper compiled = lastCompiled;
+        if (compiled == null || compiled.rs() != rs) {
+            compiled = new CompiledMapper(rs, PersonRowMapper.compile(rs.getMetaData()));
+            lastCompiled = compiled;
+        }
+        return compiled.mapper().map(rs);
+    }
+
+    /**
+     * The mapper compiled for the rows of one result set, so reading it row by row doesn't scan its metadata again.
+     */
+    private record CompiledMapper(ResultSet rs, PersonRowMapper mapper) {
+    }
+
+    /**
+     * Every query selects one row per parent and child, so rows are grouped by PARENT_ID while reading forward.
+     * Each query gets its own {@link PersonRowMapper}, compiled the first time it runs.
+     */
+    @Override
+    EntityReader<Person> newEntityReader(String sql, ResultSet rs) throws SQLException {
+        PersonRowMapper mapper = rowMappers.get(sql);
+        if (mapper == null) {
+            mapper = PersonRowMapper.compile(rs.getMetaData());
+            rowMappers.put(sql, mapper);
+        }
+        FetchPlan plan = fetchPlans.get(sql);
+        if (plan == null) {
+            return new GroupingEntityReader<>(rs, mapper::parentId, mapper::map, mapper::merge);
+        }
+        PersonRowMapper planMapper = mapper;
+        return new GroupingEntityReader<>(rs, mapper::parentId,
+                row -> withLoaders(planMapper.map(row), planMapper.references(row), plan), mapper::merge);
+    }
+
+    /**
+     * Finds the person joined only with the associations of the plan, the others are loaded from the database
+     * on first access, i.e. by {@link Person#getChildren()}. Lazy associations need this repository open when
+     * they're loaded, and saving the person loads them all. Unlike {@link #findById(Long)}, it never goes
+     * through the entity cache, unless the plan is {@link FetchPlan#ALL}.
+     */
+    public Optional<Person> findById(Long id, FetchPlan plan) {
+        if (plan.equals(FetchPlan.ALL)) {
+            return findById(id);
+        }
+        String sql = fetchPlanSql.computeIfAbsent(plan, p -> fetchPlanSql(p, "WHERE PARENT.ID=?"));
+        return findBy(CrudOperation.FIND_BY_ID, sql, id).stream().findFirst();
+    }
+
+    /**
+     * @return a query selecting the parent, with PARENT_SPOUSE to load the spouse later, joined only with
+     * the associations of the plan.
+     */
+    private String fetchPlanSql(FetchPlan plan, String where) {
+        StringBuilder select = new StringBuilder("SELECT\n").append(PARENT_COLUMNS).append(", PARENT.SPOUSE AS PARENT_SPOUSE");
+        StringBuilder from = new StringBuilder("FROM PEOPLE AS PARENT\n");
+        if (plan.fetches(FetchPlan.Association.HOME_ADDRESS)) {
+            select.append(",\n").append(HOME_COLUMNS);
+            from.append(HOME_JOIN).append("\n");
+        }
+        if (plan.fetches(FetchPlan.Association.BUSINESS_ADDRESS)) {
+            select.append(",\n").append(BIZ_COLUMNS);
+            from.append(BIZ_JOIN).append("\n");
+        }
+        if (plan.fetches(FetchPlan.Association.SPOUSE)) {
+            select.append(",\n").append(SPOUSE_COLUMNS);
+            from.append(SPOUSE_JOIN).append("\n");
+        }
+        if (plan.fetches(FetchPlan.Association.CHILDREN)) {
+            select.append(",\n").append(CHILDREN_COLUMNS);
+            from.append(CHILDREN_JOIN).append("\n");
+        }
+        String sql = select.append("\n").append(from).append(where).toString();
+        fetchPlans.put(sql, plan);
+        return sql;
+    }
+
+    /**
+     * Finds the people matching the query, with their addresses, spouse and children. The SQL is generated once
+     * per {@link PersonQuery#shape() shape}, so repeated queries reuse the same prepared statement.
+     */
+    public List<Person> find(PersonQuery query) {
+        String sql = querySql.computeIfAbsent(query.shape(), PeopleRepository::querySql);
+        List<Object> parameters = query.parameters().stream().map(PeopleRepository::toParameter).toList();
+        return findBy(CrudOperation.FIND_ALL, sql, parameters);
+    }
+
+    /**
+     * The people are picked by id in a subquery, so the limit counts people rather than the rows they're joined to.
+     */
+    private static String querySql(PersonQuery.Shape shape) {
+        List<String> where = new ArrayList<>();
+        boolean home = shape.orderBy() == PersonQuery.Field.HOME_REGION;
+        boolean biz = shape.orderBy() == PersonQuery.Field.BUSINESS_REGION;
+        for (PersonQuery.Shape.Condition condition : shape.conditions()) {
+            String column = condition.field().column;
+            home |= condition.field() == PersonQuery.Field.HOME_REGION;
+            biz |= condition.field() == PersonQuery.Field.BUSINESS_REGION;
+            where.add(switch (condition.operator()) {
+                case BETWEEN -> column + " BETWEEN ? AND ?";
+                case IN -> condition.size() == 0 ? "FALSE" : column + " IN (" + String.join(",", Collections.nCopies(condition.size(), "?")) + ")";
+                default -> column + " " + condition.operator().sql + " ?";
+            });
+        }
+        String direction = shape.descending() ? " DESC" : "";
+        String orderColumn = shape.orderBy().column;
+        if (shape.keyset()) {
+            String after = shape.descending() ? "<" : ">";
+            where.add(shape.orderBy() == PersonQuery.Field.ID
+                    ? "PARENT.ID " + after + " ?"
+                    : "(" + orderColumn + " " + after + " ? OR (" + orderColumn + " = ? AND PARENT.ID " + after + " ?))");
+        }
+        String orderBy = shape.orderBy() == PersonQuery.Field.ID
+                ? " ORDER BY PARENT.ID" + direction
+                : " ORDER BY " + orderColumn + direction + ", PARENT.ID" + direction;
+        StringBuilder ids = new StringBuilder("SELECT PARENT.ID FROM PEOPLE AS PARENT");
+        if (home) {
+            ids.append(" ").append(HOME_JOIN);
+        }
+        if (biz) {
+            ids.append(" ").append(BIZ_JOIN);
+        }
+        if (!where.isEmpty()) {
+            ids.append(" WHERE ").append(String.join(" AND ", where));
+        }
+        if (shape.limited()) {
+            ids.append(orderBy).append(" FETCH FIRST ? ROWS ONLY");
         }
-        return foundIdx;
+        return PERSON_GRAPH_SQL + "WHERE PARENT.ID IN (" + ids + ")" + orderBy;
     }
 
+    private static Object toParameter(Object value) {
+        if (value instanceof ZonedDateTime dateTime) {
+            return convertDobToTimeStamp(dateTime);
+        }
+        if (value instanceof Enum<?> e) {
+            return e.name();
+        }
+        return value;
+    }
+
+    private Person withLoaders(Person person, PersonRowMapper.References references, FetchPlan plan) {
+        Long homeAddress = references.homeAddress();
+        if (!plan.fetches(FetchPlan.Association.HOME_ADDRESS) && homeAddress != null) {
+            person.setHomeAddressLoader(() -> adressesRepository.findById(homeAddress));
+        }
+        Long businessAddress = references.businessAddress();
+        if (!plan.fetches(FetchPlan.Association.BUSINESS_ADDRESS) && businessAddress != null) {
+            person.setBusinessAddressLoader(() -> adressesRepository.findById(businessAddress));
+        }
+        Long spouse = references.spouse();
+        if (!plan.fetches(FetchPlan.Association.SPOUSE) && spouse != null) {
+            person.setSpouseLoader(() -> findById(spouse, FetchPlan.NONE));
+        }
+        if (!plan.fetches(FetchPlan.Association.CHILDREN)) {
+            Long id = person.getId();
+            person.setChildrenLoader(() -> findBy(CrudOperation.FIND_ALL, childrenSql, id));
+        }
+        return person;
+    }
+
+    /**
+     * Streams every person with their addresses, spouse and children, all read from one query.
+     * Close the stream to release its cursor.
+     */
+    public Stream<Person> findAllWithGraph() {
+        return stream(FIND_ALL_WITH_GRAPH_SQL);
+    }
+
+    /**
+     * Saves the addresses of people once per content, see {@link AdressesRepository#enableDeduplication(int)}.
+     */
+    public void enableAddressDeduplication(int indexSize) {
+        adressesRepository.enableDeduplication(indexSize);
+    }
+
+    public void disableAddressDeduplication() {
+        adressesRepository.disableDeduplication();
+    }
+
+    /**
+     * Runs {@link AdressesRepository#compactDuplicates()} and drops the cached people, who may hold a deleted address.
+     * @return the number of duplicate addresses deleted.
+     */
+    public long compactDuplicateAddresses() {
+        long deleted = adressesRepository.compactDuplicates();
+        clearCache();
+        return deleted;
+    }
+
+    @Override
+    public void close() {
+        adressesRepository.close();
+        super.close();
+    }
 
     private static Timestamp convertDobToTimeStamp(ZonedDateTime dob) {
         return Timestamp.valueOf(dob.withZoneSameInstant(ZoneId.of("+0")).toLocalDateTime());
@@ -0,0 +1,573 @@
+package com.ruquet.peopledb.repository;
+
+import com.ruquet.peopledb.model.CrudOperation;
+import com.ruquet.peopledb.model.Person;
+import com.ruquet.peopledb.model.Region;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * A read-only copy of PEOPLE held in columns, about 50 bytes a person instead of the few hundred of a {@link Person},
+ * for analytics over the whole table. Ids, dates of birth in epoch seconds and salaries in cents are primitive arrays
+ * ordered by id, names, home city and state are codes into a {@link ColumnDictionary}, the home region is its
+ * ordinal, and spouse and parent are the offsets of their rows.
+ * <p>
+ * Queries start with {@link #select()} and narrow it with filters that loop over one column each without branching,
+ * a bit per row, so the JIT can unroll and vectorize them. Saves, updates and deletes made through the repository
+ * are recorded and applied by {@link #refresh()}, which only reads the changed people back. Close the snapshot
+ * to stop recording them.
+ */
+public final class PeopleSnapshot implements AutoCloseable {
+    public enum Column {
+        FIRST_NAME,
+        LAST_NAME,
+        CITY,
+        STATE,
+        REGION
+    }
+
+    /**
+     * A missing date of birth or salary.
+     */
+    private static final long NULL = Long.MIN_VALUE;
+    private static final Region[] REGIONS = Region.values();
+    private static final String COLUMNS_SQL = "SELECT PARENT.ID, PARENT.FIRST_NAME, PARENT.LAST_NAME, PARENT.DOB, PARENT.SALARY, "
+            + "HOME.CITY, HOME.STATE, HOME.REGION, PARENT.SPOUSE, PARENT.PARENT_ID FROM PEOPLE AS PARENT " + PeopleRepository.HOME_JOIN;
+    private static final String LOAD_SQL = COLUMNS_SQL + " ORDER BY PARENT.ID";
+    private static final String REFRESH_SQL = COLUMNS_SQL + " WHERE PARENT.ID IN (:ids)";
+
+    private final PeopleRepository repository;
+    private final Set<Long> changed = ConcurrentHashMap.newKeySet();
+    private final EntityListener<Person> changes = new EntityListener<>() {
+        @Override
+        public void onSaved(Person entity) {
+            changed.add(entity.getId());
+        }
+
+        @Override
+        public void onUpdated(Person entity) {
+            changed.add(entity.getId());
+        }
+
+        @Override
+        public void onDeleted(Long id) {
+            changed.add(id);
+        }
+    };
+    private volatile Columns columns;
+
+    private PeopleSnapshot(PeopleRepository repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * Reads every person in one pass. Changes made through the repository while loading are applied by the
+     * next {@link #refresh()}.
+     */
+    public static PeopleSnapshot load(PeopleRepository repository) {
+        PeopleSnapshot snapshot = new PeopleSnapshot(repository);
+        repository.addEntityListener(snapshot.changes);
+        Builder builder = new Builder(repository.getCount().intValue(), new ColumnDictionary(), new ColumnDictionary(),
+                new ColumnDictionary(), new ColumnDictionary());
+        try (Stream<Row> rows = repository.stream(LOAD_SQL, Row::read)) {
+            rows.forEach(builder::add);
+        } catch (RuntimeException e) {
+            repository.removeEntityListener(snapshot.changes);
+            throw e;
+        }
+        snapshot.columns = builder.build();
+        return snapshot;
+    }
+
+    /**
+     * Applies the changes made through the repository since the snapshot was loaded or last refreshed.
+     */
+    public void refresh() {
+        List<Long> ids = new ArrayList<>(changed);
+        changed.removeAll(ids);
+        refresh(ids);
+    }
+
+    /**
+     * Reads the people with these ids back, i.e. after they were changed outside of the repository. Ids not found
+     * anymore are removed. The columns are rebuilt around the changed rows, selections made before keep
+     * seeing the previous ones.
+     */
+    public synchronized void refresh(Collection<Long> ids) {
+        List<Long> distinctIds = ids.stream().filter(Objects::nonNull).distinct().toList();
+        if (distinctIds.isEmpty()) {
+            return;
+        }
+        Columns old = columns;
+        List<Row> rows = new ArrayList<>(repository.queryByIds(CrudOperation.FIND_ALL_BY_ID, REFRESH_SQL, distinctIds, Row::read));
+        rows.sort(Comparator.comparingLong(Row::id));
+        Set<Long> refreshed = new HashSet<>(distinctIds);
+        Builder builder = new Builder(old.size + rows.size(), old.firstNames.copy(), old.lastNames.copy(),
+                old.cities.copy(), old.states.copy());
+        int row = 0;
+        int next = 0;
+        while (row < old.size || next < rows.size()) {
+            if (next == rows.size() || (row < old.size && old.ids[row] < rows.get(next).id())) {
+                if (!refreshed.contains(old.ids[row])) {
+                    builder.copy(old, row);
+                }
+                row++;
+            } else {
+                if (row < old.size && old.ids[row] == rows.get(next).id()) {
+                    row++;
+                }
+                builder.add(rows.get(next++));
+            }
+        }
+        columns = builder.build();
+    }
+
+    public int size() {
+        return columns.size;
+    }
+
+    /**
+     * @return every person in the snapshot, to be narrowed with filters.
+     */
+    public Selection select() {
+        return new Selection(columns);
+    }
+
+    @Override
+    public void close() {
+        repository.removeEntityListener(changes);
+    }
+
+    /**
+     * The people of a snapshot that passed every filter so far, one bit per row. Filters narrow the selection
+     * in place and return it, so they can be chained.
+     */
+    public static final class Selection {
+        private final Columns columns;
+        private final long[] bits;
+
+        private Selection(Columns columns) {
+            this.columns = columns;
+            this.bits = new long[(columns.size + 63) >>> 6];
+            Arrays.fill(bits, -1L);
+            if ((columns.size & 63) != 0) {
+                bits[bits.length - 1] = -1L >>> (64 - (columns.size & 63));
+            }
+        }
+
+        /**
+         * Both bounds included, people without a salary never match.
+         */
+        public Selection salaryBetween(BigDecimal min, BigDecimal max) {
+            return range(columns.salary, cents(min, RoundingMode.CEILING), cents(max, RoundingMode.FLOOR));
+        }
+
+        /**
+         * Both bounds included, people without a date of birth never match.
+         */
+        public Selection bornBetween(ZonedDateTime from, ZonedDateTime to) {
+            return range(columns.dob, from.toEpochSecond(), to.toEpochSecond());
+        }
+
+        public Selection firstName(String... names) {
+            return in(columns.firstName, matches(columns.firstNames, names));
+        }
+
+        public Selection lastName(String... names) {
+            return in(columns.lastName, matches(columns.lastNames, names));
+        }
+
+        public Selection city(String... cities) {
+            return in(columns.city, matches(columns.cities, cities));
+        }
+
+        public Selection state(String... states) {
+            return in(columns.state, matches(columns.states, states));
+        }
+
+        public Selection region(Region... regions) {
+            boolean[] matches = new boolean[REGIONS.length + 1];
+            for (Region region : regions) {
+                matches[region == null ? 0 : region.ordinal() + 1] = true;
+            }
+            byte[] column = columns.region;
+            for (int word = 0; word < bits.length; word++) {
+                if (bits[word] == 0) {
+                    continue;
+                }
+                int base = word << 6;
+                int end = Math.min(64, columns.size - base);
+                long match = 0;
+                for (int bit = 0; bit < end; bit++) {
+                    match |= (matches[column[base + bit] + 1] ? 1L : 0L) << bit;
+                }
+                bits[word] &= match;
+            }
+            return this;
+        }
+
+        public Selection withSpouse() {
+            return linked(columns.spouse);
+        }
+
+        public Selection withParent() {
+            return linked(columns.parent);
+        }
+
+        /**
+         * Compares {@code value - min} to {@code max - min} unsigned, one comparison that also drops the NULL rows.
+         */
+        private Selection range(long[] column, long min, long max) {
+            if (min > max) {
+                Arrays.fill(bits, 0);
+                return this;
+            }
+            long width = max - min;
+            for (int word = 0; word < bits.length; word++) {
+                if (bits[word] == 0) {
+                    continue;
+                }
+                int base = word << 6;
+                int end = Math.min(64, columns.size - base);
+                long match = 0;
+                for (int bit = 0; bit < end; bit++) {
+                    match |= (Long.compareUnsigned(column[base + bit] - min, width) <= 0 ? 1L : 0L) << bit;
+                }
+                bits[word] &= match;
+            }
+            return this;
+        }
+
+        /**
+         * @param matches by code + 1, so null is at 0.
+         */
+        private Selection in(int[] column, boolean[] matches) {
+            for (int word = 0; word < bits.length; word++) {
+                if (bits[word] == 0) {
+                    continue;
+                }
+                int base = word << 6;
+                int end = Math.min(64, columns.size - base);
+                long match = 0;
+                for (int bit = 0; bit < end; bit++) {
+                    match |= (matches[column[base + bit] + 1] ? 1L : 0L) << bit;
+                }
+                bits[word] &= match;
+            }
+            return this;
+        }
+
+        private Selection linked(int[] offsets) {
+            for (int word = 0; word < bits.length; word++) {
+                if (bits[word] == 0) {
+                    continue;
+                }
+                int base = word << 6;
+                int end = Math.min(64, columns.size - base);
+                long match = 0;
+                for (int bit = 0; bit < end; bit++) {
+                    match |= (long) (~offsets[base + bit] >>> 31) << bit;
+                }
+                bits[word] &= match;
+            }
+            return this;
+        }
+
+        private static boolean[] matches(ColumnDictionary dictionary, String... values) {
+            boolean[] matches = new boolean[dictionary.size() + 1];
+            for (String value : values) {
+                int code = dictionary.code(value);
+                if (code >= ColumnDictionary.NULL) {
+                    matches[code + 1] = true;
+                }
+            }
+            return matches;
+        }
+
+        public long count() {
+            long count = 0;
+            for (long word : bits) {
+                count += Long.bitCount(word);
+            }
+            return count;
+        }
+
+        /**
+         * @return the ids of the people selected, in ascending order.
+         */
+        public long[] ids() {
+            long[] ids = new long[(int) count()];
+            int idx = 0;
+            for (int word = 0; word < bits.length; word++) {
+                for (long remaining = bits[word]; remaining != 0; remaining &= remaining - 1) {
+                    ids[idx++] = columns.ids[(word << 6) + Long.numberOfTrailingZeros(remaining)];
+                }
+            }
+            return ids;
+        }
+
+        /**
+         * @return the headcount and salaries of the people selected, with a null key.
+         */
+        public GroupStats<Void> stats() {
+            long[] salary = columns.salary;
+            long headcount = 0;
+            long salaried = 0;
+            long total = 0;
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+            for (int word = 0; word < bits.length; word++) {
+                long selected = bits[word];
+                if (selected == 0) {
+                    continue;
+                }
+                headcount += Long.bitCount(selected);
+                int base = word << 6;
+                int end = Math.min(64, columns.size - base);
+                for (int bit = 0; bit < end; bit++) {
+                    long value = salary[base + bit];
+                    long keep = (selected >>> bit) & (value != NULL ? 1L : 0L);
+                    salaried += keep;
+                    total += value & -keep;
+                    min = Math.min(min, keep != 0 ? value : Long.MAX_VALUE);
+                    max = Math.max(max, keep != 0 ? value : Long.MIN_VALUE);
+                }
+            }
+            return new GroupStats<>(null, headcount, salaried, BigDecimal.valueOf(total, 2),
+                    salaried == 0 ? null : BigDecimal.valueOf(min, 2), salaried == 0 ? null : BigDecimal.valueOf(max, 2));
+        }
+
+        /**
+         * Same as {@link PeopleStatistics#by} over the people selected, keyed by the value of the column,
+         * regions by name. Ordered by key, the null one first.
+         */
+        public List<GroupStats<String>> groupBy(Column column) {
+            int groups = switch (column) {
+                case FIRST_NAME -> columns.firstNames.size();
+                case LAST_NAME -> columns.lastNames.size();
+                case CITY -> columns.cities.size();
+                case STATE -> columns.states.size();
+                case REGION -> REGIONS.length;
+            } + 1;
+            long[] headcount = new long[groups];
+            long[] salaried = new long[groups];
+            long[] total = new long[groups];
+            long[] min = new long[groups];
+            long[] max = new long[groups];
+            Arrays.fill(min, Long.MAX_VALUE);
+            Arrays.fill(max, Long.MIN_VALUE);
+            for (int word = 0; word < bits.length; word++) {
+                for (long remaining = bits[word]; remaining != 0; remaining &= remaining - 1) {
+                    int row = (word << 6) + Long.numberOfTrailingZeros(remaining);
+                    int group = code(column, row) + 1;
+                    long value = columns.salary[row];
+                    headcount[group]++;
+                    if (value != NULL) {
+                        salaried[group]++;
+                        total[group] += value;
+                        min[group] = Math.min(min[group], value);
+                        max[group] = Math.max(max[group], value);
+                    }
+                }
+            }
+            List<GroupStats<String>> stats = new ArrayList<>();
+            for (int group = 0; group < groups; group++) {
+                if (headcount[group] > 0) {
+                    stats.add(new GroupStats<>(key(column, group - 1), headcount[group], salaried[group], BigDecimal.valueOf(total[group], 2),
+                            salaried[group] == 0 ? null : BigDecimal.valueOf(min[group], 2),
+                            salaried[group] == 0 ? null : BigDecimal.valueOf(max[group], 2)));
+                }
+            }
+            stats.sort(Comparator.comparing(GroupStats::key, Comparator.nullsFirst(Comparator.naturalOrder())));
+            return stats;
+        }
+
+        private int code(Column column, int row) {
+            return switch (column) {
+                case FIRST_NAME -> columns.firstName[row];
+                case LAST_NAME -> columns.lastName[row];
+                case CITY -> columns.city[row];
+                case STATE -> columns.state[row];
+                case REGION -> columns.region[row];
+            };
+        }
+
+        private String key(Column column, int code) {
+            return switch (column) {
+                case FIRST_NAME -> columns.firstNames.decode(code);
+                case LAST_NAME -> columns.lastNames.decode(code);
+                case CITY -> columns.cities.decode(code);
+                case STATE -> columns.states.decode(code);
+                case REGION -> code == ColumnDictionary.NULL ? null : REGIONS[code].toString();
+            };
+        }
+    }
+
+    private static long cents(BigDecimal amount, RoundingMode rounding) {
+        return amount.setScale(2, rounding).unscaledValue().longValueExact();
+    }
+
+    /**
+     * A person as read from the database, with spouse and parent ids yet to be turned into offsets.
+     */
+    private record Row(long id, String firstName, String lastName, long dob, long salary, String city, String state,
+                       byte region, long spouse, long parent) {
+        static Row read(ResultSet rs) throws SQLException {
+            LocalDateTime dob = rs.getObject(4, LocalDateTime.class);
+            BigDecimal salary = rs.getBigDecimal(5);
+            String region = rs.getString(8);
+            long spouse = rs.getLong(9);
+            spouse = rs.wasNull() ? NULL : spouse;
+            long parent = rs.getLong(10);
+            parent = rs.wasNull() ? NULL : parent;
+            return new Row(rs.getLong(1), rs.getString(2), rs.getString(3), dob == null ? NULL : dob.toEpochSecond(ZoneOffset.UTC),
+                    salary == null ? NULL : cents(salary, RoundingMode.HALF_UP), rs.getString(6), rs.getString(7),
+                    (byte) (region == null ? ColumnDictionary.NULL : Region.valueOf(region.toUpperCase()).ordinal()), spouse, parent);
+        }
+    }
+
+    private static final class Columns {
+        private final int size;
+        private final long[] ids;
+        private final long[] dob;
+        private final long[] salary;
+        private final int[] firstName;
+        private final int[] lastName;
+        private final int[] city;
+        private final int[] state;
+        private final byte[] region;
+        /**
+         * Offsets of the spouse and parent rows, -1 for none.
+         */
+        private final int[] spouse;
+        private final int[] parent;
+        private final ColumnDictionary firstNames;
+        private final ColumnDictionary lastNames;
+        private final ColumnDictionary cities;
+        private final ColumnDictionary states;
+
+        private Columns(Builder builder) {
+            this.size = builder.size;
+            this.ids = Arrays.copyOf(builder.ids, size);
+            this.dob = Arrays.copyOf(builder.dob, size);
+            this.salary = Arrays.copyOf(builder.salary, size);
+            this.firstName = Arrays.copyOf(builder.firstName, size);
+            this.lastName = Arrays.copyOf(builder.lastName, size);
+            this.city = Arrays.copyOf(builder.city, size);
+            this.state = Arrays.copyOf(builder.state, size);
+            this.region = Arrays.copyOf(builder.region, size);
+            this.spouse = offsets(builder.spouse);
+            this.parent = offsets(builder.parent);
+            this.firstNames = builder.firstNames;
+            this.lastNames = builder.lastNames;
+            this.cities = builder.cities;
+            this.states = builder.states;
+        }
+
+        private int[] offsets(long[] linkedIds) {
+            int[] offsets = new int[size];
+            for (int row = 0; row < size; row++) {
+                offsets[row] = linkedIds[row] == NULL ? -1 : Math.max(Arrays.binarySearch(ids, linkedIds[row]), -1);
+            }
+            return offsets;
+        }
+
+        private long linkedId(int[] offsets, int row) {
+            return offsets[row] < 0 ? NULL : ids[offsets[row]];
+        }
+    }
+
+    /**
+     * Appends rows in id order, growing its arrays as needed.
+     */
+    private static final class Builder {
+        private final ColumnDictionary firstNames;
+        private final ColumnDictionary lastNames;
+        private final ColumnDictionary cities;
+        private final ColumnDictionary states;
+        private int size;
+        private long[] ids;
+        private long[] dob;
+        private long[] salary;
+        private int[] firstName;
+        private int[] lastName;
+        private int[] city;
+        private int[] state;
+        private byte[] region;
+        private long[] spouse;
+        private long[] parent;
+
+        Builder(int capacity, ColumnDictionary firstNames, ColumnDictionary lastNames, ColumnDictionary cities, ColumnDictionary states) {
+            this.firstNames = firstNames;
+            this.lastNames = lastNames;
+            this.cities = cities;
+            this.states = states;
+            allocate(Math.max(capacity, 16));
+        }
+
+        private void allocate(int capacity) {
+            ids = ids == null ? new long[capacity] : Arrays.copyOf(ids, capacity);
+            dob = dob == null ? new long[capacity] : Arrays.copyOf(dob, capacity);
+            salary = salary == null ? new long[capacity] : Arrays.copyOf(salary, capacity);
+            firstName = firstName == null ? new int[capacity] : Arrays.copyOf(firstName, capacity);
+            lastName = lastName == null ? new int[capacity] : Arrays.copyOf(lastName, capacity);
+            city = city == null ? new int[capacity] : Arrays.copyOf(city, capacity);
+            state = state == null ? new int[capacity] : Arrays.copyOf(state, capacity);
+            region = region == null ? new byte[capacity] : Arrays.copyOf(region, capacity);
+            spouse = spouse == null ? new long[capacity] : Arrays.copyOf(spouse, capacity);
+            parent = parent == null ? new long[capacity] : Arrays.copyOf(parent, capacity);
+        }
+
+        void add(Row row) {
+            append(row.id(), firstNames.encode(row.firstName()), lastNames.encode(row.lastName()), row.dob(), row.salary(),
+                    cities.encode(row.city()), states.encode(row.state()), row.region(), row.spouse(), row.parent());
+        }
+
+        /**
+         * Copies a row of columns whose dictionaries this builder's were copied from, so the codes stay valid.
+         */
+        void copy(Columns columns, int row) {
+            append(columns.ids[row], columns.firstName[row], columns.lastName[row], columns.dob[row], columns.salary[row],
+                    columns.city[row], columns.state[row], columns.region[row],
+                    columns.linkedId(columns.spouse, row), columns.linkedId(columns.parent, row));
+        }
+
+        private void append(long id, int firstNameCode, int lastNameCode, long dobSeconds, long salaryCents, int cityCode,
+                            int stateCode, byte regionOrdinal, long spouseId, long parentId) {
+            if (size == ids.length) {
+                allocate(size + (size >> 1));
+            }
+            ids[size] = id;
+            firstName[size] = firstNameCode;
+            lastName[size] = lastNameCode;
+            dob[size] = dobSeconds;
+            salary[size] = salaryCents;
+            city[size] = cityCode;
+            state[size] = stateCode;
+            region[size] = regionOrdinal;
+            spouse[size] = spouseId;
+            parent[size] = parentId;
+            size++;
+        }
+
+        Columns build() {
+            return new Columns(this);
+        }
+    }
+}
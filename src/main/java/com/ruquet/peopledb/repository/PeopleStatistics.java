@@ -0,0 +1,176 @@
+package com.ruquet.peopledb.repository;
+
+import com.ruquet.peopledb.model.Address;
+import com.ruquet.peopledb.model.CrudOperation;
+import com.ruquet.peopledb.model.Person;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Headcount and salary statistics of the people, grouped by the database with one GROUP BY over PEOPLE joined with
+ * ADDRESSES, so a row per group comes back instead of every person, i.e.
+ * {@code new PeopleStatistics(repository).by(Dimension.HOME_REGION)}. Groups are ordered by key, the null one first.
+ * <p>
+ * {@link #enableIncremental()} keeps the statistics in memory instead, loaded once and then updated by every save,
+ * update and delete made through the repository, so they're read without a query. Changes made any other way
+ * aren't seen.
+ */
+public class PeopleStatistics {
+    public enum Dimension {
+        LAST_NAME("PARENT.LAST_NAME", null, Person::getLastName),
+        HOME_REGION("HOME.REGION", PeopleRepository.HOME_JOIN, key(Person::getHomeAddress, Address::region)),
+        HOME_STATE("HOME.STATE", PeopleRepository.HOME_JOIN, key(Person::getHomeAddress, Address::state)),
+        HOME_CITY("HOME.CITY", PeopleRepository.HOME_JOIN, key(Person::getHomeAddress, Address::city)),
+        HOME_COUNTRY("HOME.COUNTRY", PeopleRepository.HOME_JOIN, key(Person::getHomeAddress, Address::country)),
+        BUSINESS_REGION("BIZ.REGION", PeopleRepository.BIZ_JOIN, key(Person::getBusinessAddress, Address::region)),
+        BUSINESS_STATE("BIZ.STATE", PeopleRepository.BIZ_JOIN, key(Person::getBusinessAddress, Address::state)),
+        BUSINESS_CITY("BIZ.CITY", PeopleRepository.BIZ_JOIN, key(Person::getBusinessAddress, Address::city)),
+        BUSINESS_COUNTRY("BIZ.COUNTRY", PeopleRepository.BIZ_JOIN, key(Person::getBusinessAddress, Address::country));
+
+        final String column;
+        /**
+         * null for the columns of PEOPLE.
+         */
+        final String join;
+        /**
+         * The key of a person as the database stores it.
+         */
+        final Function<Person, String> key;
+
+        Dimension(String column, String join, Function<Person, String> key) {
+            this.column = column;
+            this.join = join;
+            this.key = key;
+        }
+
+        private static Function<Person, String> key(Function<Person, Optional<Address>> address, Function<Address, Object> attribute) {
+            return person -> address.apply(person).map(attribute).map(Object::toString).orElse(null);
+        }
+    }
+
+    private static final String STATS_COLUMNS = "COUNT(*), COUNT(PARENT.SALARY), COALESCE(SUM(PARENT.SALARY), 0), MIN(PARENT.SALARY), MAX(PARENT.SALARY)";
+    private static final String OVERALL_SQL = "SELECT NULL, " + STATS_COLUMNS + " FROM PEOPLE AS PARENT";
+    /**
+     * Ages in whole years at a date bound as its year and its month * 100 + day, grouped in a derived table
+     * so the bucket is computed once per age instead of once per person.
+     */
+    private static final String BY_AGE_SQL = """
+            SELECT AGE, %s
+            FROM (SELECT CAST(? AS INT) - YEAR(PARENT.DOB) - CASE WHEN MONTH(PARENT.DOB) * 100 + DAY_OF_MONTH(PARENT.DOB) > CAST(? AS INT) THEN 1 ELSE 0 END AS AGE,
+                  PARENT.SALARY FROM PEOPLE AS PARENT) AS PARENT
+            GROUP BY AGE ORDER BY AGE NULLS FIRST
+            """.formatted(STATS_COLUMNS);
+    private static final Map<Dimension, String> BY_DIMENSION_SQL = new EnumMap<>(Dimension.class);
+
+    static {
+        for (Dimension dimension : Dimension.values()) {
+            BY_DIMENSION_SQL.put(dimension, "SELECT " + dimension.column + ", " + STATS_COLUMNS + " FROM PEOPLE AS PARENT"
+                    + (dimension.join == null ? "" : " " + dimension.join)
+                    + " GROUP BY " + dimension.column + " ORDER BY " + dimension.column + " NULLS FIRST");
+        }
+    }
+
+    private final PeopleRepository repository;
+    private final Clock clock;
+    private volatile IncrementalStatistics incremental;
+
+    public PeopleStatistics(PeopleRepository repository) {
+        this(repository, Clock.systemUTC());
+    }
+
+    /**
+     * @param clock ages are counted up to its current date, in UTC like the dates of birth.
+     */
+    PeopleStatistics(PeopleRepository repository, Clock clock) {
+        this.repository = repository;
+        this.clock = clock;
+    }
+
+    /**
+     * @return the statistics of everybody, with a null key.
+     */
+    public GroupStats<Void> overall() {
+        IncrementalStatistics incremental = this.incremental;
+        if (incremental != null) {
+            return incremental.overall();
+        }
+        return repository.query(CrudOperation.AGGREGATE, OVERALL_SQL, List.of(), rs -> groupStats((Void) null, rs)).get(0);
+    }
+
+    public List<GroupStats<String>> by(Dimension dimension) {
+        IncrementalStatistics incremental = this.incremental;
+        if (incremental != null) {
+            return incremental.by(dimension);
+        }
+        return repository.query(CrudOperation.AGGREGATE, BY_DIMENSION_SQL.get(dimension), List.of(), rs -> groupStats(rs.getString(1), rs));
+    }
+
+    /**
+     * Same as {@link #by(Dimension)} read through a cursor, for dimensions with many groups such as
+     * {@link Dimension#LAST_NAME}. Close the stream to release it.
+     */
+    public Stream<GroupStats<String>> streamBy(Dimension dimension) {
+        IncrementalStatistics incremental = this.incremental;
+        if (incremental != null) {
+            return incremental.by(dimension).stream();
+        }
+        return repository.stream(BY_DIMENSION_SQL.get(dimension), rs -> groupStats(rs.getString(1), rs));
+    }
+
+    /**
+     * Groups people by age in buckets of {@code years}, i.e. 10 for 0-9, 10-19 and so on.
+     * @return keyed by the first age of the bucket, the null key for people without a date of birth.
+     */
+    public List<GroupStats<Integer>> byAge(int years) {
+        if (years < 1) {
+            throw new IllegalArgumentException("Age buckets must be at least a year wide");
+        }
+        LocalDate today = LocalDate.now(clock);
+        IncrementalStatistics incremental = this.incremental;
+        List<GroupStats<Integer>> byAge = incremental != null
+                ? incremental.byAge(today)
+                : repository.query(CrudOperation.AGGREGATE, BY_AGE_SQL, List.of(today.getYear(), today.getMonthValue() * 100 + today.getDayOfMonth()),
+                        rs -> groupStats(rs.getObject(1) == null ? null : rs.getInt(1), rs));
+        Map<Integer, GroupStats<Integer>> buckets = new LinkedHashMap<>();
+        for (GroupStats<Integer> age : byAge) {
+            Integer from = age.key() == null ? null : Math.floorDiv(age.key(), years) * years;
+            buckets.merge(from, age.withKey(from), (bucket, other) -> bucket.merge(from, other));
+        }
+        return List.copyOf(buckets.values());
+    }
+
+    private static <K> GroupStats<K> groupStats(K key, ResultSet rs) throws SQLException {
+        return new GroupStats<>(key, rs.getLong(2), rs.getLong(3), rs.getBigDecimal(4), rs.getBigDecimal(5), rs.getBigDecimal(6));
+    }
+
+    /**
+     * Loads what the statistics need of every person, a few fields each, and from then on answers from memory.
+     * Writes made through the repository while loading wait for it to finish.
+     */
+    public synchronized void enableIncremental() {
+        if (incremental == null) {
+            incremental = IncrementalStatistics.load(repository);
+        }
+    }
+
+    public synchronized void disableIncremental() {
+        if (incremental != null) {
+            repository.removeEntityListener(incremental);
+            incremental = null;
+        }
+    }
+
+    public boolean isIncremental() {
+        return incremental != null;
+    }
+}
@@ -0,0 +1,150 @@
+package com.ruquet.peopledb.repository;
+
+import com.ruquet.peopledb.model.Address;
+import com.ruquet.peopledb.model.Person;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * The people reachable from a batch through spouses, parents and children, planned for insertion.
+ * Every person and address is visited once by identity, so an object shared by several people is inserted once.
+ * A person's row references its spouse and parent, so people are split in levels that only reference
+ * earlier levels. When references form a cycle, like two people who are each other's spouse, one of them is
+ * inserted without them and they're set afterwards with an update, see {@link #deferred()}.
+ * People that already have an id are left alone, except the ones in the batch itself, which are always inserted.
+ */
+final class PersonGraph {
+    private final List<Person> people = new ArrayList<>();
+    private final List<Address> addresses = new ArrayList<>();
+    private final List<List<Person>> levels = new ArrayList<>();
+    private final List<Person> deferred = new ArrayList<>();
+
+    private PersonGraph() {
+    }
+
+    static PersonGraph of(List<Person> batch) {
+        PersonGraph graph = new PersonGraph();
+        Set<Person> nodes = graph.walk(batch);
+        graph.plan(nodes);
+        return graph;
+    }
+
+    private Set<Person> walk(List<Person> batch) {
+        Set<Person> nodes = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<Address> seenAddresses = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<Person> pending = new ArrayDeque<>();
+        for (Person person : batch) {
+            if (nodes.add(person)) {
+                pending.add(person);
+            }
+        }
+        while (!pending.isEmpty()) {
+            Person person = pending.poll();
+            people.add(person);
+            Stream.of(person.getHomeAddress(), person.getBusinessAddress())
+                    .flatMap(Optional::stream)
+                    .filter(address -> address.id() == null)
+                    .filter(seenAddresses::add)
+                    .forEach(addresses::add);
+            Stream.concat(Stream.of(person.getSpouse(), person.getParent()).flatMap(Optional::stream),
+                            person.getChildren().stream())
+                    .filter(related -> related.getId() == null)
+                    .filter(nodes::add)
+                    .forEach(pending::add);
+        }
+        return nodes;
+    }
+
+    /**
+     * Kahn's algorithm over the spouse and parent references, breaking a cycle whenever no one is ready.
+     */
+    private void plan(Set<Person> nodes) {
+        Map<Person, Integer> unresolved = new IdentityHashMap<>();
+        Map<Person, List<Person>> dependents = new IdentityHashMap<>();
+        List<Person> ready = new ArrayList<>();
+        for (Person person : people) {
+            List<Person> references = references(person, nodes);
+            unresolved.put(person, references.size());
+            for (Person reference : references) {
+                dependents.computeIfAbsent(reference, k -> new ArrayList<>()).add(person);
+            }
+            if (references.isEmpty()) {
+                ready.add(person);
+            }
+        }
+        int next = 0;
+        while (!unresolved.isEmpty()) {
+            if (ready.isEmpty()) {
+                while (!unresolved.containsKey(people.get(next))) {
+                    next++;
+                }
+                Person cycleBreaker = people.get(next);
+                deferred.add(cycleBreaker);
+                ready.add(cycleBreaker);
+            }
+            for (Person person : ready) {
+                unresolved.remove(person);
+            }
+            levels.add(ready);
+            List<Person> nextLevel = new ArrayList<>();
+            for (Person person : ready) {
+                for (Person dependent : dependents.getOrDefault(person, List.of())) {
+                    Integer count = unresolved.get(dependent);
+                    if (count != null) {
+                        unresolved.put(dependent, count - 1);
+                        if (count == 1) {
+                            nextLevel.add(dependent);
+                        }
+                    }
+                }
+            }
+            ready = nextLevel;
+        }
+    }
+
+    private static List<Person> references(Person person, Set<Person> nodes) {
+        List<Person> references = new ArrayList<>(2);
+        Stream.of(person.getSpouse(), person.getParent())
+                .flatMap(Optional::stream)
+                .filter(nodes::contains)
+                .forEach(references::add);
+        return references;
+    }
+
+    /**
+     * @return every person to insert, in the order they were found.
+     */
+    List<Person> people() {
+        return people;
+    }
+
+    /**
+     * @return the unsaved addresses of those people, each one once.
+     */
+    List<Address> addresses() {
+        return addresses;
+    }
+
+    /**
+     * @return the people in insertion order, every level only references people of earlier levels.
+     */
+    List<List<Person>> levels() {
+        return levels;
+    }
+
+    /**
+     * @return the people inserted before someone they reference, whose spouse and parent need an update afterwards.
+     */
+    List<Person> deferred() {
+        return deferred;
+    }
+}
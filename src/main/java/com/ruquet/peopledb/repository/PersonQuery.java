@@ -0,0 +1,195 @@
+package com.ruquet.peopledb.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Criteria for {@link PeopleRepository#find(PersonQuery)}, i.e.
+ * {@code new PersonQuery().eq(LAST_NAME, "Ruquet").between(SALARY, min, max).orderBy(SALARY).limit(50)}.
+ * Conditions are ANDed. Every value is bound as a parameter and IN lists are padded to a few sizes, so queries
+ * of the same shape share one SQL string and one prepared statement whatever their values.
+ */
+public final class PersonQuery {
+    public enum Field {
+        ID("PARENT.ID"),
+        FIRST_NAME("PARENT.FIRST_NAME"),
+        LAST_NAME("PARENT.LAST_NAME"),
+        EMAIL("PARENT.EMAIL"),
+        DOB("PARENT.DOB"),
+        SALARY("PARENT.SALARY"),
+        HOME_REGION("HOME.REGION"),
+        BUSINESS_REGION("BIZ.REGION");
+
+        final String column;
+
+        Field(String column) {
+            this.column = column;
+        }
+    }
+
+    enum Operator {
+        EQ("="),
+        LT("<"),
+        LE("<="),
+        GT(">"),
+        GE(">="),
+        BETWEEN("BETWEEN"),
+        IN("IN");
+
+        final String sql;
+
+        Operator(String sql) {
+            this.sql = sql;
+        }
+    }
+
+    /**
+     * @param size the number of "?" of an IN list, its values padded with the last one, 0 for an empty list.
+     */
+    record Condition(Field field, Operator operator, List<Object> values, int size) {
+    }
+
+    /**
+     * What the SQL of a query depends on, and nothing else.
+     */
+    record Shape(List<Shape.Condition> conditions, Field orderBy, boolean descending, boolean keyset, boolean limited) {
+        record Condition(Field field, Operator operator, int size) {
+        }
+    }
+
+    private final List<Condition> conditions = new ArrayList<>();
+    private Field orderBy = Field.ID;
+    private boolean descending;
+    private boolean keyset;
+    private Object afterValue;
+    private Long afterId;
+    private Integer limit;
+
+    public PersonQuery eq(Field field, Object value) {
+        return add(field, Operator.EQ, value);
+    }
+
+    public PersonQuery lt(Field field, Object value) {
+        return add(field, Operator.LT, value);
+    }
+
+    public PersonQuery le(Field field, Object value) {
+        return add(field, Operator.LE, value);
+    }
+
+    public PersonQuery gt(Field field, Object value) {
+        return add(field, Operator.GT, value);
+    }
+
+    public PersonQuery ge(Field field, Object value) {
+        return add(field, Operator.GE, value);
+    }
+
+    /**
+     * Both bounds included.
+     */
+    public PersonQuery between(Field field, Object from, Object to) {
+        conditions.add(new Condition(field, Operator.BETWEEN, List.of(from, to), 2));
+        return this;
+    }
+
+    /**
+     * An empty list matches nobody.
+     */
+    public PersonQuery in(Field field, Collection<?> values) {
+        List<Object> distinct = values.stream().distinct().map(v -> (Object) v).toList();
+        int size = distinct.isEmpty() ? 0 : inListSize(distinct.size());
+        List<Object> padded = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            padded.add(distinct.get(Math.min(i, distinct.size() - 1)));
+        }
+        conditions.add(new Condition(field, Operator.IN, padded, size));
+        return this;
+    }
+
+    /**
+     * Pads to the sizes of {@link CrudRepository#ID_LIST_SIZES}, longer lists to the next power of two,
+     * so there's a handful of sizes whatever the lists.
+     */
+    static int inListSize(int size) {
+        for (int listSize : CrudRepository.ID_LIST_SIZES) {
+            if (listSize >= size) {
+                return listSize;
+            }
+        }
+        return Integer.highestOneBit(size - 1) << 1;
+    }
+
+    private PersonQuery add(Field field, Operator operator, Object value) {
+        conditions.add(new Condition(field, operator, List.of(value), 1));
+        return this;
+    }
+
+    /**
+     * Ties are ordered by id, ascending by default.
+     */
+    public PersonQuery orderBy(Field field) {
+        this.orderBy = field;
+        this.descending = false;
+        return this;
+    }
+
+    public PersonQuery orderByDescending(Field field) {
+        this.orderBy = field;
+        this.descending = true;
+        return this;
+    }
+
+    public PersonQuery limit(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be greater than 0");
+        }
+        this.limit = limit;
+        return this;
+    }
+
+    /**
+     * Keyset pagination when ordered by id: only people after {@code id}, pass the id of the last person of a page.
+     */
+    public PersonQuery after(Long id) {
+        return after(id, id);
+    }
+
+    /**
+     * Keyset pagination: only people after the last person of a page, given the value of the order field
+     * and the id of that person. The order field must not be null for the people paged through.
+     */
+    public PersonQuery after(Object lastValue, Long lastId) {
+        this.keyset = true;
+        this.afterValue = lastValue;
+        this.afterId = lastId;
+        return this;
+    }
+
+    Shape shape() {
+        return new Shape(conditions.stream().map(c -> new Shape.Condition(c.field(), c.operator(), c.size())).toList(),
+                orderBy, descending, keyset, limit != null);
+    }
+
+    /**
+     * @return the values bound to the SQL of the {@link #shape()}, in order.
+     */
+    List<Object> parameters() {
+        List<Object> parameters = new ArrayList<>();
+        for (Condition condition : conditions) {
+            parameters.addAll(condition.values());
+        }
+        if (keyset) {
+            if (orderBy != Field.ID) {
+                parameters.add(afterValue);
+                parameters.add(afterValue);
+            }
+            parameters.add(afterId);
+        }
+        if (limit != null) {
+            parameters.add(limit);
+        }
+        return parameters;
+    }
+}
@@ -0,0 +1,179 @@
+package com.ruquet.peopledb.repository;
+
+import com.ruquet.peopledb.model.Address;
+import com.ruquet.peopledb.model.Person;
+import com.ruquet.peopledb.model.Region;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maps the rows of one person query. The column index of every alias (PARENT_ID, HOME_CITY...) is looked up
+ * once from the query's metadata, so rows are read by index with typed getters.
+ * Aliases missing from the query are skipped, i.e. a query without HOME_ columns maps no home address.
+ */
+final class PersonRowMapper {
+    private static final ZoneId DB_ZONE = ZoneId.of("+0");
+
+    private final PersonColumns parent;
+    private final PersonColumns spouse;
+    private final PersonColumns children;
+    private final AddressColumns home;
+    private final AddressColumns biz;
+    private final int homeAddressId;
+    private final int bizAddressId;
+    private final int spouseId;
+
+    private PersonRowMapper(Map<String, Integer> indexes) {
+        this.parent = PersonColumns.of(indexes, "PARENT_");
+        this.spouse = PersonColumns.of(indexes, "SPOUSE_");
+        this.children = PersonColumns.of(indexes, "CHILDREN_");
+        this.home = AddressColumns.of(indexes, "HOME_");
+        this.biz = AddressColumns.of(indexes, "BIZ_");
+        this.homeAddressId = index(indexes, "PARENT_HOME_ADDRESS");
+        this.bizAddressId = index(indexes, "PARENT_BIZ_ADDRESS");
+        this.spouseId = index(indexes, "PARENT_SPOUSE");
+        if (parent == null) {
+            throw new IllegalArgumentException("Person queries must select PARENT_ID");
+        }
+    }
+
+    static PersonRowMapper compile(ResultSetMetaData metaData) throws SQLException {
+        Map<String, Integer> indexes = new HashMap<>();
+        for (int columnIdx = 1; columnIdx <= metaData.getColumnCount(); columnIdx++) {
+            indexes.putIfAbsent(metaData.getColumnLabel(columnIdx), columnIdx);
+        }
+        return new PersonRowMapper(indexes);
+    }
+
+    Long parentId(ResultSet rs) throws SQLException {
+        return parent.id(rs);
+    }
+
+    /**
+     * The ids the parent of a row references, null when the query doesn't select them.
+     */
+    record References(Long homeAddress, Long businessAddress, Long spouse) {
+    }
+
+    /**
+     * @return what the parent of the current row references through PARENT_HOME_ADDRESS, PARENT_BIZ_ADDRESS
+     * and PARENT_SPOUSE, to load what the query didn't join.
+     */
+    References references(ResultSet rs) throws SQLException {
+        return new References(nullableLong(rs, homeAddressId), nullableLong(rs, bizAddressId), nullableLong(rs, spouseId));
+    }
+
+    private static Long nullableLong(ResultSet rs, int idx) throws SQLException {
+        if (idx == 0) {
+            return null;
+        }
+        long value = rs.getLong(idx);
+        return rs.wasNull() ? null : value;
+    }
+
+    /**
+     * @return the parent of the current row with its addresses, spouse and child.
+     */
+    Person map(ResultSet rs) throws SQLException {
+        Person person = parent.read(rs);
+        if (home != null) {
+            person.setHomeAddress(home.read(rs));
+        }
+        if (biz != null) {
+            person.setBusinessAddress(biz.read(rs));
+        }
+        merge(person, rs);
+        return person;
+    }
+
+    /**
+     * Adds the spouse and child of the current row to a parent mapped from a previous row.
+     */
+    void merge(Person person, ResultSet rs) throws SQLException {
+        if (spouse != null) {
+            Person s = spouse.read(rs);
+            if (s != null) {
+                person.setSpouse(s);
+            }
+        }
+        if (children != null) {
+            Person child = children.read(rs);
+            if (child != null) {
+                person.addChild(child);
+            }
+        }
+    }
+
+    private static int index(Map<String, Integer> indexes, String label) {
+        return indexes.getOrDefault(label, 0);
+    }
+
+    private record PersonColumns(int id, int firstName, int lastName, int dob, int salary, int email) {
+        static PersonColumns of(Map<String, Integer> indexes, String alias) {
+            int id = index(indexes, alias + "ID");
+            if (id == 0) {
+                return null;
+            }
+            return new PersonColumns(id, index(indexes, alias + "FIRST_NAME"), index(indexes, alias + "LAST_NAME"),
+                    index(indexes, alias + "DOB"), index(indexes, alias + "SALARY"), index(indexes, alias + "EMAIL"));
+        }
+
+        Long id(ResultSet rs) throws SQLException {
+            long value = rs.getLong(id);
+            return rs.wasNull() ? null : value;
+        }
+
+        Person read(ResultSet rs) throws SQLException {
+            Long peopleId = id(rs);
+            if (peopleId == null) {
+                return null;
+            }
+            String first = firstName == 0 ? null : rs.getString(firstName);
+            String last = lastName == 0 ? null : rs.getString(lastName);
+            LocalDateTime localDob = dob == 0 ? null : rs.getObject(dob, LocalDateTime.class);
+            ZonedDateTime zonedDob = localDob == null ? null : ZonedDateTime.of(localDob, DB_ZONE);
+            BigDecimal personSalary = salary == 0 ? null : rs.getBigDecimal(salary);
+            Person person = new Person(peopleId, first, last, zonedDob, personSalary);
+            if (email != 0) {
+                person.setEmail(rs.getString(email));
+            }
+            return person;
+        }
+    }
+
+    private record AddressColumns(int id, int streetAddress, int address2, int city, int state,
+                                  int postCode, int county, int region, int country) {
+        static AddressColumns of(Map<String, Integer> indexes, String alias) {
+            int id = index(indexes, alias + "ID");
+            if (id == 0) {
+                return null;
+            }
+            return new AddressColumns(id, index(indexes, alias + "STREET_ADDRESS"), index(indexes, alias + "ADDRESS2"),
+                    index(indexes, alias + "CITY"), index(indexes, alias + "STATE"), index(indexes, alias + "POSTCODE"),
+                    index(indexes, alias + "COUNTY"), index(indexes, alias + "REGION"), index(indexes, alias + "COUNTRY"));
+        }
+
+        Address read(ResultSet rs) throws SQLException {
+            long addrId = rs.getLong(id);
+            if (rs.wasNull()) {
+                return null;
+            }
+            String regionName = string(rs, region);
+            return new Address(addrId, string(rs, streetAddress), string(rs, address2), string(rs, city), string(rs, state),
+                    string(rs, postCode), string(rs, county), regionName == null ? null : Region.valueOf(regionName.toUpperCase()),
+                    string(rs, country));
+        }
+
+        private static String string(ResultSet rs, int idx) throws SQLException {
+            return idx == 0 ? null : rs.getString(idx);
+        }
+    }
+}
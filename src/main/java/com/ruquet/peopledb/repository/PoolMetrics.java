@@ -0,0 +1,20 @@
+package com.ruquet.peopledb.repository;
+
+import java.time.Duration;
+
+/**
+ * A snapshot of the state of a {@link ConnectionPool}.
+ *
+ * @param waiting  threads blocked waiting for a connection.
+ * @param timeouts acquisitions that gave up after the acquire timeout.
+ */
+public record PoolMetrics(int maxSize, int open, int active, int idle, int waiting,
+                          long acquired, long timeouts, Duration averageWait, Duration maxWait) {
+
+    /**
+     * @return the share of the max size in use, 1.0 means every further request has to wait.
+     */
+    public double saturation() {
+        return (double) active / maxSize;
+    }
+}
@@ -0,0 +1,84 @@
+package com.ruquet.peopledb.repository;
+
+import java.time.Duration;
+
+/**
+ * Settings of a {@link ConnectionPool}.
+ */
+public class PoolSettings {
+    private int minSize = 2;
+    private int maxSize = 10;
+    private Duration acquireTimeout = Duration.ofSeconds(30);
+    private int validationTimeoutSeconds = 2;
+    private int statementCacheSize = CrudRepository.DEFAULT_STATEMENT_CACHE_SIZE;
+
+    /**
+     * Connections opened when the pool is created.
+     */
+    public PoolSettings minSize(int minSize) {
+        if (minSize < 0) {
+            throw new IllegalArgumentException("Min size can't be negative");
+        }
+        this.minSize = minSize;
+        return this;
+    }
+
+    /**
+     * Connections that can be in use at the same time, which also bounds how many operations run at once.
+     */
+    public PoolSettings maxSize(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Max size must be greater than 0");
+        }
+        this.maxSize = maxSize;
+        return this;
+    }
+
+    public PoolSettings acquireTimeout(Duration acquireTimeout) {
+        this.acquireTimeout = acquireTimeout;
+        return this;
+    }
+
+    /**
+     * Seconds {@link java.sql.Connection#isValid(int)} may take when an idle connection is borrowed,
+     * 0 only checks that it isn't closed.
+     */
+    public PoolSettings validationTimeoutSeconds(int validationTimeoutSeconds) {
+        if (validationTimeoutSeconds < 0) {
+            throw new IllegalArgumentException("Validation timeout can't be negative");
+        }
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        return this;
+    }
+
+    /**
+     * Prepared statements cached for each connection.
+     */
+    public PoolSettings statementCacheSize(int statementCacheSize) {
+        if (statementCacheSize < 1) {
+            throw new IllegalArgumentException("Statement cache size must be greater than 0");
+        }
+        this.statementCacheSize = statementCacheSize;
+        return this;
+    }
+
+    public int getMinSize() {
+        return minSize;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public Duration getAcquireTimeout() {
+        return acquireTimeout;
+    }
+
+    public int getValidationTimeoutSeconds() {
+        return validationTimeoutSeconds;
+    }
+
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+}
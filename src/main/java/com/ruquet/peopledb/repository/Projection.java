@@ -0,0 +1,174 @@
+package com.ruquet.peopledb.repository;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.RecordComponent;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Some columns of a table mapped straight into a small type, so reads that need a few fields skip building
+ * the whole entity, see {@link CrudRepository#findAll(Projection)}. Columns are read by index, in order.
+ */
+public final class Projection<R> {
+    private static final ZoneId DB_ZONE = ZoneId.of("+0");
+    private static final ClassValue<Projection<?>> RECORDS = new ClassValue<>() {
+        @Override
+        protected Projection<?> computeValue(Class<?> type) {
+            return ofRecord(type);
+        }
+    };
+
+    @FunctionalInterface
+    public interface RowMapper<R> {
+        R map(ResultSet rs) throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface ColumnReader {
+        Object read(ResultSet rs, int idx) throws SQLException;
+    }
+
+    private record Select(String table, String sql) {
+    }
+
+    private final List<String> columns;
+    private final RowMapper<R> mapper;
+    /**
+     * The last query built, projections are almost always read from one table.
+     */
+    private volatile Select select;
+
+    private Projection(List<String> columns, RowMapper<R> mapper) {
+        if (columns.isEmpty()) {
+            throw new IllegalArgumentException("A projection needs at least one column");
+        }
+        this.columns = List.copyOf(columns);
+        this.mapper = mapper;
+    }
+
+    /**
+     * @param columns selected in this order, so the mapper can read them by index, e.g. {@code rs.getString(2)}.
+     */
+    public static <R> Projection<R> of(RowMapper<R> mapper, String... columns) {
+        return new Projection<>(Arrays.asList(columns), mapper);
+    }
+
+    /**
+     * Maps every component of the record to the column of the same name in upper snake case, i.e. {@code firstName}
+     * to FIRST_NAME, passed to its canonical constructor. Components can be primitives, their boxes, String,
+     * BigDecimal, LocalDate, LocalDateTime, ZonedDateTime or enums stored by name. Built once per record class.
+     */
+    @SuppressWarnings("unchecked")
+    public static <R extends Record> Projection<R> of(Class<R> recordType) {
+        return (Projection<R>) RECORDS.get(recordType);
+    }
+
+    private static Projection<?> ofRecord(Class<?> type) {
+        if (!type.isRecord()) {
+            throw new IllegalArgumentException(type.getName() + " isn't a record");
+        }
+        RecordComponent[] components = type.getRecordComponents();
+        Class<?>[] componentTypes = Arrays.stream(components).map(RecordComponent::getType).toArray(Class<?>[]::new);
+        ColumnReader[] readers = new ColumnReader[components.length];
+        String[] columns = new String[components.length];
+        for (int i = 0; i < components.length; i++) {
+            columns[i] = columnName(components[i].getName());
+            readers[i] = reader(type, components[i].getType());
+        }
+        MethodHandle constructor;
+        try {
+            constructor = MethodHandles.privateLookupIn(type, MethodHandles.lookup())
+                    .findConstructor(type, MethodType.methodType(void.class, componentTypes))
+                    .asSpreader(Object[].class, componentTypes.length)
+                    .asType(MethodType.methodType(Object.class, Object[].class));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to find the canonical constructor of " + type.getName(), e);
+        }
+        return new Projection<>(Arrays.asList(columns), rs -> {
+            Object[] args = new Object[readers.length];
+            for (int i = 0; i < readers.length; i++) {
+                args[i] = readers[i].read(rs, i + 1);
+            }
+            try {
+                return (Object) constructor.invokeExact(args);
+            } catch (Throwable e) {
+                throw new IllegalStateException("Unable to build a " + type.getName(), e);
+            }
+        });
+    }
+
+    static String columnName(String component) {
+        return component.replaceAll("([a-z0-9])([A-Z])", "$1_$2").toUpperCase();
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static ColumnReader reader(Class<?> recordType, Class<?> type) {
+        if (type == long.class) {
+            return ResultSet::getLong;
+        } else if (type == int.class) {
+            return ResultSet::getInt;
+        } else if (type == double.class) {
+            return ResultSet::getDouble;
+        } else if (type == boolean.class) {
+            return ResultSet::getBoolean;
+        } else if (type == Long.class) {
+            return (rs, idx) -> nullable(rs, rs.getLong(idx));
+        } else if (type == Integer.class) {
+            return (rs, idx) -> nullable(rs, rs.getInt(idx));
+        } else if (type == Double.class) {
+            return (rs, idx) -> nullable(rs, rs.getDouble(idx));
+        } else if (type == Boolean.class) {
+            return (rs, idx) -> nullable(rs, rs.getBoolean(idx));
+        } else if (type == String.class) {
+            return ResultSet::getString;
+        } else if (type == BigDecimal.class) {
+            return ResultSet::getBigDecimal;
+        } else if (type == LocalDate.class || type == LocalDateTime.class) {
+            return (rs, idx) -> rs.getObject(idx, type);
+        } else if (type == ZonedDateTime.class) {
+            return (rs, idx) -> {
+                LocalDateTime value = rs.getObject(idx, LocalDateTime.class);
+                return value == null ? null : ZonedDateTime.of(value, DB_ZONE);
+            };
+        } else if (type.isEnum()) {
+            return (rs, idx) -> {
+                String name = rs.getString(idx);
+                return name == null ? null : Enum.valueOf((Class<? extends Enum>) type, name.toUpperCase());
+            };
+        }
+        throw new IllegalArgumentException("Can't map a column to " + type.getName() + " in " + recordType.getName());
+    }
+
+    private static Object nullable(ResultSet rs, Object value) throws SQLException {
+        return rs.wasNull() ? null : value;
+    }
+
+    List<String> getColumns() {
+        return columns;
+    }
+
+    /**
+     * @return the query reading the columns from every row of the table, built once.
+     */
+    String selectFrom(String table) {
+        Select select = this.select;
+        if (select == null || !select.table().equals(table)) {
+            select = new Select(table, "SELECT " + String.join(", ", columns) + " FROM " + table);
+            this.select = select;
+        }
+        return select.sql();
+    }
+
+    R map(ResultSet rs) throws SQLException {
+        return mapper.map(rs);
+    }
+}
@@ -0,0 +1,23 @@
+package com.ruquet.peopledb.repository;
+
+import com.ruquet.peopledb.model.CrudOperation;
+
+/**
+ * Told about every operation a repository runs against the database. Called on the thread that ran it,
+ * so implementations must be thread safe and quick. {@link #NONE}, the default, does nothing.
+ * See {@link RepositoryMetrics} for one that aggregates them.
+ */
+public interface RepositoryListener {
+    RepositoryListener NONE = new RepositoryListener() {
+    };
+
+    /**
+     * @param rowsAffected rows inserted, updated or deleted.
+     * @param rowsMapped   entities read from the result set.
+     */
+    default void onOperation(CrudOperation operation, long nanos, long rowsAffected, long rowsMapped) {
+    }
+
+    default void onError(CrudOperation operation, long nanos, Throwable error) {
+    }
+}
@@ -0,0 +1,102 @@
+package com.ruquet.peopledb.repository;
+
+import com.ruquet.peopledb.model.CrudOperation;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link RepositoryListener} counting calls, errors, rows and latency per {@link CrudOperation}.
+ * Recording is lock free, read it with {@link #snapshot()} or export it with {@link JmxMetricsExporter}.
+ * One instance can be shared by several repositories to aggregate them.
+ */
+public class RepositoryMetrics implements RepositoryListener {
+    private static final int BUCKETS = Long.SIZE;
+
+    private static final class Recorder {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder rowsAffected = new LongAdder();
+        private final LongAdder rowsMapped = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        /**
+         * Bucket b counts the latencies of b bits, so up to 2^b - 1 nanoseconds. Non-negative longs have at most 63.
+         */
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+        private void time(long nanos) {
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+            histogram.incrementAndGet(BUCKETS - Long.numberOfLeadingZeros(Math.max(nanos, 0)));
+        }
+
+        private Duration percentile(long[] buckets, long total, double percentile) {
+            long rank = (long) Math.ceil(total * percentile);
+            long seen = 0;
+            for (int b = 0; b < buckets.length; b++) {
+                seen += buckets[b];
+                if (seen >= rank && seen > 0) {
+                    return Duration.ofNanos((1L << b) - 1);
+                }
+            }
+            return Duration.ZERO;
+        }
+
+        private OperationStats snapshot(CrudOperation operation) {
+            long[] buckets = new long[BUCKETS];
+            long total = 0;
+            for (int b = 0; b < BUCKETS; b++) {
+                buckets[b] = histogram.get(b);
+                total += buckets[b];
+            }
+            return new OperationStats(operation, count.sum(), errors.sum(), rowsAffected.sum(), rowsMapped.sum(),
+                    Duration.ofNanos(totalNanos.sum()), Duration.ofNanos(maxNanos.get()),
+                    percentile(buckets, total, 0.50), percentile(buckets, total, 0.95), percentile(buckets, total, 0.99));
+        }
+    }
+
+    private final Map<CrudOperation, Recorder> recorders = new EnumMap<>(CrudOperation.class);
+
+    public RepositoryMetrics() {
+        for (CrudOperation operation : CrudOperation.values()) {
+            recorders.put(operation, new Recorder());
+        }
+    }
+
+    @Override
+    public void onOperation(CrudOperation operation, long nanos, long rowsAffected, long rowsMapped) {
+        Recorder recorder = recorders.get(operation);
+        recorder.count.increment();
+        recorder.rowsAffected.add(rowsAffected);
+        recorder.rowsMapped.add(rowsMapped);
+        recorder.time(nanos);
+    }
+
+    @Override
+    public void onError(CrudOperation operation, long nanos, Throwable error) {
+        Recorder recorder = recorders.get(operation);
+        recorder.errors.increment();
+        recorder.time(nanos);
+    }
+
+    public OperationStats snapshot(CrudOperation operation) {
+        return recorders.get(operation).snapshot(operation);
+    }
+
+    /**
+     * @return the stats of every operation, including the ones that never ran.
+     */
+    public Map<CrudOperation, OperationStats> snapshot() {
+        Map<CrudOperation, OperationStats> snapshot = new EnumMap<>(CrudOperation.class);
+        for (CrudOperation operation : CrudOperation.values()) {
+            snapshot.put(operation, snapshot(operation));
+        }
+        return Collections.unmodifiableMap(snapshot);
+    }
+}
@@ -0,0 +1,200 @@
+package com.ruquet.peopledb.repository;
+
+import com.ruquet.peopledb.model.CrudOperation;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Creates and migrates the PEOPLE and ADDRESSES tables, with their foreign keys and the indexes the repository
+ * queries need. Applied versions are recorded in SCHEMA_VERSION, so {@link #migrate()} only runs the new ones.
+ * Every version only creates what's missing, so it can run on databases created before the schema was managed.
+ * <p>
+ * {@link #verify()} runs H2's EXPLAIN on every registered statement and fails when one of them scans a whole table,
+ * except the statements registered as full scans. The SQL of the repositories is registered from the start.
+ */
+public class SchemaManager {
+    private static final List<List<String>> MIGRATIONS = List.of(
+            List.of("""
+                            CREATE TABLE IF NOT EXISTS ADDRESSES (ID BIGINT AUTO_INCREMENT PRIMARY KEY, STREET_ADDRESS VARCHAR(255), ADDRESS2 VARCHAR(255),
+                            CITY VARCHAR(255), STATE VARCHAR(255), POSTCODE VARCHAR(255), COUNTY VARCHAR(255), REGION VARCHAR(255), COUNTRY VARCHAR(255))
+                            """,
+                    """
+                            CREATE TABLE IF NOT EXISTS PEOPLE (ID BIGINT AUTO_INCREMENT PRIMARY KEY, FIRST_NAME VARCHAR(255), LAST_NAME VARCHAR(255),
+                            DOB TIMESTAMP, SALARY DECIMAL(15,2), EMAIL VARCHAR(255), HOME_ADDRESS BIGINT, BIZ_ADDRESS BIGINT, SPOUSE BIGINT, PARENT_ID BIGINT)
+                            """,
+                    "ALTER TABLE PEOPLE ADD CONSTRAINT IF NOT EXISTS PEOPLE_HOME_ADDRESS_FK FOREIGN KEY (HOME_ADDRESS) REFERENCES ADDRESSES (ID) ON DELETE SET NULL",
+                    "ALTER TABLE PEOPLE ADD CONSTRAINT IF NOT EXISTS PEOPLE_BIZ_ADDRESS_FK FOREIGN KEY (BIZ_ADDRESS) REFERENCES ADDRESSES (ID) ON DELETE SET NULL",
+                    "ALTER TABLE PEOPLE ADD CONSTRAINT IF NOT EXISTS PEOPLE_SPOUSE_FK FOREIGN KEY (SPOUSE) REFERENCES PEOPLE (ID) ON DELETE SET NULL",
+                    "ALTER TABLE PEOPLE ADD CONSTRAINT IF NOT EXISTS PEOPLE_PARENT_ID_FK FOREIGN KEY (PARENT_ID) REFERENCES PEOPLE (ID) ON DELETE SET NULL",
+                    // the children join, and nulling the parent of deleted people
+                    "CREATE INDEX IF NOT EXISTS PEOPLE_PARENT_ID ON PEOPLE (PARENT_ID)",
+                    // nulling the spouse of deleted people
+                    "CREATE INDEX IF NOT EXISTS PEOPLE_SPOUSE ON PEOPLE (SPOUSE)",
+                    // nulling the addresses of people when addresses are deleted
+                    "CREATE INDEX IF NOT EXISTS PEOPLE_HOME_ADDRESS ON PEOPLE (HOME_ADDRESS)",
+                    "CREATE INDEX IF NOT EXISTS PEOPLE_BIZ_ADDRESS ON PEOPLE (BIZ_ADDRESS)"),
+            // content hashes of the addresses saved with deduplication, null for the others so duplicates saved
+            // before don't break the unique index
+            List.of("ALTER TABLE ADDRESSES ADD COLUMN IF NOT EXISTS CONTENT_HASH BINARY(32)",
+                    "CREATE UNIQUE INDEX IF NOT EXISTS ADDRESSES_CONTENT_HASH ON ADDRESSES (CONTENT_HASH)"));
+    /**
+     * Operations that read every row by design.
+     */
+    private static final Set<CrudOperation> FULL_SCANS = Set.of(CrudOperation.FIND_ALL, CrudOperation.STREAM_ALL, CrudOperation.COUNT);
+
+    private final Connection connection;
+    private final Map<String, Boolean> statements = new LinkedHashMap<>();
+
+    /**
+     * @param connection left open, it belongs to the caller.
+     */
+    public SchemaManager(Connection connection) {
+        this.connection = connection;
+        register(PeopleRepository.class);
+        register(AdressesRepository.class);
+        PeopleRepository.DELETE_CASCADE_SQL.forEach(this::register);
+        register(PeopleRepository.UPDATE_LINKS_SQL);
+        register(AdressesRepository.FIND_BY_CONTENT_HASH_SQL);
+        AdressesRepository.COMPACTION_SQL.forEach(this::register);
+        registerFullScan(AdressesRepository.COMPACTION_SCAN_SQL);
+    }
+
+    /**
+     * @throws IllegalStateException when the repository has no {@link com.ruquet.peopledb.anotation.SQL} annotation,
+     * {@link #verify()} would otherwise pass without checking any of its statements.
+     */
+    private void register(Class<?> repositoryType) {
+        Map<CrudOperation, String> sql = SqlCatalog.annotated(repositoryType);
+        if (sql.isEmpty()) {
+            throw new IllegalStateException("No SQL found for " + repositoryType.getSimpleName());
+        }
+        sql.forEach((operation, statement) -> {
+            if (FULL_SCANS.contains(operation)) {
+                registerFullScan(statement);
+            } else {
+                register(statement);
+            }
+        });
+    }
+
+    /**
+     * Adds a statement {@link #verify()} checks, an '(:ids)' parameter is checked as a single id.
+     */
+    public SchemaManager register(String sql) {
+        statements.putIfAbsent(sql, false);
+        return this;
+    }
+
+    /**
+     * Adds a statement that is expected to read a whole table, it's only checked to be valid.
+     */
+    public SchemaManager registerFullScan(String sql) {
+        statements.put(sql, true);
+        return this;
+    }
+
+    /**
+     * Applies the versions the database doesn't have yet. H2 commits each DDL statement on its own, so a version
+     * failing midway isn't undone, only its SCHEMA_VERSION row is: the statements of every version are idempotent,
+     * the next migrate() runs the whole version again and skips what it already created.
+     * @return the schema version.
+     */
+    public int migrate() throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS SCHEMA_VERSION (VERSION INT PRIMARY KEY, APPLIED_AT TIMESTAMP DEFAULT CURRENT_TIMESTAMP)");
+        }
+        int version = getVersion();
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            for (int next = version + 1; next <= MIGRATIONS.size(); next++) {
+                try (Statement stmt = connection.createStatement()) {
+                    for (String ddl : MIGRATIONS.get(next - 1)) {
+                        stmt.execute(ddl);
+                    }
+                    stmt.execute("INSERT INTO SCHEMA_VERSION (VERSION) VALUES (" + next + ")");
+                }
+                connection.commit();
+                version = next;
+            }
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+        return version;
+    }
+
+    /**
+     * @return the last version applied, 0 when the schema was never migrated.
+     */
+    public int getVersion() throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(VERSION), 0) FROM SCHEMA_VERSION")) {
+            rs.next();
+            return rs.getInt(1);
+        } catch (SQLException e) {
+            if (connection.getMetaData().getTables(null, null, "SCHEMA_VERSION", null).next()) {
+                throw e;
+            }
+            return 0;
+        }
+    }
+
+    public static int getLatestVersion() {
+        return MIGRATIONS.size();
+    }
+
+    /**
+     * @return the plan H2 chose for every registered statement.
+     */
+    public Map<String, String> explain() throws SQLException {
+        Map<String, String> plans = new LinkedHashMap<>();
+        for (String sql : statements.keySet()) {
+            plans.put(sql, explain(sql));
+        }
+        return plans;
+    }
+
+    /**
+     * @throws IllegalStateException listing the plans of the statements that scan a whole table.
+     */
+    public void verify() throws SQLException {
+        List<String> scans = new ArrayList<>();
+        for (Map.Entry<String, Boolean> statement : statements.entrySet()) {
+            String plan = explain(statement.getKey());
+            if (!statement.getValue() && plan.contains(".tableScan")) {
+                scans.add(plan);
+            }
+        }
+        if (!scans.isEmpty()) {
+            throw new IllegalStateException(scans.size() + " statements scan a whole table:\n" + String.join("\n\n", scans));
+        }
+    }
+
+    private String explain(String sql) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement("EXPLAIN " + sql.replace(":ids", "?"))) {
+            int parameters = ps.getParameterMetaData().getParameterCount();
+            for (int param = 1; param <= parameters; param++) {
+                ps.setObject(param, 1);
+            }
+            StringBuilder plan = new StringBuilder();
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    plan.append(rs.getString(1));
+                }
+            }
+            return plan.toString();
+        }
+    }
+}
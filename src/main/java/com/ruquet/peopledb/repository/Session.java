@@ -0,0 +1,36 @@
+package com.ruquet.peopledb.repository;
+
+import java.sql.Connection;
+
+/**
+ * A connection borrowed from a {@link ConnectionSource} for one repository operation,
+ * together with the prepared statements cached for that connection. Closing it gives the connection back.
+ */
+final class Session implements AutoCloseable {
+    private final Connection connection;
+    private final StatementCache statements;
+    private final Runnable onClose;
+    private boolean closed;
+
+    Session(Connection connection, StatementCache statements, Runnable onClose) {
+        this.connection = connection;
+        this.statements = statements;
+        this.onClose = onClose;
+    }
+
+    Connection connection() {
+        return connection;
+    }
+
+    StatementCache statements() {
+        return statements;
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            onClose.run();
+        }
+    }
+}
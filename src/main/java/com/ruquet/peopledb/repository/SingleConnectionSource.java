@@ -0,0 +1,56 @@
+package com.ruquet.peopledb.repository;
+
+import java.sql.Connection;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Runs every operation on one caller-owned connection. Operations are serialized with a lock so the repository
+ * can still be shared between threads, while the caller keeps control of commits and rollbacks.
+ * Streams don't hold the lock while they're open.
+ */
+final class SingleConnectionSource extends ConnectionSource {
+    private final Connection connection;
+    private final StatementCache statements;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    SingleConnectionSource(Connection connection, int statementCacheSize) {
+        this.connection = connection;
+        this.statements = new StatementCache(connection, statementCacheSize);
+    }
+
+    @Override
+    Session open() {
+        lock.lock();
+        return new Session(connection, statements, lock::unlock);
+    }
+
+    @Override
+    Session openDedicated() {
+        return new Session(connection, statements, () -> {});
+    }
+
+    @Override
+    long getStatementCacheHits() {
+        return statements.getHits();
+    }
+
+    @Override
+    long getStatementCacheMisses() {
+        return statements.getMisses();
+    }
+
+    @Override
+    long getStatementCacheEvictions() {
+        return statements.getEvictions();
+    }
+
+    @Override
+    void release() {
+        lock.lock();
+        try {
+            statements.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.ruquet.peopledb.repository;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The column values of the entities last read or written, by object, so {@code update} can tell what changed
+ * on that very object. Another object with the same id, i.e. read by another repository, has its own snapshot
+ * or none. Entities are held weakly, and the store is bounded, the least recently used snapshot is dropped first.
+ * An entity without snapshot is fully updated.
+ */
+final class SnapshotStore {
+
+    /**
+     * Compares entities by identity, {@code equals} of the entities is never called.
+     */
+    private static final class Key extends WeakReference<Object> {
+        private final int hash;
+
+        Key(Object entity, ReferenceQueue<Object> queue) {
+            super(entity, queue);
+            this.hash = System.identityHashCode(entity);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (other == this) {
+                return true;
+            }
+            Object entity = get();
+            return entity != null && other instanceof Key key && key.get() == entity;
+        }
+    }
+
+    private final LinkedHashMap<Key, Object[]> snapshots;
+    private final ReferenceQueue<Object> collected = new ReferenceQueue<>();
+
+    SnapshotStore(int capacity) {
+        this.snapshots = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Object[]> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    synchronized Object[] get(Object entity) {
+        expunge();
+        return snapshots.get(new Key(entity, null));
+    }
+
+    synchronized void put(Object entity, Object[] values) {
+        expunge();
+        snapshots.put(new Key(entity, collected), values);
+    }
+
+    synchronized void remove(Object entity) {
+        snapshots.remove(new Key(entity, null));
+    }
+
+    synchronized int size() {
+        expunge();
+        return snapshots.size();
+    }
+
+    private void expunge() {
+        Object key;
+        while ((key = collected.poll()) != null) {
+            snapshots.remove(key);
+        }
+    }
+}
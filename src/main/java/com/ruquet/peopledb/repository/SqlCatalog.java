@@ -0,0 +1,73 @@
+package com.ruquet.peopledb.repository;
+
+import com.ruquet.peopledb.anotation.SQL;
+import com.ruquet.peopledb.model.CrudOperation;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * The SQL of every {@link CrudOperation} of a repository class, taken from its {@link SQL} annotations
+ * or, for operations without one, from the repository's SQL getters. Resolved once per repository class.
+ * The annotations are read from {@code GeneratedMetadata} when the repository was compiled with the metadata
+ * processor, by reflection otherwise.
+ */
+final class SqlCatalog {
+    private static final Map<Class<?>, SqlCatalog> CATALOGS = new ConcurrentHashMap<>();
+
+    private final Class<?> repositoryType;
+    private final Map<CrudOperation, String> sqlByOperation;
+
+    static SqlCatalog of(Class<?> repositoryType, Map<CrudOperation, Supplier<String>> sqlGetters) {
+        return CATALOGS.computeIfAbsent(repositoryType, type -> new SqlCatalog(type, sqlGetters));
+    }
+
+    private SqlCatalog(Class<?> repositoryType, Map<CrudOperation, Supplier<String>> sqlGetters) {
+        this.repositoryType = repositoryType;
+        Map<CrudOperation, String> sql = annotated(repositoryType);
+        for (Map.Entry<CrudOperation, Supplier<String>> getter : sqlGetters.entrySet()) {
+            if (!sql.containsKey(getter.getKey())) {
+                try {
+                    sql.put(getter.getKey(), getter.getValue().get());
+                } catch (RuntimeException e) {
+                    // the repository doesn't support this operation, it fails when it's used
+                }
+            }
+        }
+        this.sqlByOperation = Collections.unmodifiableMap(sql);
+    }
+
+    /**
+     * @return the SQL of the {@link SQL} annotations of a repository class, without the SQL getters.
+     */
+    static Map<CrudOperation, String> annotated(Class<?> repositoryType) {
+        Map<CrudOperation, String> sql = new EnumMap<>(CrudOperation.class);
+        Map<CrudOperation, String> generated = GeneratedMetadata.sql(repositoryType);
+        if (generated != null) {
+            sql.putAll(generated);
+        } else {
+            for (Method method : repositoryType.getDeclaredMethods()) {
+                for (SQL annotation : method.getAnnotationsByType(SQL.class)) {
+                    sql.putIfAbsent(annotation.operationType(), annotation.value());
+                }
+            }
+        }
+        return sql;
+    }
+
+    String get(CrudOperation operation) {
+        String sql = sqlByOperation.get(operation);
+        if (sql == null) {
+            throw new RuntimeException("Can't find sql input for " + operation + " in " + repositoryType.getSimpleName());
+        }
+        return sql;
+    }
+
+    boolean has(CrudOperation operation) {
+        return sqlByOperation.containsKey(operation);
+    }
+}
@@ -0,0 +1,106 @@
+package com.ruquet.peopledb.repository;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Prepared statements of one connection, kept by SQL so each statement is parsed once.
+ * Holds at most {@code capacity} statements and closes the least recently used one when it's full.
+ */
+final class StatementCache implements AutoCloseable {
+    private record Key(String sql, int resultSetType, boolean returnGeneratedKeys) {
+    }
+
+    private final Connection connection;
+    private final LinkedHashMap<Key, PreparedStatement> statements;
+    // read by the statistics getters from other threads than the one using the connection
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    StatementCache(Connection connection, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Statement cache capacity must be greater than 0");
+        }
+        this.connection = connection;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, PreparedStatement> eldest) {
+                if (size() <= capacity) {
+                    return false;
+                }
+                evictions.increment();
+                closeQuietly(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    PreparedStatement prepare(String sql) throws SQLException {
+        return prepare(new Key(sql, ResultSet.TYPE_FORWARD_ONLY, false));
+    }
+
+    PreparedStatement prepare(String sql, int resultSetType) throws SQLException {
+        return prepare(new Key(sql, resultSetType, false));
+    }
+
+    PreparedStatement prepareReturningKeys(String sql) throws SQLException {
+        return prepare(new Key(sql, ResultSet.TYPE_FORWARD_ONLY, true));
+    }
+
+    private PreparedStatement prepare(Key key) throws SQLException {
+        PreparedStatement ps = statements.get(key);
+        if (ps != null && !ps.isClosed()) {
+            hits.increment();
+            ps.clearParameters();
+            return ps;
+        }
+        misses.increment();
+        if (key.returnGeneratedKeys()) {
+            ps = connection.prepareStatement(key.sql(), Statement.RETURN_GENERATED_KEYS);
+        } else {
+            ps = connection.prepareStatement(key.sql(), key.resultSetType(), ResultSet.CONCUR_READ_ONLY);
+        }
+        statements.put(key, ps);
+        return ps;
+    }
+
+    long getHits() {
+        return hits.sum();
+    }
+
+    long getMisses() {
+        return misses.sum();
+    }
+
+    long getEvictions() {
+        return evictions.sum();
+    }
+
+    int size() {
+        return statements.size();
+    }
+
+    @Override
+    public void close() {
+        statements.values().forEach(StatementCache::closeQuietly);
+        statements.clear();
+    }
+
+    static void closeQuietly(Statement statement) {
+        if (statement == null) {
+            return;
+        }
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            // nothing else can be done with a statement that fails to close
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.ruquet.peopledb.repository;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+
+/**
+ * Makes the statements of one write run atomically on a session's connection. A connection in auto-commit, like the
+ * pooled ones, gets a transaction of its own, committed at the end. A connection already in a transaction of the
+ * caller gets a savepoint instead: a failure undoes only what the write did and the caller's transaction goes on,
+ * still theirs to commit or roll back.
+ */
+final class UnitOfWork {
+    private final Connection connection;
+    /**
+     * null when the unit of work owns the transaction.
+     */
+    private final Savepoint savepoint;
+
+    private UnitOfWork(Connection connection, Savepoint savepoint) {
+        this.connection = connection;
+        this.savepoint = savepoint;
+    }
+
+    static UnitOfWork begin(Connection connection) throws SQLException {
+        if (connection.getAutoCommit()) {
+            connection.setAutoCommit(false);
+            return new UnitOfWork(connection, null);
+        }
+        return new UnitOfWork(connection, connection.setSavepoint());
+    }
+
+    void commit() throws SQLException {
+        if (savepoint == null) {
+            connection.commit();
+            connection.setAutoCommit(true);
+        } else {
+            connection.releaseSavepoint(savepoint);
+        }
+    }
+
+    /**
+     * Never throws, so the failure that caused the rollback is the one reported.
+     */
+    void rollback() {
+        try {
+            if (savepoint == null) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            } else {
+                connection.rollback(savepoint);
+            }
+        } catch (SQLException e) {
+            // the connection is broken, the original failure says more
+        }
+    }
+}
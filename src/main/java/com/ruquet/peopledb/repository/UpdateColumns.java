@@ -0,0 +1,109 @@
+package com.ruquet.peopledb.repository;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * The columns {@code update} writes for an entity, with the value each one binds. Changed columns are
+ * tracked as a bit mask, and the "UPDATE ... SET ... WHERE id=?" of every mask is built once.
+ */
+final class UpdateColumns<T> {
+    private record Column<T>(String name, Function<T, Object> value) {
+    }
+
+    private final String table;
+    private final String idColumn;
+    private final List<Column<T>> columns = new ArrayList<>();
+    private final Map<Long, String> sqlByMask = new ConcurrentHashMap<>();
+
+    private UpdateColumns(String table, String idColumn) {
+        this.table = table;
+        this.idColumn = idColumn;
+    }
+
+    static <T> UpdateColumns<T> of(String table, String idColumn) {
+        return new UpdateColumns<>(table, idColumn);
+    }
+
+    /**
+     * @param value the value as it's bound, i.e. a {@code Timestamp} rather than a {@code ZonedDateTime},
+     *              so values read back compare equal to the ones written.
+     */
+    UpdateColumns<T> column(String name, Function<T, Object> value) {
+        if (columns.size() == Long.SIZE) {
+            throw new IllegalStateException("At most " + Long.SIZE + " columns can be updated");
+        }
+        columns.add(new Column<>(name, value));
+        return this;
+    }
+
+    int size() {
+        return columns.size();
+    }
+
+    long allColumns() {
+        return columns.size() == Long.SIZE ? -1L : (1L << columns.size()) - 1;
+    }
+
+    Object[] values(T entity) {
+        Object[] values = new Object[columns.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = columns.get(i).value().apply(entity);
+        }
+        return values;
+    }
+
+    /**
+     * @return the mask of the columns whose value differs between the two snapshots.
+     */
+    long changed(Object[] before, Object[] after) {
+        long mask = 0;
+        for (int i = 0; i < after.length; i++) {
+            if (!sameValue(before[i], after[i])) {
+                mask |= 1L << i;
+            }
+        }
+        return mask;
+    }
+
+    private static boolean sameValue(Object a, Object b) {
+        if (a instanceof BigDecimal x && b instanceof BigDecimal y) {
+            return x.compareTo(y) == 0;
+        }
+        return Objects.equals(a, b);
+    }
+
+    String sql(long mask) {
+        return sqlByMask.computeIfAbsent(mask, m -> {
+            StringBuilder sql = new StringBuilder("UPDATE ").append(table).append(" SET ");
+            String separator = "";
+            for (int i = 0; i < columns.size(); i++) {
+                if ((m & (1L << i)) != 0) {
+                    sql.append(separator).append(columns.get(i).name()).append("=?");
+                    separator = ", ";
+                }
+            }
+            return sql.append(" WHERE ").append(idColumn).append("=?").toString();
+        });
+    }
+
+    /**
+     * Binds the values of the columns in the mask, in order, followed by the id.
+     */
+    void bind(PreparedStatement ps, long mask, Object[] values, Long id) throws SQLException {
+        int param = 1;
+        for (int i = 0; i < values.length; i++) {
+            if ((mask & (1L << i)) != 0) {
+                ps.setObject(param++, values[i]);
+            }
+        }
+        ps.setLong(param, id);
+    }
+}
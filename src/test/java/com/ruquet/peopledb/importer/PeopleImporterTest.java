@@ -0,0 +1,143 @@
+package com.ruquet.peopledb.importer;
+
+import com.ruquet.peopledb.com.ruquet.peopledb.exceptions.UnableToImport;
+import com.ruquet.peopledb.repository.PeopleRepository;
+import com.ruquet.peopledb.repository.SchemaManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PeopleImporterTest {
+    private static final String URL = "jdbc:h2:mem:importtest;DB_CLOSE_DELAY=-1";
+    private static final ColumnMapping MAPPING = new ColumnMapping()
+            .delimiter(";")
+            .map(CsvColumn.FIRST_NAME, 0)
+            .map(CsvColumn.LAST_NAME, 1)
+            .map(CsvColumn.DOB_DATE, 2)
+            .map(CsvColumn.SALARY, 3);
+
+    @TempDir
+    Path dir;
+    private Connection connection;
+    private final List<Connection> writers = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        connection = DriverManager.getConnection(URL);
+        new SchemaManager(connection).migrate();
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        for (Connection writer : writers) {
+            writer.close();
+        }
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        }
+        connection.close();
+    }
+
+    @Test
+    public void importsEveryRowAndCountsTheRejectedOnes() throws Exception {
+        List<String> lines = people(200);
+        lines.set(50, "Bad;Date;not a date;1000");
+        lines.set(150, "Missing;Columns");
+        PeopleImporter importer = new PeopleImporter(MAPPING, writer(), writer());
+        importer.setParseWorkers(2);
+        importer.setQueueCapacity(1);
+        importer.setBatchSize(7);
+        importer.setCommitInterval(20);
+
+        ImportProgress progress = importer.importFile(csv(lines));
+
+        assertThat(progress.isFinished()).isTrue();
+        assertThat(progress.getLinesRead()).isEqualTo(200);
+        assertThat(progress.getRowsImported()).isEqualTo(198);
+        assertThat(progress.getRowsRejected()).isEqualTo(2);
+        assertThat(count()).isEqualTo(198);
+    }
+
+    @Test
+    public void keepsTheCommittedRowsWhenAWriteFails() throws Exception {
+        List<String> lines = people(1000);
+        lines.set(12, "x".repeat(300) + ";Ruquet;6/22/1996;1000");
+        PeopleImporter importer = new PeopleImporter(MAPPING, writer());
+        importer.setParseWorkers(1);
+        importer.setQueueCapacity(1);
+        importer.setBatchSize(5);
+        importer.setCommitInterval(5);
+
+        assertThatThrownBy(() -> importer.importFile(csv(lines)))
+                .isInstanceOf(UnableToImport.class)
+                .hasCauseInstanceOf(RuntimeException.class);
+
+        ImportProgress progress = importer.getProgress();
+        assertThat(progress.isFinished()).isTrue();
+        assertThat(progress.getRowsImported()).isEqualTo(10);
+        assertThat(progress.getLinesRead()).isLessThan(1000);
+        assertThat(count()).isEqualTo(10);
+    }
+
+    @Test
+    public void aFailedWriterStopsTheOthersAndTheirRowsAreRolledBack() throws Exception {
+        List<String> lines = people(5000);
+        lines.set(12, "x".repeat(300) + ";Ruquet;6/22/1996;1000");
+        PeopleImporter importer = new PeopleImporter(MAPPING, writer(), writer(), writer());
+        importer.setParseWorkers(2);
+        importer.setQueueCapacity(1);
+        importer.setBatchSize(5);
+        importer.setCommitInterval(10_000);
+
+        assertThatThrownBy(() -> importer.importFile(csv(lines))).isInstanceOf(UnableToImport.class);
+
+        ImportProgress progress = importer.getProgress();
+        assertThat(progress.getRowsImported()).isZero();
+        assertThat(progress.getLinesRead()).isLessThan(5000);
+        assertThat(count()).isZero();
+        for (Connection writer : writers) {
+            assertThat(writer.getAutoCommit()).isTrue();
+        }
+    }
+
+    private Connection writer() throws SQLException {
+        Connection writer = DriverManager.getConnection(URL);
+        writers.add(writer);
+        return writer;
+    }
+
+    private Path csv(List<String> lines) throws IOException {
+        List<String> file = new ArrayList<>();
+        file.add("first;last;dob;salary");
+        file.addAll(lines);
+        return Files.write(dir.resolve("people.csv"), file);
+    }
+
+    private static List<String> people(int count) {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            lines.add("Person" + i + ";Ruquet;6/22/1996;" + (1000 + i));
+        }
+        return lines;
+    }
+
+    private long count() throws SQLException {
+        try (PeopleRepository repository = new PeopleRepository(connection)) {
+            return repository.getCount();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.ruquet.peopledb.importer;
+
+import com.ruquet.peopledb.model.Person;
+import com.ruquet.peopledb.model.Region;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PersonCsvParserTest {
+
+    @Test
+    public void canParseHr5mLine() {
+        String line = "677509,Drs.,Lois,M,Walker,F,lois.walker@hotmail.com,Donald Walker,Helen Walker,Lewis,3/29/1981,01:36:25 AM,36.36,60,11/24/2003,Q4,H2,2003,11,November,Nov,24,Monday,Mon,13.68,168251,21%,467-99-4677,303-572-8492,Denver,Denver,Denver,CO,80224,West,lmwalker,DCa}.T}X:v?NP";
+        Person person = new PersonCsvParser(ColumnMapping.hr5m()).parse(line);
+        assertThat(person.getFirstName()).isEqualTo("Lois");
+        assertThat(person.getLastName()).isEqualTo("Walker");
+        assertThat(person.getEmail()).isEqualTo("lois.walker@hotmail.com");
+        assertThat(person.getSalary()).isEqualTo(new BigDecimal("168251"));
+        assertThat(person.getDob()).isEqualTo(ZonedDateTime.of(1981, 3, 29, 1, 36, 25, 0, ZoneId.of("+0")));
+        assertThat(person.getHomeAddress().get().state()).isEqualTo("CO");
+        assertThat(person.getHomeAddress().get().region()).isEqualTo(Region.WEST);
+    }
+
+    @Test
+    public void canParseWithCustomMapping() {
+        ColumnMapping mapping = new ColumnMapping()
+                .delimiter(";")
+                .map(CsvColumn.FIRST_NAME, 0)
+                .map(CsvColumn.LAST_NAME, 1)
+                .map(CsvColumn.DOB_DATE, 2);
+        Person person = new PersonCsvParser(mapping).parse("Ivan;Ruquet;6/22/1996");
+        assertThat(person.getFirstName()).isEqualTo("Ivan");
+        assertThat(person.getDob().getYear()).isEqualTo(1996);
+        assertThat(person.getHomeAddress()).isEmpty();
+    }
+
+    @Test
+    public void rejectsLineWithMissingColumns() {
+        assertThatThrownBy(() -> new PersonCsvParser(ColumnMapping.hr5m()).parse("1,Mr.,Ivan"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,176 @@
+package com.ruquet.peopledb.repository;
+
+import com.ruquet.peopledb.com.ruquet.peopledb.exceptions.UnableToSave;
+import com.ruquet.peopledb.model.Address;
+import com.ruquet.peopledb.model.CrudOperation;
+import com.ruquet.peopledb.model.Person;
+import com.ruquet.peopledb.model.Region;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AddressDeduplicationTest {
+
+    private Connection connection;
+    private AdressesRepository addresses;
+    private PeopleRepository people;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:deduptest;DB_CLOSE_DELAY=-1");
+        new SchemaManager(connection).migrate();
+        addresses = new AdressesRepository(connection);
+        people = new PeopleRepository(connection);
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        people.close();
+        addresses.close();
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        }
+        connection.close();
+    }
+
+    @Test
+    public void savesEachContentOnce() {
+        addresses.enableDeduplication(100);
+        List<Address> saved = addresses.saveAll(List.of(address("Ituzaingo"), address("Moron"), address("Ituzaingo")));
+        assertThat(saved.get(0).id()).isEqualTo(saved.get(2).id());
+        assertThat(saved.get(1).id()).isNotEqualTo(saved.get(0).id());
+        assertThat(addresses.save(address("Moron")).id()).isEqualTo(saved.get(1).id());
+        assertThat(addresses.getCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void reusesIndexedContentWithoutALookup() {
+        RepositoryMetrics metrics = new RepositoryMetrics();
+        addresses.setListener(metrics);
+        addresses.enableDeduplication(100);
+        Address saved = addresses.save(address("Ituzaingo"));
+        assertThat(addresses.save(address("Ituzaingo")).id()).isEqualTo(saved.id());
+        assertThat(metrics.snapshot(CrudOperation.FIND_ALL_BY_ID).count()).isEqualTo(1);
+    }
+
+    @Test
+    public void findsContentTheIndexMisses() throws SQLException {
+        addresses.enableDeduplication(1);
+        Address ituzaingo = addresses.save(address("Ituzaingo"));
+        addresses.save(address("Moron"));
+        try (AdressesRepository other = new AdressesRepository(connection)) {
+            other.enableDeduplication(100);
+            assertThat(other.save(address("Ituzaingo")).id()).isEqualTo(ituzaingo.id());
+        }
+        assertThat(addresses.save(address("Ituzaingo")).id()).isEqualTo(ituzaingo.id());
+        assertThat(addresses.getCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void deletedAddressesAreNotReused() {
+        addresses.enableDeduplication(100);
+        Address saved = addresses.save(address("Ituzaingo"));
+        addresses.delete(saved);
+        Address again = addresses.save(address("Ituzaingo"));
+        assertThat(again.id()).isNotEqualTo(saved.id());
+        assertThat(addresses.findById(again.id())).isPresent();
+    }
+
+    @Test
+    public void addressesRolledBackAreNotReused() throws SQLException {
+        addresses.enableDeduplication(100);
+        connection.setAutoCommit(false);
+        addresses.save(address("Ituzaingo"));
+        connection.rollback();
+        connection.setAutoCommit(true);
+
+        Address saved = addresses.save(address("Ituzaingo"));
+        assertThat(addresses.findById(saved.id())).isPresent();
+        assertThat(addresses.getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void addressesOfAGraphRolledBackAreNotReused() {
+        people.enableAddressDeduplication(100);
+        Person parent = person("Ivan", "Ituzaingo", "Moron");
+        parent.addChild(new Person(null, "x".repeat(300), "Ruquet", parent.getDob(), new BigDecimal("1000")));
+        assertThatThrownBy(() -> people.save(parent)).isInstanceOf(UnableToSave.class);
+
+        Person saved = people.save(person("Carla", "Ituzaingo", "Moron"));
+        assertThat(addresses.findById(saved.getHomeAddress().orElseThrow().id())).isPresent();
+        assertThat(addresses.findById(saved.getBusinessAddress().orElseThrow().id())).isPresent();
+    }
+
+    @Test
+    public void compactionDropsTheIndexedDuplicates() {
+        people.save(person("Ivan", "Ituzaingo", "Moron"));
+        addresses.enableDeduplication(100);
+        Address duplicate = addresses.save(address("Moron"));
+        assertThat(addresses.compactDuplicates()).isEqualTo(1);
+
+        Address moron = addresses.save(address("Moron"));
+        assertThat(moron.id()).isNotEqualTo(duplicate.id());
+        assertThat(addresses.findById(moron.id())).isPresent();
+        assertThat(addresses.getCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void updatedAddressesAreNotReused() {
+        addresses.enableDeduplication(100);
+        Address saved = addresses.save(address("Ituzaingo"));
+        addresses.update(new Address(saved.id(), "Horacio Quiroga, 4864", null, "Castelar", "BA", "1714", "Provincia", Region.WEST, "Argentina"));
+        assertThat(addresses.save(address("Ituzaingo")).id()).isNotEqualTo(saved.id());
+        assertThat(addresses.save(address("Castelar")).id()).isNotEqualTo(saved.id());
+    }
+
+    @Test
+    public void peopleShareTheirAddresses() {
+        people.enableAddressDeduplication(100);
+        List<Person> saved = people.saveAll(List.of(person("Ivan", "Ituzaingo", "Moron"), person("Carla", "Ituzaingo", "Ituzaingo")));
+        Long home = saved.get(0).getHomeAddress().orElseThrow().id();
+        assertThat(saved.get(1).getHomeAddress().orElseThrow().id()).isEqualTo(home);
+        assertThat(saved.get(1).getBusinessAddress().orElseThrow().id()).isEqualTo(home);
+        assertThat(addresses.getCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void compactionMergesExistingDuplicates() {
+        List<Person> saved = people.saveAll(List.of(person("Ivan", "Ituzaingo", "Moron"), person("Carla", "Ituzaingo", "Ituzaingo")));
+        Long first = saved.get(0).getHomeAddress().orElseThrow().id();
+        assertThat(addresses.getCount()).isEqualTo(4);
+
+        assertThat(people.compactDuplicateAddresses()).isEqualTo(2);
+        assertThat(addresses.getCount()).isEqualTo(2);
+        Person carla = people.findById(saved.get(1).getId()).orElseThrow();
+        assertThat(carla.getHomeAddress().orElseThrow().id()).isEqualTo(first);
+        assertThat(carla.getBusinessAddress().orElseThrow().id()).isEqualTo(first);
+        assertThat(people.compactDuplicateAddresses()).isZero();
+
+        addresses.enableDeduplication(100);
+        assertThat(addresses.save(address("Ituzaingo")).id()).isEqualTo(first);
+        assertThat(addresses.getCount()).isEqualTo(2);
+    }
+
+    private static Address address(String city) {
+        return new Address(null, "Horacio Quiroga, 4864", null, city, "BA", "1714", "Provincia", Region.WEST, "Argentina");
+    }
+
+    private static Person person(String firstName, String homeCity, String businessCity) {
+        Person person = new Person(null, firstName, "Ruquet", ZonedDateTime.of(1990, 6, 22, 2, 22, 26, 0, ZoneId.of("-3")), new BigDecimal("1000"));
+        person.setHomeAddress(address(homeCity));
+        person.setBusinessAddress(address(businessCity));
+        return person;
+    }
+}
@@ -0,0 +1,112 @@
+package com.ruquet.peopledb.repository;
+
+import com.ruquet.peopledb.model.Person;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AsyncPeopleRepositoryTest {
+
+    private JdbcDataSource dataSource;
+    private ConnectionPool pool;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:asynctest;DB_CLOSE_DELAY=-1");
+        try (var connection = dataSource.getConnection(); Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS ADDRESSES (ID BIGINT AUTO_INCREMENT PRIMARY KEY, STREET_ADDRESS VARCHAR(255), ADDRESS2 VARCHAR(255), CITY VARCHAR(255), STATE VARCHAR(255), POSTCODE VARCHAR(255), COUNTY VARCHAR(255), REGION VARCHAR(255), COUNTRY VARCHAR(255))");
+            stmt.execute("CREATE TABLE IF NOT EXISTS PEOPLE (ID BIGINT AUTO_INCREMENT PRIMARY KEY, FIRST_NAME VARCHAR(255), LAST_NAME VARCHAR(255), DOB TIMESTAMP, SALARY DECIMAL(15,2), EMAIL VARCHAR(255), HOME_ADDRESS BIGINT, BIZ_ADDRESS BIGINT, SPOUSE BIGINT, PARENT_ID BIGINT)");
+        }
+        pool = new ConnectionPool(dataSource, new PoolSettings().minSize(1).maxSize(4));
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        pool.close();
+        try (var connection = dataSource.getConnection(); Statement stmt = connection.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        }
+    }
+
+    private static List<Person> people(int count) {
+        List<Person> people = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            people.add(new Person("Async" + i, "Ruquet", ZonedDateTime.of(1990, 1, 1, 0, 0, 0, 0, ZoneId.of("+0"))));
+        }
+        return people;
+    }
+
+    @Test
+    public void canSaveAndFindAsync() throws Exception {
+        try (AsyncPeopleRepository repo = new AsyncPeopleRepository(pool)) {
+            List<CompletableFuture<Person>> saves = people(50).stream().map(repo::saveAsync).toList();
+            CompletableFuture.allOf(saves.toArray(CompletableFuture[]::new)).get();
+            List<Long> ids = saves.stream().map(CompletableFuture::join).map(Person::getId).toList();
+            assertThat(repo.findAllByIdAsync(ids).get()).extracting(Person::getId).containsExactlyElementsOf(ids);
+            assertThat(repo.findByIdAsync(ids.get(0)).get()).isPresent();
+            assertThat(repo.saveAllAsync(people(10)).get()).hasSize(10);
+            assertThat(repo.countAsync().get()).isEqualTo(60);
+        }
+    }
+
+    @Test
+    public void operationsBeyondThePoolWaitInsteadOfTimingOut() throws Exception {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try (ConnectionPool small = new ConnectionPool(dataSource, new PoolSettings().maxSize(2).acquireTimeout(Duration.ofMillis(1)));
+             AsyncPeopleRepository repo = new AsyncPeopleRepository(small, executor)) {
+            List<CompletableFuture<List<Person>>> saves = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                saves.add(repo.saveAllAsync(people(200)));
+            }
+            CompletableFuture.allOf(saves.toArray(CompletableFuture[]::new)).get();
+            assertThat(repo.countAsync().get()).isEqualTo(4000);
+            assertThat(small.getMetrics().timeouts()).isZero();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void cancelledOperationsDontRun() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CountDownLatch release = new CountDownLatch(1);
+        try (AsyncPeopleRepository repo = new AsyncPeopleRepository(pool, executor)) {
+            executor.execute(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            CompletableFuture<List<Person>> cancelled = repo.saveAllAsync(people(10));
+            repo.setTimeout(Duration.ofMillis(50));
+            CompletableFuture<List<Person>> timedOut = repo.saveAllAsync(people(10));
+            cancelled.cancel(false);
+            assertThatThrownBy(timedOut::get).isInstanceOf(ExecutionException.class).hasCauseInstanceOf(TimeoutException.class);
+            release.countDown();
+            repo.setTimeout(null);
+            assertThat(repo.countAsync().get()).isZero();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
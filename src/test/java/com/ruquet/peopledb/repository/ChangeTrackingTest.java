@@ -0,0 +1,127 @@
+package com.ruquet.peopledb.repository;
+
+import com.ruquet.peopledb.model.Person;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChangeTrackingTest {
+
+    private Connection connection;
+    private PeopleRepository repo;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:trackingtest;DB_CLOSE_DELAY=-1");
+        new SchemaManager(connection).migrate();
+        repo = new PeopleRepository(connection);
+        repo.setChangeTrackingCapacity(100);
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        repo.close();
+        connection.setAutoCommit(true);
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        }
+        connection.close();
+    }
+
+    @Test
+    public void isOffByDefault() throws SQLException {
+        try (PeopleRepository untracked = new PeopleRepository(connection)) {
+            Person found = untracked.findById(repo.save(person("Ivan", "1000")).getId()).get();
+            untracked.update(found);
+            assertThat(untracked.getSkippedUpdates()).isZero();
+        }
+    }
+
+    @Test
+    public void updateWritesOnlyChangedColumns() throws SQLException {
+        Person savedPerson = repo.save(person("Ivan", "1000"));
+        try (var stmt = connection.createStatement()) {
+            stmt.executeUpdate("UPDATE PEOPLE SET FIRST_NAME='Changed elsewhere' WHERE ID=" + savedPerson.getId());
+        }
+        savedPerson.setSalary(new BigDecimal("73000.0"));
+        repo.update(savedPerson);
+        Person found = repo.findById(savedPerson.getId()).get();
+        assertThat(found.getFirstName()).isEqualTo("Changed elsewhere");
+        assertThat(found.getSalary()).isEqualByComparingTo("73000");
+    }
+
+    @Test
+    public void updateSkipsUnchangedEntities() {
+        Person savedPerson = repo.save(person("Ivan", "1000"));
+        Person found = repo.findById(savedPerson.getId()).get();
+        repo.update(found);
+        assertThat(repo.getSkippedUpdates()).isEqualTo(1);
+    }
+
+    @Test
+    public void canUpdateAll() {
+        List<Person> people = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            people.add(person("Salaried" + i, "1000"));
+        }
+        repo.saveAll(people);
+        List<Person> found = repo.findAllById(people.stream().map(Person::getId).toList());
+        for (int i = 0; i < found.size(); i += 2) {
+            found.get(i).setSalary(found.get(i).getSalary().multiply(new BigDecimal("1.1")));
+        }
+        repo.setBatchSize(3);
+        long written = repo.updateAll(found);
+        assertThat(written).isEqualTo(5);
+        assertThat(repo.getSkippedUpdates()).isEqualTo(5);
+        assertThat(repo.findById(found.get(0).getId()).get().getSalary()).isEqualByComparingTo("1100");
+        assertThat(repo.findById(found.get(1).getId()).get().getSalary()).isEqualByComparingTo("1000");
+    }
+
+    @Test
+    public void updateRolledBackByTheCallerIsWrittenAgain() throws SQLException {
+        Person found = repo.findById(repo.save(person("Ivan", "1000")).getId()).get();
+        connection.setAutoCommit(false);
+        found.setSalary(new BigDecimal("2000"));
+        repo.update(found);
+        connection.rollback();
+
+        repo.update(found);
+        connection.commit();
+
+        assertThat(repo.getSkippedUpdates()).isZero();
+        assertThat(repo.findById(found.getId()).get().getSalary()).isEqualByComparingTo("2000");
+    }
+
+    @Test
+    public void rowChangedByAnotherRepositoryIsWritten() throws SQLException {
+        Person saved = repo.save(person("Ivan", "1000"));
+        try (PeopleRepository other = new PeopleRepository(connection)) {
+            other.setChangeTrackingCapacity(100);
+            Person theirs = other.findById(saved.getId()).get();
+            theirs.setSalary(new BigDecimal("5000"));
+            other.update(theirs);
+        }
+
+        Person restored = new Person(saved.getId(), "Ivan", "Ruquet", saved.getDob(), new BigDecimal("1000"));
+        repo.update(restored);
+
+        assertThat(repo.getSkippedUpdates()).isZero();
+        assertThat(repo.findById(saved.getId()).get().getSalary()).isEqualByComparingTo("1000");
+    }
+
+    private static Person person(String firstName, String salary) {
+        return new Person(null, firstName, "Ruquet", ZonedDateTime.of(1990, 6, 22, 2, 22, 26, 0, ZoneId.of("-3")), new BigDecimal(salary));
+    }
+}
@@ -0,0 +1,98 @@
+package com.ruquet.peopledb.repository;
+
+import com.ruquet.peopledb.model.Person;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ConnectionPoolTest {
+
+    private JdbcDataSource dataSource;
+    private ConnectionPool pool;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:pooltest;DB_CLOSE_DELAY=-1");
+        try (var connection = dataSource.getConnection(); Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS ADDRESSES (ID BIGINT AUTO_INCREMENT PRIMARY KEY, STREET_ADDRESS VARCHAR(255), ADDRESS2 VARCHAR(255), CITY VARCHAR(255), STATE VARCHAR(255), POSTCODE VARCHAR(255), COUNTY VARCHAR(255), REGION VARCHAR(255), COUNTRY VARCHAR(255))");
+            stmt.execute("CREATE TABLE IF NOT EXISTS PEOPLE (ID BIGINT AUTO_INCREMENT PRIMARY KEY, FIRST_NAME VARCHAR(255), LAST_NAME VARCHAR(255), DOB TIMESTAMP, SALARY DECIMAL(15,2), EMAIL VARCHAR(255), HOME_ADDRESS BIGINT, BIZ_ADDRESS BIGINT, SPOUSE BIGINT, PARENT_ID BIGINT)");
+        }
+        pool = new ConnectionPool(dataSource, new PoolSettings().minSize(1).maxSize(2).acquireTimeout(Duration.ofMillis(200)));
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        pool.close();
+        try (var connection = dataSource.getConnection(); Statement stmt = connection.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        }
+    }
+
+    @Test
+    public void reusesIdleConnections() throws SQLException {
+        try (Session session = pool.open()) {
+            assertThat(session.connection().isValid(1)).isTrue();
+        }
+        try (Session session = pool.open()) {
+            assertThat(session.connection()).isNotNull();
+        }
+        PoolMetrics metrics = pool.getMetrics();
+        assertThat(metrics.open()).isEqualTo(1);
+        assertThat(metrics.active()).isZero();
+        assertThat(metrics.acquired()).isEqualTo(2);
+    }
+
+    @Test
+    public void nestedOpensShareTheThreadsConnection() throws SQLException {
+        try (Session outer = pool.open(); Session inner = pool.open()) {
+            assertThat(inner.connection()).isSameAs(outer.connection());
+            assertThat(pool.getMetrics().active()).isEqualTo(1);
+        }
+        assertThat(pool.getMetrics().active()).isZero();
+    }
+
+    @Test
+    public void timesOutWhenEveryConnectionIsInUse() throws SQLException {
+        try (Session first = pool.openDedicated(); Session second = pool.openDedicated()) {
+            assertThatThrownBy(pool::openDedicated).isInstanceOf(SQLTimeoutException.class);
+            assertThat(pool.getMetrics().saturation()).isEqualTo(1.0);
+        }
+        assertThat(pool.getMetrics().timeouts()).isEqualTo(1);
+    }
+
+    @Test
+    public void canSaveFromManyThreads() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try (PeopleRepository repo = new PeopleRepository(pool)) {
+            List<Future<Person>> saves = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                Person person = new Person("Thread", "Safe" + i, ZonedDateTime.of(1990, 1, 1, 0, 0, 0, 0, ZoneId.of("+0")));
+                saves.add(executor.submit(() -> repo.save(person)));
+            }
+            for (Future<Person> save : saves) {
+                assertThat(save.get().getId()).isGreaterThan(0);
+            }
+            assertThat(repo.getCount()).isEqualTo(100);
+            assertThat(pool.getMetrics().open()).isLessThanOrEqualTo(2);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.ruquet.peopledb.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EntityCacheTest {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private EntityCache<List<Long>> cache(CacheSettings settings) {
+        return new EntityCache<>(settings, ArrayList::new, List::stream, clock::get);
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        EntityCache<List<Long>> cache = cache(new CacheSettings().maxSize(2));
+        cache.put(1L, List.of(), cache.version(), 0);
+        cache.put(2L, List.of(), cache.version(), 0);
+        cache.get(1L);
+        cache.put(3L, List.of(), cache.version(), 0);
+        assertThat(cache.get(2L)).isNull();
+        assertThat(cache.get(1L)).isNotNull();
+        assertThat(cache.stats().evictions()).isEqualTo(1);
+    }
+
+    @Test
+    public void expiresAfterTimeToLive() {
+        EntityCache<List<Long>> cache = cache(new CacheSettings().timeToLive(Duration.ofSeconds(1)));
+        cache.put(1L, List.of(), cache.version(), 0);
+        clock.addAndGet(Duration.ofMillis(999).toNanos());
+        assertThat(cache.get(1L)).isNotNull();
+        clock.addAndGet(Duration.ofMillis(1).toNanos());
+        assertThat(cache.get(1L)).isNull();
+        assertThat(cache.stats().expirations()).isEqualTo(1);
+    }
+
+    @Test
+    public void invalidatesEntitiesEmbeddingTheId() {
+        EntityCache<List<Long>> cache = cache(new CacheSettings());
+        cache.put(1L, List.of(2L, 3L), cache.version(), 0);
+        cache.invalidate(3L);
+        assertThat(cache.get(1L)).isNull();
+    }
+
+    @Test
+    public void doesNotCacheLoadsRacingAnInvalidation() {
+        EntityCache<List<Long>> cache = cache(new CacheSettings());
+        long version = cache.version();
+        cache.invalidate(1L);
+        cache.put(1L, List.of(), version, 0);
+        assertThat(cache.get(1L)).isNull();
+    }
+
+    @Test
+    public void handsOutCopies() {
+        EntityCache<List<Long>> cache = cache(new CacheSettings());
+        List<Long> loaded = new ArrayList<>(Stream.of(2L).toList());
+        cache.put(1L, loaded, cache.version(), 0);
+        loaded.add(3L);
+        List<Long> cached = cache.get(1L);
+        cached.add(4L);
+        assertThat(cache.get(1L)).containsExactly(2L);
+    }
+}
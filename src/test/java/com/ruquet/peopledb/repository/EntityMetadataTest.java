@@ -0,0 +1,45 @@
+package com.ruquet.peopledb.repository;
+
+import com.ruquet.peopledb.model.Address;
+import com.ruquet.peopledb.model.CrudOperation;
+import com.ruquet.peopledb.model.Person;
+import com.ruquet.peopledb.model.Region;
+import org.junit.jupiter.api.Test;
+
+import java.time.ZonedDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EntityMetadataTest {
+
+    @Test
+    public void canSetIdOnMutableEntity() {
+        Person ivan = new Person("Ivan", "Ruquet", ZonedDateTime.now());
+        Person saved = EntityMetadata.of(Person.class).withId(ivan, 10L);
+        assertThat(saved).isSameAs(ivan);
+        assertThat(EntityMetadata.of(Person.class).getId(ivan)).isEqualTo(10L);
+    }
+
+    @Test
+    public void canCopyImmutableEntityWithId() {
+        Address address = new Address(null, "Horacio Quiroga, 4864", "Mansilla", "Ituzaingo", "BA", "1714", "Provincia", Region.WEST, "Argentina");
+        Address saved = EntityMetadata.of(Address.class).withId(address, 20L);
+        assertThat(address.id()).isNull();
+        assertThat(saved.id()).isEqualTo(20L);
+        assertThat(saved.city()).isEqualTo("Ituzaingo");
+        assertThat(saved.region()).isEqualTo(Region.WEST);
+    }
+
+    @Test
+    public void metadataIsBuiltOncePerClass() {
+        assertThat(EntityMetadata.of(Person.class)).isSameAs(EntityMetadata.of(Person.class));
+    }
+
+    @Test
+    public void entitiesOfThisBuildHaveGeneratedMetadata() {
+        assertThat(GeneratedMetadata.ids(Person.class)).isNotNull();
+        assertThat(GeneratedMetadata.ids(Address.class)).isNotNull();
+        assertThat(GeneratedMetadata.entityType(PeopleRepository.class)).isEqualTo(Person.class);
+        assertThat(GeneratedMetadata.sql(PeopleRepository.class)).containsEntry(CrudOperation.COUNT, PeopleRepository.SELECT_COUNT_SQL);
+    }
+}
@@ -0,0 +1,112 @@
+package com.ruquet.peopledb.repository;
+
+import com.ruquet.peopledb.model.Person;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PartitionedScanTest {
+
+    private JdbcDataSource dataSource;
+    private ConnectionPool pool;
+    private PeopleRepository repo;
+    private List<Long> ids;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:scantest;DB_CLOSE_DELAY=-1");
+        try (var connection = dataSource.getConnection()) {
+            new SchemaManager(connection).migrate();
+        }
+        pool = new ConnectionPool(dataSource, new PoolSettings().minSize(1).maxSize(4).acquireTimeout(Duration.ofSeconds(5)));
+        repo = new PeopleRepository(pool);
+        List<Person> saved = repo.saveAll(IntStream.range(0, 100)
+                .mapToObj(PartitionedScanTest::person)
+                .toList());
+        // gaps in the ids shouldn't unbalance the partitions
+        repo.delete(saved.subList(10, 30).toArray(Person[]::new));
+        try (Stream<Person> people = repo.streamAll()) {
+            ids = people.map(Person::getId).sorted().toList();
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        repo.close();
+        pool.close();
+        try (var connection = dataSource.getConnection(); Statement stmt = connection.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        }
+    }
+
+    @Test
+    public void readsEveryPersonOnceInIdOrder() {
+        try (Stream<Person> people = repo.streamAll(4)) {
+            assertThat(people.isParallel()).isTrue();
+            assertThat(people.map(Person::getId).toList()).isEqualTo(ids);
+        }
+        assertThat(pool.getMetrics().active()).isZero();
+    }
+
+    @Test
+    public void splitsBetweenBalancedPartitions() {
+        try (Stream<Person> people = repo.streamAll(4)) {
+            Spliterator<Person> suffix = people.spliterator();
+            assertThat(suffix.estimateSize()).isEqualTo(80);
+            Spliterator<Person> prefix = suffix.trySplit();
+            assertThat(prefix.estimateSize()).isEqualTo(40);
+            assertThat(suffix.estimateSize()).isEqualTo(40);
+            assertThat(prefix.trySplit().estimateSize()).isEqualTo(20);
+            assertThat(prefix.trySplit()).isNull();
+            assertThat(prefix.tryAdvance(person -> assertThat(person.getId()).isEqualTo(ids.get(20)))).isTrue();
+            assertThat(prefix.estimateSize()).isEqualTo(19);
+            assertThat(pool.getMetrics().active()).isEqualTo(1);
+        }
+        assertThat(pool.getMetrics().active()).isZero();
+    }
+
+    @Test
+    public void closingTheStreamReleasesOpenCursors() {
+        try (Stream<Person> people = repo.streamAll(4)) {
+            assertThat(people.filter(p -> p.getId() > ids.get(50)).findAny()).isPresent();
+        }
+        assertThat(pool.getMetrics().active()).isZero();
+    }
+
+    @Test
+    public void readsTheEmails() {
+        try (Stream<Person> people = repo.streamAll(4)) {
+            assertThat(people.filter(p -> !email(p.getFirstName()).equals(p.getEmail())).count()).isZero();
+        }
+    }
+
+    @Test
+    public void needsAPartition() {
+        assertThatThrownBy(() -> repo.streamAll(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static Person person(int i) {
+        Person person = new Person("Person" + i, "Scan", ZonedDateTime.of(1990, 1, 1, 0, 0, 0, 0, ZoneId.of("-3")));
+        person.setEmail(email(person.getFirstName()));
+        return person;
+    }
+
+    private static String email(String firstName) {
+        return firstName.toLowerCase() + "@scan.com";
+    }
+}
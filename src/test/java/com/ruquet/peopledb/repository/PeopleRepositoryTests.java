@@ -1,6 +1,10 @@
 package com.ruquet.peopledb.repository;
 
+import com.ruquet.peopledb.importer.ColumnMapping;
+import com.ruquet.peopledb.importer.ImportProgress;
+import com.ruquet.peopledb.importer.PeopleImporter;
 import com.ruquet.peopledb.model.Address;
+import com.ruquet.peopledb.model.CrudOperation;
 import com.ruquet.peopledb.model.Person;
 import com.ruquet.peopledb.model.Region;
 import org.junit.jupiter.api.AfterEach;
@@ -10,16 +14,17 @@ import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
 import java.math.BigDecimal;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.*;
-import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Locale;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static java.util.stream.Collectors.toSet;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -38,6 +43,9 @@ public class PeopleRepositoryTests {
 
     @AfterEach
     void tearDown() throws SQLException {
+        if (repo != null) {
+            repo.close();
+        }
         if (connection != null) {
             connection.close();
         }
@@ -99,6 +107,46 @@ public class PeopleRepositoryTests {
                 .forEach(id -> assertThat(id).isGreaterThan(0));
     }
 
+    @Test
+    public void canSaveAllPeople() {
+        repo.setBatchSize(2);
+        Person ivan = new Person("Ivan", "Ruquet", ZonedDateTime.of(1996, 06, 22, 02, 22, 26, 55, ZoneId.of("-3")));
+        Person jorge = new Person("Jorge", "Pinarello", ZonedDateTime.of(1982, 02, 12, 02, 22, 26, 55, ZoneId.of("-3")));
+        Person jenny = new Person("Jenny", "Ruquet", ZonedDateTime.of(1990, 02, 12, 02, 22, 26, 55, ZoneId.of("-3")));
+        List<Person> savedPeople = repo.saveAll(List.of(ivan, jorge, jenny));
+        assertThat(savedPeople.stream().map(Person::getId).collect(toSet())).hasSize(3).doesNotContainNull();
+    }
+
+    @Test
+    public void canSaveAllPeopleWithAddressesSpouseAndChildren() {
+        Address address = new Address(null, "Horacio Quiroga, 4864", "Mansilla", "Ituzaingo", "BA", "1714", "Provincia", Region.WEST, "Argentina");
+        Person ivan = new Person("Ivan", "Ruquet", ZonedDateTime.of(1996, 06, 22, 02, 22, 26, 55, ZoneId.of("-3")));
+        ivan.setHomeAddress(address);
+        ivan.setSpouse(new Person("Ivana", "Ruqueta", ZonedDateTime.of(1996, 06, 22, 02, 22, 26, 55, ZoneId.of("-3"))));
+        ivan.addChild(new Person("Pepo", "Ruquet", ZonedDateTime.of(2020, 06, 22, 02, 22, 26, 55, ZoneId.of("-3"))));
+        Person jorge = new Person("Jorge", "Pinarello", ZonedDateTime.of(1982, 02, 12, 02, 22, 26, 55, ZoneId.of("-3")));
+        jorge.setBusinessAddress(address);
+        long count = repo.saveAll(Stream.of(ivan, jorge));
+        Person foundPerson = repo.findById(ivan.getId()).get();
+        assertThat(count).isEqualTo(2);
+        assertThat(foundPerson.getHomeAddress().get().id()).isEqualTo(jorge.getBusinessAddress().get().id());
+        assertThat(foundPerson.getSpouse().get().getFirstName()).isEqualTo("Ivana");
+        assertThat(foundPerson.getChildren().stream().map(Person::getFirstName).collect(toSet())).contains("Pepo");
+    }
+
+    @Test
+    public void canSaveSpousesThatReferenceEachOther() {
+        Person ivan = new Person("Ivan", "Ruquet", ZonedDateTime.of(1996, 06, 22, 02, 22, 26, 55, ZoneId.of("-3")));
+        Person ivana = new Person("Ivana", "Ruqueta", ZonedDateTime.of(1996, 06, 22, 02, 22, 26, 55, ZoneId.of("-3")));
+        ivan.setSpouse(ivana);
+        ivana.setSpouse(ivan);
+        long before = repo.getCount();
+        repo.saveAll(List.of(ivan, ivana));
+        assertThat(repo.getCount()).isEqualTo(before + 2);
+        assertThat(repo.findById(ivan.getId()).get().getSpouse().get().getId()).isEqualTo(ivana.getId());
+        assertThat(repo.findById(ivana.getId()).get().getSpouse().get().getId()).isEqualTo(ivan.getId());
+    }
+
     @Test
     public void canFindPersonById() {
         Person savedPerson = repo.save(new Person("asd", "asd", ZonedDateTime.of(1994, 06, 22, 02, 22, 26, 55, ZoneId.of("-3"))));
@@ -106,6 +154,123 @@ public class PeopleRepositoryTests {
         assertThat(foundPerson).isEqualTo(savedPerson);
     }
 
+    @Test
+    public void canFindAllById() {
+        List<Person> people = new ArrayList<>();
+        for (int i = 0; i < 70; i++) {
+            people.add(new Person("Person" + i, "Multi", ZonedDateTime.of(1994, 06, 22, 02, 22, 26, 55, ZoneId.of("-3"))));
+        }
+        Person withFamily = people.get(3);
+        withFamily.setSpouse(new Person("Spouse", "Multi", ZonedDateTime.of(1994, 06, 22, 02, 22, 26, 55, ZoneId.of("-3"))));
+        withFamily.addChild(new Person("Child", "Multi", ZonedDateTime.of(2020, 06, 22, 02, 22, 26, 55, ZoneId.of("-3"))));
+        repo.saveAll(people);
+        List<Long> ids = new ArrayList<>(people.stream().map(Person::getId).toList());
+        Collections.reverse(ids);
+        ids.add(-1L);
+        List<Person> found = repo.findAllById(ids);
+        assertThat(found).extracting(Person::getId).containsExactlyElementsOf(ids.subList(0, 70));
+        Person foundWithFamily = found.stream().filter(p -> p.getId().equals(withFamily.getId())).findFirst().get();
+        assertThat(foundWithFamily.getSpouse().get().getFirstName()).isEqualTo("Spouse");
+        assertThat(foundWithFamily.getChildren()).extracting(Person::getFirstName).containsExactly("Child");
+    }
+
+    @Test
+    public void canFindByIdWithFetchPlan() {
+        Person ivan = new Person("Ivan", "Ruquet", ZonedDateTime.of(1996, 06, 22, 02, 22, 26, 55, ZoneId.of("-3")));
+        ivan.setHomeAddress(new Address(null, "Horacio Quiroga, 4864", "Mansilla", "Ituzaingo", "BA", "1714", "Provincia", Region.WEST, "Argentina"));
+        ivan.setSpouse(new Person("Ivana", "Ruqueta", ZonedDateTime.of(2000, 06, 22, 02, 22, 26, 55, ZoneId.of("-3"))));
+        ivan.addChild(new Person("Pepo", "Ruquet", ZonedDateTime.of(2020, 06, 22, 02, 22, 26, 55, ZoneId.of("-3"))));
+        ivan.addChild(new Person("Tute", "Ruquet", ZonedDateTime.of(2022, 06, 22, 02, 22, 26, 55, ZoneId.of("-3"))));
+        repo.save(ivan);
+        RepositoryMetrics metrics = new RepositoryMetrics();
+        repo.setListener(metrics);
+        Person found = repo.findById(ivan.getId(), FetchPlan.of(FetchPlan.Association.HOME_ADDRESS)).get();
+        assertThat(found.isHomeAddressLoaded()).isTrue();
+        assertThat(found.isSpouseLoaded()).isFalse();
+        assertThat(found.isChildrenLoaded()).isFalse();
+        assertThat(found.getHomeAddress().get().city()).isEqualTo("Ituzaingo");
+        assertThat(found.getSpouse().get().getFirstName()).isEqualTo("Ivana");
+        assertThat(found.getChildren()).extracting(Person::getFirstName).containsExactlyInAnyOrder("Pepo", "Tute");
+        assertThat(found.getChildren()).allMatch(child -> child.getParent().get() == found);
+        assertThat(metrics.snapshot(CrudOperation.FIND_BY_ID).count()).isEqualTo(2);
+        assertThat(metrics.snapshot(CrudOperation.FIND_ALL).count()).isEqualTo(1);
+    }
+
+    record PersonName(Long id, String firstName, String lastName, String email) {
+    }
+
+    @Test
+    public void canFindAllProjected() {
+        Person ivan = new Person("Ivan", "Ruquet", ZonedDateTime.of(1996, 06, 22, 02, 22, 26, 55, ZoneId.of("-3")));
+        ivan.setEmail("ivan@ruquet.com");
+        repo.save(ivan);
+        List<PersonName> names = repo.findAll(Projection.of(PersonName.class));
+        assertThat(names).contains(new PersonName(ivan.getId(), "Ivan", "Ruquet", "ivan@ruquet.com"));
+        try (Stream<PersonName> streamed = repo.streamAll(Projection.of(PersonName.class))) {
+            assertThat(streamed.filter(name -> name.id().equals(ivan.getId())).count()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void canFindByCriteria() {
+        List<Person> people = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Person person = new Person("Person" + i, "Criteria", ZonedDateTime.of(1994, 06, 22, 02, 22, 26, 55, ZoneId.of("-3")));
+            person.setSalary(new BigDecimal(1000 * (i + 1)));
+            person.setHomeAddress(new Address(null, "Horacio Quiroga, 4864", "Mansilla", "Ituzaingo", "BA", "1714", "Provincia", i % 2 == 0 ? Region.WEST : Region.EAST, "Argentina"));
+            people.add(person);
+        }
+        repo.saveAll(people);
+        PersonQuery query = new PersonQuery()
+                .eq(PersonQuery.Field.LAST_NAME, "Criteria")
+                .in(PersonQuery.Field.HOME_REGION, List.of(Region.WEST))
+                .orderByDescending(PersonQuery.Field.SALARY)
+                .limit(2);
+        List<Person> firstPage = repo.find(query);
+        assertThat(firstPage).extracting(Person::getFirstName).containsExactly("Person4", "Person2");
+        Person last = firstPage.get(1);
+        List<Person> secondPage = repo.find(query.after(last.getSalary(), last.getId()));
+        assertThat(secondPage).extracting(Person::getFirstName).containsExactly("Person0");
+    }
+
+    @Test
+    public void canCacheFindById() {
+        repo.enableCache(new CacheSettings().maxSize(100));
+        Person savedPerson = repo.save(new Person("Cached", "Person", ZonedDateTime.of(1994, 06, 22, 02, 22, 26, 55, ZoneId.of("-3"))));
+        Person first = repo.findById(savedPerson.getId()).get();
+        first.setFirstName("Changed by a caller");
+        Person second = repo.findById(savedPerson.getId()).get();
+        assertThat(second).isNotSameAs(first);
+        assertThat(second.getFirstName()).isEqualTo("Cached");
+        assertThat(repo.getCacheStats().hits()).isEqualTo(1);
+        assertThat(repo.getCacheStats().loads()).isEqualTo(1);
+    }
+
+    @Test
+    public void cacheIsInvalidatedByWrites() {
+        repo.enableCache(new CacheSettings());
+        Person wife = new Person("Wife", "Cached", ZonedDateTime.of(1994, 06, 22, 02, 22, 26, 55, ZoneId.of("-3")));
+        Person husband = new Person("Husband", "Cached", ZonedDateTime.of(1992, 06, 22, 02, 22, 26, 55, ZoneId.of("-3")));
+        husband.setSpouse(wife);
+        repo.save(husband);
+        repo.findById(husband.getId());
+        wife.setFirstName("Updated");
+        repo.update(wife);
+        assertThat(repo.findById(husband.getId()).get().getSpouse().get().getFirstName()).isEqualTo("Updated");
+        repo.delete(husband);
+        assertThat(repo.findById(husband.getId())).isEmpty();
+    }
+
+    @Test
+    public void reusesPreparedStatements() {
+        Person savedPerson = repo.save(new Person("asd", "asd", ZonedDateTime.of(1994, 06, 22, 02, 22, 26, 55, ZoneId.of("-3"))));
+        repo.findById(savedPerson.getId());
+        long misses = repo.getStatementCacheMisses();
+        repo.findById(savedPerson.getId());
+        assertThat(repo.getStatementCacheMisses()).isEqualTo(misses);
+        assertThat(repo.getStatementCacheHits()).isGreaterThan(0);
+    }
+
     @Test
     public void canFindPersonWithChildrensById() {
         Person ivan = new Person("Ivan", "Ruquet", ZonedDateTime.of(1996, 06, 22, 02, 22, 26, 55, ZoneId.of("-3")));
@@ -176,6 +341,30 @@ public class PeopleRepositoryTests {
         Long finalCount = repo.getCount();
         assertThat(finalCount).isEqualTo(count - 2);
     }
+
+    @Test
+    public void canDeleteAllById() throws SQLException {
+        Person ivan = new Person("Ivan", "Ruquet", ZonedDateTime.of(1996, 06, 22, 02, 22, 26, 55, ZoneId.of("-3")));
+        Person ivana = new Person("Ivana", "Ruqueta", ZonedDateTime.of(1996, 06, 22, 02, 22, 26, 55, ZoneId.of("-3")));
+        Person pepo = new Person("Pepo", "Ruquet", ZonedDateTime.of(2020, 06, 22, 02, 22, 26, 55, ZoneId.of("-3")));
+        ivan.setSpouse(ivana);
+        ivan.addChild(pepo);
+        List<Person> others = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            others.add(new Person("Purged" + i, "Ruquet", ZonedDateTime.of(1990, 06, 22, 02, 22, 26, 55, ZoneId.of("-3"))));
+        }
+        repo.saveAll(others);
+        repo.save(ivan);
+        long count = repo.getCount();
+        repo.setBatchSize(7);
+        long deleted = repo.deleteAllById(Stream.concat(others.stream().map(Person::getId), Stream.of(ivana.getId(), ivan.getId())));
+        assertThat(deleted).isEqualTo(22);
+        assertThat(repo.getCount()).isEqualTo(count - 22);
+        try (ResultSet rs = connection.createStatement().executeQuery("SELECT PARENT_ID FROM PEOPLE WHERE ID=" + pepo.getId())) {
+            assertThat(rs.next()).isTrue();
+            assertThat(rs.getObject(1)).isNull();
+        }
+    }
 //    @Test
 //    public void experiment(){
 //        Person p1 = new Person(10L, null,null,null);
@@ -200,6 +389,69 @@ public class PeopleRepositoryTests {
     }
 
 
+    @Test
+    public void canStreamAll() {
+        Person savedPerson = repo.save(new Person("Ivan", "Ruquet", ZonedDateTime.of(1996, 06, 22, 02, 22, 26, 55, ZoneId.of("-3"))));
+        repo.setFetchSize(2);
+        try (Stream<Person> people = repo.streamAll()) {
+            assertThat(people.map(Person::getId)).contains(savedPerson.getId());
+        }
+    }
+
+    @Test
+    public void canFindPagesAfterId() {
+        Person savedPerson = repo.save(new Person("Ivan", "Ruquet", ZonedDateTime.of(1996, 06, 22, 02, 22, 26, 55, ZoneId.of("-3"))));
+        Person savedPerson2 = repo.save(new Person("Jenny", "Ruquet", ZonedDateTime.of(1996, 06, 22, 02, 22, 26, 55, ZoneId.of("-3"))));
+        List<Person> page = repo.findPage(savedPerson.getId() - 1, 1);
+        List<Person> nextPage = repo.findPage(page.get(0).getId(), 1);
+        assertThat(page).containsExactly(savedPerson);
+        assertThat(nextPage).containsExactly(savedPerson2);
+    }
+
+    @Test
+    public void streamAllAndPagesReadTheEmail() {
+        Person ivan = new Person("Ivan", "Ruquet", ZonedDateTime.of(1996, 06, 22, 02, 22, 26, 55, ZoneId.of("-3")));
+        ivan.setEmail("ivan@ruquet.com");
+        Person savedPerson = repo.save(ivan);
+        try (Stream<Person> people = repo.streamAll()) {
+            assertThat(people.filter(p -> p.getId().equals(savedPerson.getId())).map(Person::getEmail)).containsExactly("ivan@ruquet.com");
+        }
+        List<Person> page = repo.findPage(savedPerson.getId() - 1, 1);
+        assertThat(page.get(0).getEmail()).isEqualTo("ivan@ruquet.com");
+    }
+
+    @Test
+    public void canFindAllWithGraph() {
+        Person ivan = new Person("Ivan", "Ruquet", ZonedDateTime.of(1996, 06, 22, 02, 22, 26, 55, ZoneId.of("-3")));
+        ivan.setHomeAddress(new Address(null, "Horacio Quiroga, 4864", "Mansilla", "Ituzaingo", "BA", "1714", "Provincia", Region.WEST, "Argentina"));
+        ivan.setSpouse(new Person("Ivana", "Ruqueta", ZonedDateTime.of(1996, 06, 22, 02, 22, 26, 55, ZoneId.of("-3"))));
+        ivan.addChild(new Person("Pepo", "Ruquet", ZonedDateTime.of(2020, 06, 22, 02, 22, 26, 55, ZoneId.of("-3"))));
+        ivan.addChild(new Person("Tute", "Ruquet", ZonedDateTime.of(2022, 06, 22, 02, 22, 26, 55, ZoneId.of("-3"))));
+        Person jorge = repo.save(new Person("Jorge", "Pinarello", ZonedDateTime.of(1982, 02, 12, 02, 22, 26, 55, ZoneId.of("-3"))));
+        repo.save(ivan);
+        List<Person> people;
+        try (Stream<Person> stream = repo.findAllWithGraph()) {
+            people = stream.filter(p -> p.getId().equals(ivan.getId()) || p.getId().equals(jorge.getId())).toList();
+        }
+        Person foundIvan = people.stream().filter(p -> p.getId().equals(ivan.getId())).findFirst().get();
+        assertThat(people).hasSize(2);
+        assertThat(foundIvan.getHomeAddress().get().city()).isEqualTo("Ituzaingo");
+        assertThat(foundIvan.getSpouse().get().getFirstName()).isEqualTo("Ivana");
+        assertThat(foundIvan.getChildren().stream().map(Person::getFirstName).collect(toSet())).containsExactlyInAnyOrder("Pepo", "Tute");
+    }
+
+    @Test
+    public void canMixQueriesWithDifferentColumns() {
+        Person ivan = new Person("Ivan", "Ruquet", ZonedDateTime.of(1996, 06, 22, 02, 22, 26, 55, ZoneId.of("-3")));
+        ivan.setHomeAddress(new Address(null, "Horacio Quiroga, 4864", "Mansilla", "Ituzaingo", "BA", "1714", "Provincia", Region.WEST, "Argentina"));
+        Person savedPerson = repo.save(ivan);
+        Person foundPerson = repo.findById(savedPerson.getId()).get();
+        List<Person> page = repo.findPage(savedPerson.getId() - 1, 1);
+        assertThat(foundPerson.getHomeAddress()).isPresent();
+        assertThat(page.get(0).getHomeAddress()).isEmpty();
+        assertThat(page.get(0).getSalary()).isEqualByComparingTo(foundPerson.getSalary());
+    }
+
     @Test
     public void canUpdate() {
         Person savedPerson = repo.save(new Person("Ivan", "Ruquet", ZonedDateTime.of(1996, 06, 22, 02, 22, 26, 55, ZoneId.of("-3"))));
@@ -215,21 +467,10 @@ public class PeopleRepositoryTests {
     @Test
     @Disabled
     public void loadData() throws IOException, SQLException {
-        Files.lines(Path.of("C://Users//Ivan//Desktop//Hr5m//Hr5m.csv"))
-                .skip(1)
-                .map(s -> s.split(","))
-                .map(s -> {
-                    LocalDate dob = LocalDate.parse(s[10], DateTimeFormatter.ofPattern("M/d/yyyy"));
-                    LocalTime tob = LocalTime.parse(s[11], DateTimeFormatter.ofPattern("hh:mm:ss a").withLocale(Locale.US));
-                    LocalDateTime dtob = LocalDateTime.of(dob, tob);
-                    ZonedDateTime zdtob = ZonedDateTime.of(dtob, ZoneId.of("+0"));
-                    Person person = new Person(s[2], s[4], zdtob);
-                    person.setSalary(new BigDecimal(s[25]));
-                    person.setEmail(s[6]);
-                    return person;
-                })
-                .forEach(repo::save);
-        connection.commit();
+        ImportProgress progress = new PeopleImporter(ColumnMapping.hr5m(), connection)
+                .importFile(Path.of("C://Users//Ivan//Desktop//Hr5m//Hr5m.csv"));
+        assertThat(progress.isFinished()).isTrue();
+        assertThat(progress.getRowsImported()).isGreaterThan(0);
     }
 
 
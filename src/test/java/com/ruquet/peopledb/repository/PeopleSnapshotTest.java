@@ -0,0 +1,103 @@
+package com.ruquet.peopledb.repository;
+
+import com.ruquet.peopledb.model.Address;
+import com.ruquet.peopledb.model.Person;
+import com.ruquet.peopledb.model.Region;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PeopleSnapshotTest {
+
+    private Connection connection;
+    private PeopleRepository repo;
+    private List<Person> people;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:snapshottest;DB_CLOSE_DELAY=-1");
+        new SchemaManager(connection).migrate();
+        repo = new PeopleRepository(connection);
+        people = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Person person = new Person(null, "Person" + i, i % 2 == 0 ? "Ruquet" : "Pinarello",
+                    ZonedDateTime.of(1980 + i, 6, 22, 2, 22, 26, 0, ZoneId.of("-3")), new BigDecimal(1000 * (i + 1)));
+            if (i < 8) {
+                person.setHomeAddress(new Address(null, "Horacio Quiroga, 4864", null, i < 4 ? "Ituzaingo" : "Moron", "BA", "1714", "Provincia",
+                        i % 2 == 0 ? Region.WEST : Region.EAST, "Argentina"));
+            }
+            people.add(person);
+        }
+        people.get(0).setSpouse(people.get(1));
+        people = repo.saveAll(people);
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        repo.close();
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        }
+        connection.close();
+    }
+
+    @Test
+    public void filtersAndAggregatesColumns() {
+        try (PeopleSnapshot snapshot = PeopleSnapshot.load(repo)) {
+            assertThat(snapshot.size()).isEqualTo(10);
+            PeopleSnapshot.Selection selection = snapshot.select()
+                    .lastName("Ruquet")
+                    .salaryBetween(new BigDecimal("2000"), new BigDecimal("7000.00"))
+                    .city("Moron");
+            assertThat(selection.ids()).containsExactly(people.get(4).getId(), people.get(6).getId());
+            assertThat(selection.stats().totalSalary()).isEqualByComparingTo("12000");
+            assertThat(snapshot.select().bornBetween(ZonedDateTime.of(1985, 1, 1, 0, 0, 0, 0, ZoneId.of("-3")),
+                    ZonedDateTime.of(1987, 1, 1, 0, 0, 0, 0, ZoneId.of("-3"))).count()).isEqualTo(2);
+            assertThat(snapshot.select().region(Region.EAST).count()).isEqualTo(4);
+            assertThat(snapshot.select().withSpouse().ids()).containsExactly(people.get(0).getId());
+        }
+    }
+
+    @Test
+    public void groupsLikeTheDatabase() {
+        try (PeopleSnapshot snapshot = PeopleSnapshot.load(repo)) {
+            PeopleStatistics statistics = new PeopleStatistics(repo);
+            assertThat(snapshot.select().groupBy(PeopleSnapshot.Column.REGION)).isEqualTo(statistics.by(PeopleStatistics.Dimension.HOME_REGION));
+            assertThat(snapshot.select().groupBy(PeopleSnapshot.Column.LAST_NAME)).isEqualTo(statistics.by(PeopleStatistics.Dimension.LAST_NAME));
+            assertThat(snapshot.select().stats()).isEqualTo(statistics.overall());
+        }
+    }
+
+    @Test
+    public void refreshesWhatTheRepositoryChanged() {
+        try (PeopleSnapshot snapshot = PeopleSnapshot.load(repo)) {
+            PeopleSnapshot.Selection before = snapshot.select().lastName("Ruquet");
+            Person first = people.get(0);
+            first.setLastName("Changed");
+            repo.update(first);
+            repo.delete(people.get(1));
+            Person saved = repo.save(new Person("New", "Ruquet", ZonedDateTime.of(2000, 1, 1, 0, 0, 0, 0, ZoneId.of("-3"))));
+            assertThat(snapshot.size()).isEqualTo(10);
+
+            snapshot.refresh();
+
+            assertThat(snapshot.size()).isEqualTo(10);
+            assertThat(snapshot.select().lastName("Changed").ids()).containsExactly(first.getId());
+            assertThat(snapshot.select().lastName("Ruquet").ids()).contains(saved.getId()).doesNotContain(first.getId());
+            assertThat(snapshot.select().withSpouse().count()).isZero();
+            assertThat(before.count()).isEqualTo(5);
+        }
+    }
+}
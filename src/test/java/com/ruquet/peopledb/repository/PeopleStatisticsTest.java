@@ -0,0 +1,115 @@
+package com.ruquet.peopledb.repository;
+
+import com.ruquet.peopledb.model.Address;
+import com.ruquet.peopledb.model.Person;
+import com.ruquet.peopledb.model.Region;
+import com.ruquet.peopledb.repository.PeopleStatistics.Dimension;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PeopleStatisticsTest {
+
+    private static final Clock CLOCK = Clock.fixed(Instant.parse("2026-06-01T12:00:00Z"), ZoneOffset.UTC);
+
+    private Connection connection;
+    private PeopleRepository repo;
+    private PeopleStatistics statistics;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:statisticstest;DB_CLOSE_DELAY=-1");
+        new SchemaManager(connection).migrate();
+        repo = new PeopleRepository(connection);
+        statistics = new PeopleStatistics(repo, CLOCK);
+        List<Person> people = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            Person person = new Person(null, "Person" + i, i < 3 ? "Ruquet" : "Pinarello",
+                    ZonedDateTime.of(1980 + i * 5, 6, 22, 2, 22, 26, 0, ZoneId.of("-3")), new BigDecimal(1000 * (i + 1)));
+            if (i < 5) {
+                person.setHomeAddress(new Address(null, "Horacio Quiroga, 4864", null, "Ituzaingo", "BA", "1714", "Provincia",
+                        i % 2 == 0 ? Region.WEST : Region.EAST, "Argentina"));
+            }
+            people.add(person);
+        }
+        repo.saveAll(people);
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        repo.close();
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        }
+        connection.close();
+    }
+
+    @Test
+    public void groupsByHomeRegionInTheDatabase() {
+        List<GroupStats<String>> byRegion = statistics.by(Dimension.HOME_REGION);
+
+        assertThat(byRegion).extracting(GroupStats::key).containsExactly(null, "EAST", "WEST");
+        assertThat(byRegion).extracting(GroupStats::headcount).containsExactly(1L, 2L, 3L);
+        GroupStats<String> west = byRegion.get(2);
+        assertThat(west.averageSalary()).isEqualByComparingTo("3000");
+        assertThat(west.minSalary()).isEqualByComparingTo("1000");
+        assertThat(west.maxSalary()).isEqualByComparingTo("5000");
+        assertThat(statistics.overall().totalSalary()).isEqualByComparingTo("21000");
+    }
+
+    @Test
+    public void streamsGroups() {
+        try (Stream<GroupStats<String>> byLastName = statistics.streamBy(Dimension.LAST_NAME)) {
+            assertThat(byLastName).extracting(GroupStats::key).containsExactly("Pinarello", "Ruquet");
+        }
+    }
+
+    @Test
+    public void groupsByAgeBucket() {
+        List<GroupStats<Integer>> byAge = statistics.byAge(10);
+
+        assertThat(byAge).extracting(GroupStats::key).containsExactly(20, 30, 40);
+        assertThat(byAge).extracting(GroupStats::headcount).containsExactly(2L, 2L, 2L);
+        assertThat(statistics.byAge(1)).extracting(GroupStats::key).containsExactly(20, 25, 30, 35, 40, 45);
+    }
+
+    @Test
+    public void incrementalStatisticsFollowWrites() {
+        statistics.enableIncremental();
+        List<Person> people = repo.findAll();
+        Person first = people.get(0);
+        first.setSalary(new BigDecimal("500.50"));
+        first.setLastName("Pinarello");
+        repo.update(first);
+        repo.delete(people.get(1));
+        repo.save(new Person(null, "New", "Ruquet", ZonedDateTime.of(2000, 1, 1, 0, 0, 0, 0, ZoneId.of("-3")), new BigDecimal(7000)));
+
+        List<GroupStats<String>> byRegion = statistics.by(Dimension.HOME_REGION);
+        List<GroupStats<String>> byLastName = statistics.by(Dimension.LAST_NAME);
+        List<GroupStats<Integer>> byAge = statistics.byAge(10);
+        GroupStats<Void> overall = statistics.overall();
+        statistics.disableIncremental();
+
+        assertThat(byRegion).isEqualTo(statistics.by(Dimension.HOME_REGION));
+        assertThat(byLastName).isEqualTo(statistics.by(Dimension.LAST_NAME));
+        assertThat(byAge).isEqualTo(statistics.byAge(10));
+        assertThat(overall).isEqualTo(statistics.overall());
+        assertThat(overall.minSalary()).isEqualByComparingTo("500.50");
+    }
+}
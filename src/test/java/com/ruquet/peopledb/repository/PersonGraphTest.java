@@ -0,0 +1,65 @@
+package com.ruquet.peopledb.repository;
+
+import com.ruquet.peopledb.model.Address;
+import com.ruquet.peopledb.model.Person;
+import com.ruquet.peopledb.model.Region;
+import org.junit.jupiter.api.Test;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PersonGraphTest {
+
+    private static Person person(String name) {
+        return new Person(name, "Ruquet", ZonedDateTime.of(1996, 6, 22, 2, 22, 26, 55, ZoneId.of("-3")));
+    }
+
+    @Test
+    public void visitsSharedObjectsOnce() {
+        Address address = new Address(null, "Horacio Quiroga, 4864", "Mansilla", "Ituzaingo", "BA", "1714", "Provincia", Region.WEST, "Argentina");
+        Person ivan = person("Ivan");
+        Person jorge = person("Jorge");
+        Person ivana = person("Ivana");
+        ivan.setHomeAddress(address);
+        jorge.setBusinessAddress(address);
+        ivan.setSpouse(ivana);
+        PersonGraph graph = PersonGraph.of(List.of(ivan, jorge, ivana));
+        assertThat(graph.people()).hasSize(3);
+        assertThat(graph.addresses()).containsExactly(address);
+    }
+
+    @Test
+    public void insertsReferencedPeopleFirst() {
+        Person ivan = person("Ivan");
+        Person ivana = person("Ivana");
+        Person pepo = person("Pepo");
+        ivan.setSpouse(ivana);
+        ivan.addChild(pepo);
+        PersonGraph graph = PersonGraph.of(List.of(ivan));
+        assertThat(graph.levels()).containsExactly(List.of(ivana), List.of(ivan), List.of(pepo));
+        assertThat(graph.deferred()).isEmpty();
+    }
+
+    @Test
+    public void breaksSpouseCycles() {
+        Person ivan = person("Ivan");
+        Person ivana = person("Ivana");
+        ivan.setSpouse(ivana);
+        ivana.setSpouse(ivan);
+        PersonGraph graph = PersonGraph.of(List.of(ivan));
+        assertThat(graph.levels()).containsExactly(List.of(ivan), List.of(ivana));
+        assertThat(graph.deferred()).containsExactly(ivan);
+    }
+
+    @Test
+    public void leavesSavedPeopleAlone() {
+        Person ivan = person("Ivan");
+        Person saved = new Person(7L, "Saved", "Ruquet", ZonedDateTime.of(1996, 6, 22, 2, 22, 26, 55, ZoneId.of("-3")));
+        ivan.setSpouse(saved);
+        PersonGraph graph = PersonGraph.of(List.of(ivan));
+        assertThat(graph.people()).containsExactly(ivan);
+    }
+}
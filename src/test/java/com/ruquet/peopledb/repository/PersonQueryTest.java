@@ -0,0 +1,46 @@
+package com.ruquet.peopledb.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static com.ruquet.peopledb.repository.PersonQuery.Field.LAST_NAME;
+import static com.ruquet.peopledb.repository.PersonQuery.Field.SALARY;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PersonQueryTest {
+
+    @Test
+    public void queriesDifferingOnlyInValuesShareTheirShape() {
+        PersonQuery first = new PersonQuery().eq(LAST_NAME, "Ruquet").in(SALARY, List.of(1, 2)).limit(10);
+        PersonQuery second = new PersonQuery().eq(LAST_NAME, "Perez").in(SALARY, List.of(3, 4, 5)).limit(20);
+        assertThat(first.shape()).isEqualTo(second.shape());
+        assertThat(first.shape()).isNotEqualTo(new PersonQuery().eq(LAST_NAME, "Ruquet").limit(10).shape());
+    }
+
+    @Test
+    public void padsInListsWithTheLastValue() {
+        PersonQuery query = new PersonQuery().in(LAST_NAME, List.of("A", "B", "B"));
+        assertThat(query.parameters()).containsExactly("A", "B", "B", "B", "B", "B", "B", "B");
+    }
+
+    @Test
+    public void padsLongInListsToPowersOfTwo() {
+        assertThat(PersonQuery.inListSize(512)).isEqualTo(512);
+        assertThat(PersonQuery.inListSize(513)).isEqualTo(1024);
+        assertThat(PersonQuery.inListSize(1024)).isEqualTo(1024);
+        assertThat(PersonQuery.inListSize(3000)).isEqualTo(4096);
+        List<Integer> few = IntStream.range(0, 600).boxed().toList();
+        List<Integer> more = IntStream.range(0, 1000).boxed().toList();
+        assertThat(new PersonQuery().in(SALARY, few).shape()).isEqualTo(new PersonQuery().in(SALARY, more).shape());
+    }
+
+    @Test
+    public void bindsKeysetAndLimitLast() {
+        BigDecimal lastSalary = new BigDecimal("1000");
+        PersonQuery query = new PersonQuery().eq(LAST_NAME, "Ruquet").orderBy(SALARY).after(lastSalary, 7L).limit(5);
+        assertThat(query.parameters()).containsExactly("Ruquet", lastSalary, lastSalary, 7L, 5);
+    }
+}
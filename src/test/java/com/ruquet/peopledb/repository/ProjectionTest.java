@@ -0,0 +1,48 @@
+package com.ruquet.peopledb.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ProjectionTest {
+
+    record PersonName(long id, String firstName, String lastName, String email) {
+    }
+
+    record WithUnsupportedType(Object value) {
+    }
+
+    @Test
+    public void recordComponentsAreColumnsInUpperSnakeCase() {
+        assertThat(Projection.of(PersonName.class).getColumns()).containsExactly("ID", "FIRST_NAME", "LAST_NAME", "EMAIL");
+        assertThat(Projection.columnName("homeAddress2")).isEqualTo("HOME_ADDRESS2");
+    }
+
+    @Test
+    public void recordProjectionsAreBuiltOnce() {
+        assertThat(Projection.of(PersonName.class)).isSameAs(Projection.of(PersonName.class));
+    }
+
+    @Test
+    public void queriesAreBuiltOncePerTable() {
+        Projection<BigDecimal> salaries = Projection.of(rs -> rs.getBigDecimal(1), "SALARY");
+        String sql = salaries.selectFrom("PEOPLE");
+        assertThat(sql).isEqualTo("SELECT SALARY FROM PEOPLE");
+        assertThat(salaries.selectFrom("PEOPLE")).isSameAs(sql);
+        assertThat(salaries.selectFrom("ADDRESSES")).isEqualTo("SELECT SALARY FROM ADDRESSES");
+    }
+
+    @Test
+    public void rejectsComponentsItCantRead() {
+        assertThatThrownBy(() -> Projection.of(WithUnsupportedType.class)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void explicitProjectionsKeepTheirColumnOrder() {
+        Projection<BigDecimal> salaries = Projection.of(rs -> rs.getBigDecimal(1), "SALARY");
+        assertThat(salaries.getColumns()).containsExactly("SALARY");
+    }
+}
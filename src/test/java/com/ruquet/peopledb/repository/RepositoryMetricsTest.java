@@ -0,0 +1,57 @@
+package com.ruquet.peopledb.repository;
+
+import com.ruquet.peopledb.model.CrudOperation;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import java.sql.SQLException;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RepositoryMetricsTest {
+
+    private final RepositoryMetrics metrics = new RepositoryMetrics();
+
+    @Test
+    public void countsRowsAndErrorsPerOperation() {
+        metrics.onOperation(CrudOperation.SAVE, 100, 3, 0);
+        metrics.onOperation(CrudOperation.SAVE, 300, 2, 0);
+        metrics.onError(CrudOperation.SAVE, 200, new SQLException());
+        metrics.onOperation(CrudOperation.FIND_ALL, 100, 0, 7);
+        OperationStats save = metrics.snapshot(CrudOperation.SAVE);
+        assertThat(save.count()).isEqualTo(2);
+        assertThat(save.errors()).isEqualTo(1);
+        assertThat(save.rowsAffected()).isEqualTo(5);
+        assertThat(save.meanTime()).isEqualTo(Duration.ofNanos(200));
+        assertThat(save.maxTime()).isEqualTo(Duration.ofNanos(300));
+        assertThat(metrics.snapshot().get(CrudOperation.FIND_ALL).rowsMapped()).isEqualTo(7);
+        assertThat(metrics.snapshot().get(CrudOperation.UPDATE).count()).isZero();
+    }
+
+    @Test
+    public void percentilesAreBucketUpperBounds() {
+        for (int i = 0; i < 99; i++) {
+            metrics.onOperation(CrudOperation.FIND_BY_ID, 1000, 0, 1);
+        }
+        metrics.onOperation(CrudOperation.FIND_BY_ID, 1_000_000, 0, 1);
+        OperationStats stats = metrics.snapshot(CrudOperation.FIND_BY_ID);
+        assertThat(stats.p50().toNanos()).isBetween(1000L, 2000L);
+        assertThat(stats.p99().toNanos()).isBetween(1000L, 2000L);
+        assertThat(stats.maxTime()).isEqualTo(Duration.ofNanos(1_000_000));
+    }
+
+    @Test
+    public void exportsOneMBeanPerOperation() throws Exception {
+        MBeanServer server = MBeanServerFactory.newMBeanServer();
+        metrics.onOperation(CrudOperation.DELETE_MANY, 100, 4, 0);
+        ObjectName name = new ObjectName("com.ruquet.peopledb:type=Repository,name=\"people\",operation=DELETE_MANY");
+        try (JmxMetricsExporter ignored = JmxMetricsExporter.register(server, "people", metrics)) {
+            assertThat(server.getAttribute(name, "RowsAffected")).isEqualTo(4L);
+            assertThat(server.queryNames(new ObjectName("com.ruquet.peopledb:*"), null)).hasSize(CrudOperation.values().length);
+        }
+        assertThat(server.isRegistered(name)).isFalse();
+    }
+}
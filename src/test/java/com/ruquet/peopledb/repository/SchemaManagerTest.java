@@ -0,0 +1,110 @@
+package com.ruquet.peopledb.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SchemaManagerTest {
+
+    private Connection connection;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:schematest;DB_CLOSE_DELAY=-1");
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        }
+        connection.close();
+    }
+
+    @Test
+    public void migratesToTheLatestVersionOnce() throws SQLException {
+        SchemaManager schema = new SchemaManager(connection);
+        assertThat(schema.getVersion()).isZero();
+
+        assertThat(schema.migrate()).isEqualTo(SchemaManager.getLatestVersion());
+        assertThat(schema.migrate()).isEqualTo(SchemaManager.getLatestVersion());
+        assertThat(new SchemaManager(connection).getVersion()).isEqualTo(SchemaManager.getLatestVersion());
+    }
+
+    @Test
+    public void migratesTablesCreatedBeforeTheSchemaWasManaged() throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE ADDRESSES (ID BIGINT AUTO_INCREMENT PRIMARY KEY, STREET_ADDRESS VARCHAR(255), ADDRESS2 VARCHAR(255), CITY VARCHAR(255), STATE VARCHAR(255), POSTCODE VARCHAR(255), COUNTY VARCHAR(255), REGION VARCHAR(255), COUNTRY VARCHAR(255))");
+            stmt.execute("CREATE TABLE PEOPLE (ID BIGINT AUTO_INCREMENT PRIMARY KEY, FIRST_NAME VARCHAR(255), LAST_NAME VARCHAR(255), DOB TIMESTAMP, SALARY DECIMAL(15,2), EMAIL VARCHAR(255), HOME_ADDRESS BIGINT, BIZ_ADDRESS BIGINT, SPOUSE BIGINT, PARENT_ID BIGINT)");
+        }
+
+        assertThat(new SchemaManager(connection).migrate()).isEqualTo(SchemaManager.getLatestVersion());
+    }
+
+    @Test
+    public void versionsLeftHalfAppliedRunAgain() throws SQLException {
+        SchemaManager schema = new SchemaManager(connection);
+        schema.migrate();
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("DROP INDEX ADDRESSES_CONTENT_HASH");
+            stmt.execute("DELETE FROM SCHEMA_VERSION");
+        }
+
+        assertThat(schema.migrate()).isEqualTo(SchemaManager.getLatestVersion());
+        try (Statement stmt = connection.createStatement();
+             var rs = stmt.executeQuery("SELECT COUNT(*) FROM INFORMATION_SCHEMA.INDEXES WHERE INDEX_NAME = 'ADDRESSES_CONTENT_HASH'")) {
+            rs.next();
+            assertThat(rs.getInt(1)).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void deletingAPersonNullsTheirSpouseLink() throws SQLException {
+        new SchemaManager(connection).migrate();
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("INSERT INTO PEOPLE (ID, FIRST_NAME) VALUES (1, 'Ivan'), (2, 'Sofia')");
+            stmt.execute("UPDATE PEOPLE SET SPOUSE = 3 - ID");
+            stmt.execute("DELETE FROM PEOPLE WHERE ID = 2");
+            var rs = stmt.executeQuery("SELECT SPOUSE FROM PEOPLE WHERE ID = 1");
+            rs.next();
+            assertThat(rs.getObject(1)).isNull();
+        }
+    }
+
+    @Test
+    public void repositoryStatementsUseIndexes() throws SQLException {
+        SchemaManager schema = new SchemaManager(connection);
+        schema.migrate();
+
+        schema.verify();
+        assertThat(schema.explain()).isNotEmpty();
+    }
+
+    @Test
+    public void verifyFailsOnAFullTableScan() throws SQLException {
+        SchemaManager schema = new SchemaManager(connection);
+        schema.migrate();
+        schema.register("SELECT * FROM PEOPLE WHERE LAST_NAME = ?");
+
+        assertThatThrownBy(schema::verify)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("LAST_NAME");
+    }
+
+    @Test
+    public void fullScansCanBeAllowed() throws SQLException {
+        SchemaManager schema = new SchemaManager(connection);
+        schema.migrate();
+        schema.registerFullScan("SELECT * FROM PEOPLE WHERE LAST_NAME = ?");
+
+        schema.verify();
+    }
+}
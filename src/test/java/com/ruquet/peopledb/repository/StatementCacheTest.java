@@ -0,0 +1,59 @@
+package com.ruquet.peopledb.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StatementCacheTest {
+
+    private Connection connection;
+    private StatementCache cache;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:");
+        cache = new StatementCache(connection, 2);
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        cache.close();
+        connection.close();
+    }
+
+    @Test
+    public void reusesPreparedStatement() throws SQLException {
+        PreparedStatement first = cache.prepare("SELECT 1");
+        PreparedStatement second = cache.prepare("SELECT 1");
+        assertThat(second).isSameAs(first);
+        assertThat(cache.getHits()).isEqualTo(1);
+        assertThat(cache.getMisses()).isEqualTo(1);
+    }
+
+    @Test
+    public void closesLeastRecentlyUsedStatement() throws SQLException {
+        PreparedStatement one = cache.prepare("SELECT 1");
+        PreparedStatement two = cache.prepare("SELECT 2");
+        cache.prepare("SELECT 1");
+        cache.prepare("SELECT 3");
+        assertThat(two.isClosed()).isTrue();
+        assertThat(one.isClosed()).isFalse();
+        assertThat(cache.getEvictions()).isEqualTo(1);
+        assertThat(cache.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void closesEveryStatementOnClose() throws SQLException {
+        PreparedStatement one = cache.prepare("SELECT 1");
+        cache.close();
+        assertThat(one.isClosed()).isTrue();
+        assertThat(cache.size()).isZero();
+    }
+}
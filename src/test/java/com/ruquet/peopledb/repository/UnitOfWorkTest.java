@@ -0,0 +1,103 @@
+package com.ruquet.peopledb.repository;
+
+import com.ruquet.peopledb.com.ruquet.peopledb.exceptions.UnableToSave;
+import com.ruquet.peopledb.model.Address;
+import com.ruquet.peopledb.model.Person;
+import com.ruquet.peopledb.model.Region;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class UnitOfWorkTest {
+
+    private JdbcDataSource dataSource;
+    private Connection connection;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:unitofworktest;DB_CLOSE_DELAY=-1");
+        connection = dataSource.getConnection();
+        new SchemaManager(connection).migrate();
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        connection.setAutoCommit(true);
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        }
+        connection.close();
+    }
+
+    @Test
+    public void pooledSaveOfAGraphIsAllOrNothing() throws SQLException {
+        try (ConnectionPool pool = new ConnectionPool(dataSource, new PoolSettings().maxSize(2).acquireTimeout(Duration.ofSeconds(5)));
+             PeopleRepository repo = new PeopleRepository(pool)) {
+            PeopleStatistics statistics = new PeopleStatistics(repo);
+            statistics.enableIncremental();
+            Address home = address();
+            Person parent = person("Ivan");
+            parent.setHomeAddress(home);
+            parent.addChild(person("x".repeat(300)));
+
+            assertThatThrownBy(() -> repo.save(parent)).isInstanceOf(UnableToSave.class);
+
+            assertThat(repo.getCount()).isZero();
+            assertThat(count("ADDRESSES")).isZero();
+            assertThat(parent.getId()).isNull();
+            assertThat(parent.getHomeAddress()).containsSame(home);
+            assertThat(statistics.overall().headcount()).isZero();
+            assertThat(pool.getMetrics().active()).isZero();
+            assertThat(repo.save(person("Jorge")).getId()).isNotNull();
+            assertThat(repo.getCount()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void failedSaveOnlyUndoesItselfInTheCallersTransaction() throws SQLException {
+        connection.setAutoCommit(false);
+        try (PeopleRepository repo = new PeopleRepository(connection)) {
+            Person jorge = repo.save(person("Jorge"));
+            Person parent = person("Ivan");
+            parent.setHomeAddress(address());
+            parent.addChild(person("x".repeat(300)));
+
+            assertThatThrownBy(() -> repo.saveAll(List.of(parent))).isInstanceOf(UnableToSave.class);
+
+            assertThat(parent.getId()).isNull();
+            assertThat(connection.getAutoCommit()).isFalse();
+            connection.commit();
+            assertThat(repo.findById(jorge.getId())).isPresent();
+            assertThat(repo.getCount()).isEqualTo(1);
+            assertThat(count("ADDRESSES")).isZero();
+        }
+    }
+
+    private long count(String table) throws SQLException {
+        try (Statement stmt = connection.createStatement(); var rs = stmt.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private static Person person(String firstName) {
+        return new Person(firstName, "Ruquet", ZonedDateTime.of(1996, 6, 22, 2, 22, 26, 0, ZoneId.of("-3")));
+    }
+
+    private static Address address() {
+        return new Address(null, "Horacio Quiroga, 4864", null, "Ituzaingo", "BA", "1714", "Provincia", Region.WEST, "Argentina");
+    }
+}
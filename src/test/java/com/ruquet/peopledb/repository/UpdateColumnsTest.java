@@ -0,0 +1,29 @@
+package com.ruquet.peopledb.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UpdateColumnsTest {
+
+    private final UpdateColumns<Object[]> columns = UpdateColumns.<Object[]>of("PEOPLE", "ID")
+            .column("FIRST_NAME", row -> row[0])
+            .column("LAST_NAME", row -> row[1])
+            .column("SALARY", row -> row[2]);
+
+    @Test
+    public void buildsSqlForChangedColumns() {
+        assertThat(columns.sql(columns.allColumns())).isEqualTo("UPDATE PEOPLE SET FIRST_NAME=?, LAST_NAME=?, SALARY=? WHERE ID=?");
+        assertThat(columns.sql(0b100)).isEqualTo("UPDATE PEOPLE SET SALARY=? WHERE ID=?");
+    }
+
+    @Test
+    public void detectsChangedColumns() {
+        Object[] before = columns.values(new Object[]{"Ivan", "Ruquet", new BigDecimal("10.00")});
+        Object[] after = columns.values(new Object[]{"Ivan", "Pinarello", new BigDecimal("10")});
+        assertThat(columns.changed(before, after)).isEqualTo(0b010);
+        assertThat(columns.changed(before, before)).isZero();
+    }
+}